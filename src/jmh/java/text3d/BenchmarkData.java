@@ -0,0 +1,32 @@
+package text3d;
+
+import java.awt.*;
+import java.util.Map;
+
+/// Inputs shared by the benchmarks, so results for different stages are comparable
+final class BenchmarkData {
+
+    /// Benchmarks take one of these keys as a @Param
+    static final Map<String, String> TEXTS = Map.of(
+        "short", "Hi",
+        "long", "The quick brown fox jumps over the lazy dog",
+        "multiline", "Room 101\nConference\nAuthorized Personnel Only");
+
+    private BenchmarkData() {
+        // Not instantiable
+    }
+
+    static String text(String key) {
+        String text = TEXTS.get(key);
+        if (text == null) {
+            throw new IllegalArgumentException("No benchmark text " + key);
+        }
+        return text;
+    }
+
+    /// Benchmarks use logical font names (Serif, SansSerif, Monospaced)
+    /// so they run the same on every platform
+    static Font font(String name) {
+        return new Font(name, SignGenerator.DEFAULT_FONT_STYLE, SignGenerator.DEFAULT_RENDER_FONT_SIZE);
+    }
+}
@@ -0,0 +1,138 @@
+package text3d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/// Each stage of ClaudeTextToFile on its own, with the inputs
+/// to every stage prepared beforehand from the same text and font.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaudeStagesBenchmark {
+
+    @Param({"short", "long", "multiline"})
+    String text;
+
+    @Param({"Serif", "SansSerif", "Monospaced"})
+    String fontName;
+
+    private final ClaudeTextToFile renderer = new ClaudeTextToFile();
+    private final CancellationToken token = new CancellationToken();
+    private String signText;
+    private Font font;
+    private ClaudeTextToFile.Placement placement;
+    private List<ClaudeTextToFile.Layout> lines;
+    private List<List<ClaudeTextToFile.Bevel>> bevels;
+    private List<ClaudeTextToFile.Triangle> triangles;
+
+    @Setup
+    public void setup() throws IOException {
+        signText = BenchmarkData.text(text);
+        font = BenchmarkData.font(fontName);
+        RenderStage.Context context = new RenderStage.Context(new RenderMetrics.Builder(ClaudeTextToFile.ID, null),
+            ProgressListener.NONE, token);
+        placement = renderer.place(new ClaudeTextToFile.LayoutKey(signText, font, TextAlign.CENTER), context);
+        lines = outlines();
+        bevels = bevel();
+        triangles = extrude();
+    }
+
+    /// Outline extraction and bottom-cap triangulation, a line at a time, as the layout stage does it
+    @Benchmark
+    public List<ClaudeTextToFile.Layout> outlines() {
+        List<ClaudeTextToFile.Layout> result = new ArrayList<>();
+        for (ClaudeTextToFile.LineKey line : placement.lines()) {
+            result.add(renderer.layoutLine(line.line(), line.font(), line.y()));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void triangulate(Blackhole bh) {
+        for (ClaudeTextToFile.Layout line : lines) {
+            for (ClaudeTextToFile.Outline o : line.outlines()) {
+                bh.consume(renderer.triangulatePolygonWithHoles(o.outer(), o.holes()));
+            }
+        }
+    }
+
+    /// Bevel insetting, including top-cap triangulation
+    @Benchmark
+    public List<List<ClaudeTextToFile.Bevel>> bevel() {
+        List<List<ClaudeTextToFile.Bevel>> result = new ArrayList<>();
+        for (ClaudeTextToFile.Layout line : lines) {
+            List<ClaudeTextToFile.Bevel> lineBevels = new ArrayList<>();
+            for (ClaudeTextToFile.Outline o : line.outlines()) {
+                lineBevels.add(renderer.computeBevel(o, RenderSpec.DEFAULT.bevelHeight() * 0.7));
+            }
+            result.add(lineBevels);
+        }
+        return result;
+    }
+
+    /// The Z-dependent stages, which are all that's redone when only heights change:
+    /// each line extruded at x = 0, then moved into place on the base
+    @Benchmark
+    public List<ClaudeTextToFile.Triangle> extrude() {
+        RenderSpec spec = RenderSpec.DEFAULT;
+        List<ClaudeTextToFile.Triangle> result = new ArrayList<>();
+        renderer.addBase(result, ClaudeTextToFile.baseBounds(placement.bounds(), spec), spec);
+        for (int n = 0; n < lines.size(); n++) {
+            List<ClaudeTextToFile.Outline> outlines = lines.get(n).outlines();
+            List<ClaudeTextToFile.Triangle> line = new ArrayList<>();
+            for (int i = 0; i < outlines.size(); i++) {
+                renderer.addLetter(line, outlines.get(i), bevels.get(n).get(i), spec);
+            }
+            ClaudeTextToFile.translate(line, placement.x()[n] * SignGenerator.SCALE_FACTOR, result);
+        }
+        return result;
+    }
+
+    /// Vertex welding, as done while writing 3MF and the other indexed formats
+    @Benchmark
+    public int weldVertices() {
+        try (IndexedMesh mesh = ClaudeTextToFile.indexed(triangles, false, token)) {
+            return mesh.vertexCount();
+        }
+    }
+
+    /// Writing is measured into memory, so it's formatting and compression, not the disk
+    @Benchmark
+    public long writeSTL() throws IOException {
+        CountingChannel out = nullChannel();
+        renderer.writeSTL(triangles, out, token);
+        return out.count();
+    }
+
+    @Benchmark
+    public long write3MF() throws IOException {
+        CountingChannel out = nullChannel();
+        renderer.write3MF(triangles, out, Compression.DEFAULT, token);
+        return out.count();
+    }
+
+    private static CountingChannel nullChannel() {
+        return new CountingChannel(Channels.newChannel(OutputStream.nullOutputStream()));
+    }
+}
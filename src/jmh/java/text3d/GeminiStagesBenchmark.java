@@ -0,0 +1,85 @@
+package text3d;
+
+import eu.mihosoft.jcsg.CSG;
+import eu.mihosoft.jcsg.Cube;
+import eu.mihosoft.vvecmath.Transform;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/// Each stage of GeminiTextToFile on its own; the CSG unions are usually what dominates.
+/// Needs JavaFX, like the renderer itself.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiStagesBenchmark {
+
+    @Param({"short", "long", "multiline"})
+    String text;
+
+    @Param({"Serif", "SansSerif", "Monospaced"})
+    String fontName;
+
+    private final GeminiTextToFile renderer = new GeminiTextToFile();
+    private final CancellationToken token = new CancellationToken();
+    private final RenderSpec spec = RenderSpec.DEFAULT;
+    private String signText;
+    private Font font;
+    private List<Polygon> polys;
+    private CSG basePlate, body;
+
+    @Setup
+    public void setup() {
+        signText = BenchmarkData.text(text);
+        font = BenchmarkData.font(fontName);
+        polys = outlines();
+        Envelope env = new Envelope();
+        for (Polygon p : polys) {
+            env.expandToInclude(p.getEnvelopeInternal());
+        }
+        basePlate = new Cube(env.getWidth() + 2 * spec.baseMargin(), env.getHeight() + 2 * spec.baseMargin(),
+            spec.baseHeight()).toCSG()
+            .transformed(Transform.unity().translate(env.getMinX() + env.getWidth() / 2.0,
+                env.getMinY() + env.getHeight() / 2.0, spec.baseHeight() / 2.0));
+        body = extrude();
+    }
+
+    @Benchmark
+    public List<Polygon> outlines() {
+        return renderer.multilineTextToJTS(signText, font, TextAlign.CENTER, ProgressListener.NONE, token);
+    }
+
+    @Benchmark
+    public List<Polygon> inset() {
+        return renderer.insetPolygons(polys, -spec.bevelHeight());
+    }
+
+    @Benchmark
+    public CSG extrude() {
+        return renderer.createExtrusion(polys, spec.letterHeight() - GeminiTextToFile.INLAY_THICKNESS,
+            "Body", ProgressListener.NONE, token)
+            .transformed(Transform.unity().translateZ(spec.baseHeight()));
+    }
+
+    @Benchmark
+    public CSG union() {
+        return basePlate.union(body);
+    }
+}
@@ -0,0 +1,90 @@
+package text3d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/// Whole renders, file written, for every TextToFile implementation.
+/// "cold" uses a new renderer each time, so nothing is cached;
+/// "heightChange" reuses one and alternates the letter height,
+/// as when someone is adjusting the spinners in the GUI.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+public class RendererBenchmark {
+
+    @Param({"C", "G", "F"})
+    String renderer;
+
+    @Param({"STL", "THREEMF"})
+    OutputFormat format;
+
+    @Param({"short", "long", "multiline"})
+    String text;
+
+    @Param({"Serif", "SansSerif", "Monospaced"})
+    String fontName;
+
+    private RendererProvider provider;
+    private TextToFile shared;
+    private Font font;
+    private String signText;
+    private File file;
+    private RenderSpec[] specs;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        provider = RendererRegistry.provider(renderer);
+        if (!provider.formats().contains(format)) {
+            // Fails just this combination; JMH carries on with the rest
+            throw new IllegalStateException(provider.displayName() + " can't write " + format);
+        }
+        shared = provider.create();
+        font = BenchmarkData.font(fontName);
+        signText = BenchmarkData.text(text);
+        file = Files.createTempFile("bench", format.ext()).toFile();
+        RenderSpec d = RenderSpec.DEFAULT;
+        specs = new RenderSpec[] {
+            d, new RenderSpec(d.baseHeight(), d.baseMargin(), d.letterHeight() + 1, d.bevelHeight())
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public long cold() throws IOException {
+        provider.create().generateFile(signText, font, RenderSpec.DEFAULT, file, format, TextAlign.CENTER,
+            ProgressListener.NONE, new CancellationToken());
+        return file.length();
+    }
+
+    @Benchmark
+    public long heightChange() throws IOException {
+        next = 1 - next;
+        shared.generateFile(signText, font, specs[next], file, format, TextAlign.CENTER,
+            ProgressListener.NONE, new CancellationToken());
+        return file.length();
+    }
+}
@@ -0,0 +1,80 @@
+package text3d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/// Packaging a model of about 16MB (that of a long sign from a detailed renderer)
+/// at each compression setting; compare the results with ZipOutputStream, which
+/// deflates on one core. Run with -p to vary the setting, or -t to add threads.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreeMFPackagerBenchmark {
+
+    @Param({"STORED", "FASTEST", "DEFAULT", "SMALLEST"})
+    Compression compression;
+
+    private byte[] model;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 16 << 20; i++) {
+            sb.append(String.format(Locale.ROOT, "          <vertex x=\"%.6f\" y=\"%.6f\" z=\"%.6f\"/>\n",
+                Math.sin(i) * 50, Math.cos(i * 0.7) * 20, (i % 4) * 1.5));
+        }
+        model = sb.toString().getBytes(StandardCharsets.UTF_8);
+        file = Files.createTempFile("bench", ".3mf").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public long packager() throws IOException {
+        try (ThreeMFPackager zip = ThreeMFPackager.create(file, compression);
+             OutputStream out = zip.entry(ThreeMFPackager.MODEL, model.length)) {
+            out.write(model);
+        }
+        return file.length();
+    }
+
+    /// The single-threaded way, for comparison
+    @Benchmark
+    public long zipOutputStream() throws IOException {
+        try (java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(
+                Files.newOutputStream(file.toPath()))) {
+            // For STORED, level 0 gives stored blocks within a deflated entry, as ZipOutputStream
+            // can only store an entry if told its size and CRC first
+            zos.setLevel(compression.level());
+            zos.putNextEntry(new java.util.zip.ZipEntry(ThreeMFPackager.MODEL));
+            zos.write(model);
+            zos.closeEntry();
+        }
+        return file.length();
+    }
+}
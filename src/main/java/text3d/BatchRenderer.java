@@ -0,0 +1,336 @@
+package text3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/// Headless renderer for many .sgn files at once, e.g., all the door signs for a building.
+/// Each file is rendered with its own font, alignment and renderer;
+/// files are spread over a fixed pool of worker threads.
+/// @author Ian Darwin
+public class BatchRenderer {
+
+    public static final String USAGE =
+        "Usage: SignGeneratorMain --batch [-f stl|3mf|obj|ply|glb] [-o outDir] [-j threads] [-r renderer] " +
+        "[-z stored|fastest|default|smallest] [-cache dir [-cache-size MB] [-link]] [-metrics] [-strict] " +
+        "file|dir|glob...";
+
+    private final OutputFormat format;
+    private final Path outDir;
+    private final int threads;
+    private final String defaultRenderer;
+    private ModelCache cache;
+    private boolean writeMetrics;
+    private MeshCheck meshCheck = MeshCheck.REPORT;
+    private Compression compression = Compression.DEFAULT;
+
+    /// The outcome of rendering one .sgn file; metrics is null if it came from the cache,
+    /// and error is null on success
+    record Result(Path input, Path output, long millis, boolean cached, RenderMetrics metrics, Exception error) {}
+
+    /// @param format The output format for all files
+    /// @param outDir Where to put the output, or null to put each next to its input
+    /// @param threads The size of the worker pool
+    /// @param defaultRenderer Renderer id to use for .sgn files that don't name one
+    BatchRenderer(OutputFormat format, Path outDir, int threads, String defaultRenderer) {
+        this.format = format;
+        this.outDir = outDir;
+        this.threads = threads;
+        this.defaultRenderer = defaultRenderer;
+    }
+
+    /// Serve unchanged signs from this cache instead of re-rendering them
+    void setCache(ModelCache cache) {
+        this.cache = cache;
+    }
+
+    /// Write each render's RenderMetrics to a JSON file alongside its output
+    void setWriteMetrics(boolean writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
+    /// How to check each mesh; FAIL makes a non-manifold model an error
+    void setMeshCheck(MeshCheck meshCheck) {
+        this.meshCheck = meshCheck;
+    }
+
+    /// How hard to compress 3MF files
+    void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    /// Render all the given .sgn files, returning results in the same order.
+    /// @throws IllegalArgumentException if two of them would be written to the same file
+    List<Result> renderAll(List<Path> inputs) throws InterruptedException {
+        checkOutputs(inputs);
+        List<Future<Result>> futures = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            for (Path input : inputs) {
+                futures.add(pool.submit(() -> render(input)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    // render() catches everything, so this "can't happen"
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        }
+    }
+
+    private Result render(Path input) {
+        Path output = outputFor(input);
+        long start = System.nanoTime();
+        try {
+            Sign sign = Sign.fromJSON(Files.readString(input));
+            String id = sign.renderer() != null ? sign.renderer() : defaultRenderer;
+            RendererRegistry.checkFormat(id, format);
+            RenderMetrics metrics = cache != null ?
+                cache.generate(sign, id, format, meshCheck, compression, output.toFile()) :
+                RendererRegistry.get(id).generateFile(sign, output.toFile(), format, meshCheck, compression);
+            if (writeMetrics && metrics != null) {
+                metrics.writeSidecar(output);
+            }
+            return new Result(input, output, elapsed(start), metrics == null, metrics, null);
+        } catch (Exception e) {
+            return new Result(input, output, elapsed(start), false, null, e);
+        }
+    }
+
+    private static long elapsed(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    Path outputFor(Path input) {
+        String name = input.getFileName().toString();
+        if (name.endsWith(".sgn")) {
+            name = name.substring(0, name.length() - ".sgn".length());
+        }
+        name += format.ext();
+        Path dir = outDir != null ? outDir : input.toAbsolutePath().getParent();
+        return dir.resolve(name);
+    }
+
+    /// Make sure no two inputs would be written to the same file, e.g., a/101.sgn and b/101.sgn
+    /// with -o, or one file given twice; otherwise one render would silently replace the other
+    /// @throws IllegalArgumentException naming the first pair that would collide
+    void checkOutputs(List<Path> inputs) {
+        Map<Path, Path> seen = new HashMap<>();
+        for (Path input : inputs) {
+            Path output = outputFor(input).toAbsolutePath().normalize();
+            Path other = seen.putIfAbsent(output, input);
+            if (other != null) {
+                throw new IllegalArgumentException(String.format(
+                    "%s and %s would both be written to %s", other, input, output));
+            }
+        }
+    }
+
+    /// Expand command-line arguments into a list of .sgn files.
+    /// Each argument may be a file, a directory (searched recursively),
+    /// or a glob pattern such as "signs/**.sgn" that the shell did not expand.
+    static List<Path> expand(List<String> args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            int glob = indexOfGlob(arg);
+            if (glob >= 0) {
+                int slash = arg.lastIndexOf(File.separatorChar, glob);
+                Path base = Path.of(slash < 0 ? "" : arg.substring(0, slash + 1));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + arg);
+                try (Stream<Path> paths = Files.walk(base)) {
+                    paths.filter(Files::isRegularFile).filter(matcher::matches).sorted().forEach(files::add);
+                }
+            } else {
+                Path path = Path.of(arg);
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> paths = Files.walk(path)) {
+                        paths.filter(Files::isRegularFile)
+                            .filter(p -> p.getFileName().toString().endsWith(".sgn"))
+                            .sorted()
+                            .forEach(files::add);
+                    }
+                } else {
+                    files.add(path);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static int indexOfGlob(String arg) {
+        for (int i = 0; i < arg.length(); i++) {
+            if ("*?[{".indexOf(arg.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static void printSummary(List<Result> results, long wallMillis) {
+        long total = 0;
+        int failures = 0, hits = 0;
+        for (Result r : results) {
+            total += r.millis();
+            if (r.cached()) {
+                ++hits;
+            }
+            if (r.error() == null) {
+                System.out.printf("%8d ms  %s -> %s%s%n", r.millis(), r.input(), r.output(),
+                    r.cached() ? " (cached)" : "");
+            } else {
+                ++failures;
+                System.out.printf("%8d ms  %s FAILED: %s%n", r.millis(), r.input(), r.error());
+            }
+        }
+        System.out.printf("%d file(s), %d failed, %d from cache; %d ms elapsed, %d ms total render time%n",
+            results.size(), failures, hits, wallMillis, total);
+    }
+
+    public static final String RENDER_USAGE =
+        "Usage: SignGeneratorMain --render [-f stl|3mf|obj|ply|glb] [-r renderer] " +
+        "[-z stored|fastest|default|smallest] [-strict] file.sgn";
+
+    /// Entry point for the --render mode of SignGeneratorMain: render one .sgn file
+    /// to standard output, e.g., to pipe into a slicer, with the metrics on standard error
+    /// @return The process exit status
+    static int render(List<String> args) throws IOException {
+        OutputFormat format = OutputFormat.STL;
+        String renderer = null;
+        boolean strict = false;
+        Compression compression = Compression.DEFAULT;
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                switch (arg) {
+                    case "-f" -> format = OutputFormat.fromExtension(args.get(++i));
+                    case "-r" -> renderer = args.get(++i);
+                    case "-z" -> compression = Compression.fromName(args.get(++i));
+                    case "-strict" -> strict = true;
+                    default -> {
+                        if (arg.startsWith("-")) {
+                            System.err.println(RENDER_USAGE);
+                            return 2;
+                        }
+                        inputs.add(arg);
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // An option given without its value
+            System.err.println(RENDER_USAGE);
+            return 2;
+        }
+        if (inputs.size() != 1) {
+            System.err.println(RENDER_USAGE);
+            return 2;
+        }
+        Sign sign = Sign.fromJSON(Files.readString(Path.of(inputs.getFirst())));
+        if (renderer == null) {
+            renderer = sign.renderer() != null ? sign.renderer() : SignGenerator.DEFAULT_RENDERER;
+        }
+        try {
+            RendererRegistry.checkFormat(renderer, format);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        RenderMetrics metrics = RendererRegistry.get(renderer).generate(sign, System.out, format,
+            strict ? MeshCheck.FAIL : MeshCheck.REPORT, compression);
+        System.out.flush();
+        System.err.println(metrics.summary());
+        return System.out.checkError() ? 1 : 0;
+    }
+
+    /// Entry point for the --batch mode of SignGeneratorMain
+    /// @return The process exit status
+    static int main(List<String> args) throws IOException, InterruptedException {
+        OutputFormat format = OutputFormat.STL;
+        Path outDir = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String renderer = SignGenerator.DEFAULT_RENDERER;
+        Path cacheDir = null;
+        long cacheMB = 1024;
+        boolean link = false;
+        boolean metrics = false;
+        boolean strict = false;
+        Compression compression = Compression.DEFAULT;
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                switch (arg) {
+                    case "-f" -> format = OutputFormat.fromExtension(args.get(++i));
+                    case "-o" -> outDir = Path.of(args.get(++i));
+                    case "-j" -> threads = Integer.parseInt(args.get(++i));
+                    case "-r" -> renderer = args.get(++i);
+                    case "-z" -> compression = Compression.fromName(args.get(++i));
+                    case "-cache" -> cacheDir = Path.of(args.get(++i));
+                    case "-cache-size" -> cacheMB = Long.parseLong(args.get(++i));
+                    case "-link" -> link = true;
+                    case "-metrics" -> metrics = true;
+                    case "-strict" -> strict = true;
+                    default -> {
+                        if (arg.startsWith("-")) {
+                            System.err.println(USAGE);
+                            return 2;
+                        }
+                        inputs.add(arg);
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // An option given without its value
+            System.err.println(USAGE);
+            return 2;
+        }
+        List<Path> files = expand(inputs);
+        if (files.isEmpty()) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        // Signs naming another renderer are checked as they're rendered
+        try {
+            RendererRegistry.checkFormat(renderer, format);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        BatchRenderer batch = new BatchRenderer(format, outDir, threads, renderer);
+        try {
+            batch.checkOutputs(files);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        if (outDir != null) {
+            Files.createDirectories(outDir);
+        }
+
+        long start = System.nanoTime();
+        batch.setWriteMetrics(metrics);
+        batch.setMeshCheck(strict ? MeshCheck.FAIL : MeshCheck.REPORT);
+        batch.setCompression(compression);
+        if (cacheDir != null) {
+            batch.setCache(new ModelCache(cacheDir, cacheMB * 1024 * 1024, link));
+        }
+        List<Result> results = batch.renderAll(files);
+        printSummary(results, elapsed(start));
+        return results.stream().anyMatch(r -> r.error() != null) ? 1 : 0;
+    }
+}
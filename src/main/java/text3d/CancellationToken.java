@@ -0,0 +1,27 @@
+package text3d;
+
+import java.util.concurrent.CancellationException;
+
+/// Lets the UI (or any other caller) ask a running render to stop.
+/// Renderers poll this between glyphs and phases; cancel() itself
+/// never interrupts the rendering thread.
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /// Throws if cancel() has been called; renderers call this at safe points.
+    /// @throws CancellationException if the render should stop
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Generation cancelled");
+        }
+    }
+}
@@ -14,8 +14,14 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import static text3d.SignGenerator.*;
 
@@ -25,229 +31,524 @@ import static text3d.SignGenerator.*;
  */
 public class ClaudeTextToFile implements TextToFile {
 
-    public void generateFile(String text, Font font, File file, OutputFormat format, TextAlign align) throws IOException {
-        java.util.List<Shape> letterShapes = new ArrayList<>();
+    static final String ID = "C";
+
+    public static class Provider implements RendererProvider {
+        @Override public String id() { return ID; }
+        @Override public String displayName() { return "Claude Renderer"; }
+        @Override public TextToFile create() { return new ClaudeTextToFile(); }
+    }
+
+    /// Key for the layout of the whole text, which doesn't depend on any Z value
+    record LayoutKey(String text, Font font, TextAlign align) {}
+
+    /// Key for the bevels of the whole text, which depend on the layout and the size of the bevel inset
+    record BevelKey(LayoutKey layout, double bevelInset) {}
+
+    /// Key for the 2D stages of one line (flattening, bottom cap triangulation), laid out at x = 0
+    /// and this y; the alignment only moves it sideways afterwards
+    record LineKey(String line, Font font, double y) {}
+
+    /// Key for the bevels of one line
+    record LineBevelKey(LineKey line, double bevelInset) {}
+
+    /// Key for the extruded letters of one line, which also depend on every dimension
+    record LineMeshKey(LineBevelKey bevel, RenderSpec dimensions) {}
+
+    /// One outer contour of a glyph with its holes, in font units, and its triangulated bottom face
+    record Outline(java.util.List<Point2D> outer, java.util.List<java.util.List<Point2D>> holes,
+            java.util.List<Point2D[]> bottomTris) {}
+
+    /// One line of the text, laid out: every outline, and the bounds of all of them
+    record Layout(java.util.List<Outline> outlines, Rectangle2D bounds) {}
+
+    /// The inset (bevelled) contours of one Outline, in model units, the outer first and then
+    /// its holes, and the triangulated top face
+    record Bevel(java.util.List<PolygonOffset.Ring> rings, java.util.List<Point2D[]> topTris) {}
+
+    /// Key for the extrusion (and its validation), which depends on the bevel and every dimension
+    record ExtrudeKey(BevelKey bevel, RenderSpec dimensions) {}
+
+    /// Where each line of the text goes: its key, which fixes its y, and its x offset
+    /// for the alignment; and the bounds of them all, in place
+    record Placement(java.util.List<LineKey> lines, double[] x, Rectangle2D bounds) {}
+
+    /// How many lines' worth of geometry to keep: all of a few long signs
+    static final int LINES = 64;
+
+    // Each line is laid out, bevelled and extruded on its own, so editing one line of a sign
+    // redoes only that one (and those below it, if its height changed). Lines that only move
+    // sideways, as they all do when the widest line changes, are extruded once and moved.
+    // Changing only Z values (e.g., base or letter height) reuses the layout and bevels,
+    // and redoes only the cheap extrusion and writing; changing only the format just rewrites.
+    final RenderStage<LineKey, Layout> lineStage = new RenderStage<>("Layout", LINES,
+        (key, context) -> layoutLine(key.line(), key.font(), key.y()),
+        (event, key, layout) -> event.finish(() -> RenderPhaseEvent.glyphsIn(key.line()),
+            () -> contours(layout.outlines()),
+            () -> layout.outlines().stream().mapToInt(o -> o.bottomTris().size()).sum(), RenderPhaseEvent.NONE));
+    private final RenderStage<LineBevelKey, java.util.List<Bevel>> lineBevelStage = new RenderStage<>("Bevel", LINES,
+        this::bevels,
+        (event, key, bevels) -> event.finish(RenderPhaseEvent.NONE,
+            () -> bevels.stream().mapToInt(b -> b.rings().size()).sum(),
+            () -> bevels.stream().mapToInt(b -> b.topTris().size()).sum(), RenderPhaseEvent.NONE));
+    final RenderStage<LineMeshKey, java.util.List<Triangle>> lineMeshStage = new RenderStage<>("Extrude line", LINES,
+        this::extrudeLine,
+        (event, key, triangles) -> event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, triangles::size,
+            RenderPhaseEvent.NONE));
+    // Whole models are big, so keep just enough to write one in a few formats
+    private final RenderStage<ExtrudeKey, java.util.List<Triangle>> extrudeStage = new RenderStage<>("Extrude", 2,
+        this::extrude,
+        (event, key, triangles) -> event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, triangles::size,
+            RenderPhaseEvent.NONE));
+    private final RenderStage<ExtrudeKey, MeshReport> validateStage = new RenderStage<>("Validate", 2,
+        (key, context) -> validate(extrudeStage.get(key, context), context.cancel()),
+        (event, key, mesh) -> event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, mesh::triangles,
+            RenderPhaseEvent.NONE));
+
+    /// The per-vertex arithmetic, across SIMD lanes where the JVM allows
+    private static final GeometryKernels KERNELS = GeometryKernels.INSTANCE;
+
+    /// Bevel vertices are kept well over removeDuplicates' 0.01 font units apart,
+    /// so the triangulated top face keeps all of them and meets the bevel exactly
+    private static final PolygonOffset OFFSET = new PolygonOffset(PolygonOffset.DEFAULT_MITER_LIMIT, 0.02 * SCALE_FACTOR);
+
+    /// Texts with more glyphs than this are generated by generateStreaming
+    static final int STREAMING_GLYPHS = 2_000;
+
+    /// Only to decide on ZIP64 in advance for streamed 3MF; a glyph of a detailed font is a few hundred
+    private static final long ESTIMATED_TRIANGLES_PER_GLYPH = 600;
+
+    @Override
+    public RenderMetrics generate(String text, Font font, RenderSpec spec, WritableByteChannel channel, OutputFormat format,
+                                  TextAlign align, ProgressListener progress, CancellationToken cancel) throws IOException {
+        if (RenderPhaseEvent.glyphsIn(text) > STREAMING_GLYPHS) {
+            return generateStreaming(text, font, spec, channel, format, align, progress, cancel);
+        }
+        return generateStaged(text, font, spec, channel, format, align, progress, cancel);
+    }
+
+    /// Generation through the cached stages, holding the whole model
+    RenderMetrics generateStaged(String text, Font font, RenderSpec spec, WritableByteChannel channel,
+                                 OutputFormat format, TextAlign align, ProgressListener progress,
+                                 CancellationToken cancel) throws IOException {
+        RenderMetrics.Builder metrics = new RenderMetrics.Builder(ID, format);
+        RenderStage.Context context = new RenderStage.Context(metrics, progress, cancel);
+        ExtrudeKey key = new ExtrudeKey(new BevelKey(new LayoutKey(text, font, align), spec.bevelHeight() * 0.7),
+            spec.dimensions());
+        java.util.List<Triangle> triangles = extrudeStage.get(key, context);
+
+        if (spec.meshCheck() != MeshCheck.OFF) {
+            MeshReport mesh = validateStage.get(key, context);
+            spec.meshCheck().enforce(mesh);
+            metrics.mesh(mesh);
+        }
+
+        progress.progress("Writing", 0, 1);
+        RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Write " + format);
+        CountingChannel out = new CountingChannel(channel);
+        switch (format) {
+            case STL:
+                writeSTL(triangles, out, cancel);
+                break;
+            case THREEMF:
+                write3MF(triangles, out, spec.compression(), cancel);
+                break;
+            case OBJ:
+            case PLY:
+            case GLB:
+                try (IndexedMesh mesh = indexed(triangles, cancel)) {
+                    mesh.write(out, format);
+                }
+                break;
+        }
+        event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, triangles::size, out::count);
+        progress.progress("Writing", 1, 1);
+        return metrics.build(triangles.size(), uniqueVertices(triangles), out.count());
+    }
+
+    /// Out-of-core generation, for long plaques and the like, where memory mustn't grow with the text.
+    /// A first, cheap pass measures each line from its glyphs' outlines, which places the lines and
+    /// sizes the base just as place() would. Then the base, and each glyph in turn, is flattened,
+    /// bevelled, extruded and handed to a MeshSink, which writes it out before the next is made,
+    /// so only one glyph's geometry is ever held. Nothing is cached. The staged path also sorts
+    /// contours a glyph at a time, and moves lines across the same way, so the model is the same
+    /// as generate() makes, bar the order of the triangles.
+    /// With MeshCheck.FAIL a bad glyph still fails the render, but part of the output has been written;
+    /// as on cancellation, the sink is aborted rather than closed, so that part isn't a finished model.
+    RenderMetrics generateStreaming(String text, Font font, RenderSpec spec, WritableByteChannel channel,
+                                    OutputFormat format, TextAlign align, ProgressListener progress,
+                                    CancellationToken cancel) throws IOException {
+        RenderMetrics.Builder metrics = new RenderMetrics.Builder(ID, format);
+        FontRenderContext frc = fontRenderContext();
         String[] lines = text.split("\n");
+
+        RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Measure");
+        Rectangle2D[] lineBounds = new Rectangle2D[lines.length];
+        double[] lineY = new double[lines.length];
         double currentY = 0;
         double maxWidth = 0;
+        for (int n = 0; n < lines.length; n++) {
+            cancel.checkCancelled();
+            progress.progress("Measure", n, lines.length);
+            if (lines[n].trim().isEmpty()) continue;
+            lineBounds[n] = glyphBounds(font.createGlyphVector(frc, lines[n]), currentY);
+            lineY[n] = currentY;
+            maxWidth = Math.max(maxWidth, lineBounds[n].getWidth());
+            currentY += lineBounds[n].getHeight() + 10;
+        }
+        double[] lineX = new double[lines.length];
+        Rectangle2D overallBounds = null;
+        for (int n = 0; n < lines.length; n++) {
+            if (lineBounds[n] == null) continue;
+            double lineWidth = lineBounds[n].getWidth();
+            lineX[n] = switch (align) {
+                case CENTER -> (maxWidth - lineWidth) / 2;
+                case RIGHT -> maxWidth - lineWidth;
+                default -> 0;
+            };
+            Rectangle2D placed = new Rectangle2D.Double(lineBounds[n].getX() + lineX[n], lineBounds[n].getY(),
+                lineWidth, lineBounds[n].getHeight());
+            overallBounds = overallBounds == null ? placed : overallBounds.createUnion(placed);
+        }
+        if (overallBounds == null) {
+            throw new IOException("No valid text to generate");
+        }
+        event.finish(() -> RenderPhaseEvent.glyphsIn(text), RenderPhaseEvent.NONE, RenderPhaseEvent.NONE,
+            RenderPhaseEvent.NONE);
+
+        int glyphs = (int) RenderPhaseEvent.glyphsIn(text);
+        CountingChannel out = new CountingChannel(channel);
+        MeshSink sink = MeshSink.open(format, out, spec.compression(), glyphs * ESTIMATED_TRIANGLES_PER_GLYPH);
+        java.util.List<Triangle> shell = new ArrayList<>(), letter = new ArrayList<>();
+        MeshReport mesh = null;
+        try {
+            event = RenderPhaseEvent.start(metrics, "Extrude");
+            addBase(shell, baseBounds(overallBounds, spec), spec);
+            event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, shell::size, RenderPhaseEvent.NONE);
+            mesh = emit(sink, shell, spec, format, mesh, metrics, cancel);
+
+            int done = 0;
+            for (int n = 0; n < lines.length; n++) {
+                if (lineBounds[n] == null) continue;
+                GlyphVector gv = font.createGlyphVector(frc, lines[n]);
+                for (int g = 0; g < gv.getNumGlyphs(); g++) {
+                    cancel.checkCancelled();
+                    progress.progress("Geometry", done++, glyphs);
+                    event = RenderPhaseEvent.start(metrics, "Outlines");
+                    java.util.List<Outline> outlines = extractOutlines(gv.getGlyphOutline(g, 0, (float) lineY[n]));
+                    event.finish(() -> 1, () -> contours(outlines), RenderPhaseEvent.NONE, RenderPhaseEvent.NONE);
+                    for (Outline outline : outlines) {
+                        event = RenderPhaseEvent.start(metrics, "Bevel");
+                        Bevel bevel = computeBevel(outline, spec.bevelHeight() * 0.7);
+                        event.finish(RenderPhaseEvent.NONE, () -> 1 + outline.holes().size(),
+                            () -> bevel.topTris().size(), RenderPhaseEvent.NONE);
+                        event = RenderPhaseEvent.start(metrics, "Extrude");
+                        letter.clear();
+                        addLetter(letter, outline, bevel, spec);
+                        // Moved across in model units, as generate() moves its lines
+                        shell.clear();
+                        translate(letter, lineX[n] * SCALE_FACTOR, shell);
+                        event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, shell::size, RenderPhaseEvent.NONE);
+                        mesh = emit(sink, shell, spec, format, mesh, metrics, cancel);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            try {
+                sink.abort();
+            } catch (IOException e) {
+                t.addSuppressed(e);
+            }
+            throw t;
+        }
+        progress.progress("Writing", 0, 1);
+        event = RenderPhaseEvent.start(metrics, "Write " + format);
+        sink.close();
+        event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, sink::triangleCount, out::count);
+        progress.progress("Writing", 1, 1);
+        if (mesh != null) {
+            metrics.mesh(mesh);
+        }
+        return metrics.build(sink.triangleCount(), sink.vertexCount(), out.count());
+    }
 
-        // First pass: create shapes and find max width
-        for (String line : lines) {
-            if (line.trim().isEmpty()) continue;
+    /// Check a shell if the spec asks, and write it
+    /// @return The report so far, with this shell's added
+    private static MeshReport emit(MeshSink sink, java.util.List<Triangle> shell, RenderSpec spec, OutputFormat format,
+                                   MeshReport mesh, RenderMetrics.Builder metrics, CancellationToken cancel)
+            throws IOException {
+        if (spec.meshCheck() != MeshCheck.OFF) {
+            RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Validate");
+            MeshReport report = validate(shell, cancel);
+            event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, shell::size, RenderPhaseEvent.NONE);
+            spec.meshCheck().enforce(report);
+            mesh = mesh == null ? report : mesh.plus(report);
+        }
+        RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Write " + format);
+        sink.add(shell, cancel);
+        event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, shell::size, RenderPhaseEvent.NONE);
+        return mesh;
+    }
 
-            Shape lineShape = createTextShape(line, font, 0, currentY);
-            if (lineShape != null) {
-                letterShapes.add(lineShape);
-                Rectangle2D bounds = lineShape.getBounds2D();
-                maxWidth = Math.max(maxWidth, bounds.getWidth());
-                currentY += bounds.getHeight() + 10;
+    /// The bounds of a line of glyphs at (0, y), as those of its outline, but taken a glyph at a time
+    private static Rectangle2D glyphBounds(GlyphVector gv, double y) {
+        Rectangle2D bounds = null;
+        for (int g = 0; g < gv.getNumGlyphs(); g++) {
+            Shape glyph = gv.getGlyphOutline(g, 0, (float) y);
+            if (glyph.getPathIterator(null).isDone()) {
+                continue;   // e.g., a space, which adds nothing to the outline's bounds
             }
+            bounds = bounds == null ? glyph.getBounds2D() : bounds.createUnion(glyph.getBounds2D());
         }
+        return bounds != null ? bounds : new Rectangle2D.Double();
+    }
 
-        if (letterShapes.isEmpty()) {
-            throw new IOException("No valid text to generate");
+    /// Check the mesh as the slicer will see it, i.e., with vertices rounded as written (%.6f)
+    static MeshReport validate(java.util.List<Triangle> triangles, CancellationToken cancel) {
+        MeshValidator validator = new MeshValidator(1e-6);
+        for (Triangle t : triangles) {
+            cancel.checkCancelled();
+            validator.add(t.p1.x, t.p1.y, t.p1.z, t.p2.x, t.p2.y, t.p2.z, t.p3.x, t.p3.y, t.p3.z);
         }
+        return validator.report();
+    }
 
-        // Second pass: apply alignment if needed
-        if (align != TextAlign.LEFT) {
-            java.util.List<Shape> alignedShapes = new ArrayList<>();
-            currentY = 0;
+    /// The triangles with their vertices shared, welded at the precision we write STL with;
+    /// off the heap if there are enough of them, in which case the mesh must be closed
+    static IndexedMesh indexed(java.util.List<Triangle> triangles, CancellationToken cancel) {
+        return indexed(triangles, triangles.size() >= IndexedMesh.OFF_HEAP_TRIANGLES, cancel);
+    }
 
-            for (String line : lines) {
-                if (line.trim().isEmpty()) continue;
+    static IndexedMesh indexed(java.util.List<Triangle> triangles, boolean offHeap, CancellationToken cancel) {
+        IndexedMesh mesh = new IndexedMesh(1e-6, offHeap);
+        for (Triangle t : triangles) {
+            cancel.checkCancelled();
+            mesh.add(t.p1.x, t.p1.y, t.p1.z, t.p2.x, t.p2.y, t.p2.z, t.p3.x, t.p3.y, t.p3.z);
+        }
+        return mesh;
+    }
 
-                Shape originalShape = letterShapes.get(alignedShapes.size());
-                Rectangle2D bounds = originalShape.getBounds2D();
-                double lineWidth = bounds.getWidth();
+    /// Count the distinct vertices among the triangles
+    static long uniqueVertices(java.util.List<Triangle> triangles) {
+        record Key(double x, double y, double z) {}
+        java.util.Set<Key> seen = new java.util.HashSet<>();
+        for (Triangle t : triangles) {
+            seen.add(new Key(t.p1.x, t.p1.y, t.p1.z));
+            seen.add(new Key(t.p2.x, t.p2.y, t.p2.z));
+            seen.add(new Key(t.p3.x, t.p3.y, t.p3.z));
+        }
+        return seen.size();
+    }
 
-                double xOffset = switch (align) {
-                    case CENTER -> (maxWidth - lineWidth) / 2;
-                    case RIGHT -> maxWidth - lineWidth;
-                    default -> 0;
-                };
+    /// Count the outer contours and holes
+    private static int contours(java.util.List<Outline> outlines) {
+        int n = 0;
+        for (Outline o : outlines) {
+            n += 1 + o.holes().size();
+        }
+        return n;
+    }
 
-                Shape lineShape = createTextShape(line, font, xOffset, currentY);
-                if (lineShape != null) {
-                    alignedShapes.add(lineShape);
-                    currentY += bounds.getHeight() + 10;
-                }
-            }
-            letterShapes = alignedShapes;
+    /// Place the lines of the text, one under another and aligned, from the lines' own layouts at x = 0
+    Placement place(LayoutKey key, RenderStage.Context context) throws IOException {
+        String[] texts = key.text().split("\n");
+        java.util.List<LineKey> lines = new ArrayList<>();
+        java.util.List<Rectangle2D> lineBounds = new ArrayList<>();
+        double currentY = 0;
+        double maxWidth = 0;
+        for (int n = 0; n < texts.length; n++) {
+            context.cancel().checkCancelled();
+            context.progress().progress("Layout", n, texts.length);
+            if (texts[n].trim().isEmpty()) continue;
+            LineKey line = new LineKey(texts[n], key.font(), currentY);
+            Rectangle2D bounds = lineStage.get(line, context).bounds();
+            lines.add(line);
+            lineBounds.add(bounds);
+            maxWidth = Math.max(maxWidth, bounds.getWidth());
+            currentY += bounds.getHeight() + 10;
+        }
+        if (lines.isEmpty()) {
+            throw new IOException("No valid text to generate");
         }
 
-        Rectangle2D overallBounds = letterShapes.getFirst().getBounds2D();
-        for (int i = 1; i < letterShapes.size(); i++) {
-            overallBounds = overallBounds.createUnion(letterShapes.get(i).getBounds2D());
+        double[] x = new double[lines.size()];
+        Rectangle2D overallBounds = null;
+        for (int n = 0; n < lines.size(); n++) {
+            Rectangle2D bounds = lineBounds.get(n);
+            x[n] = switch (key.align()) {
+                case CENTER -> (maxWidth - bounds.getWidth()) / 2;
+                case RIGHT -> maxWidth - bounds.getWidth();
+                default -> 0;
+            };
+            Rectangle2D placed = new Rectangle2D.Double(bounds.getX() + x[n], bounds.getY(),
+                bounds.getWidth(), bounds.getHeight());
+            overallBounds = overallBounds == null ? placed : overallBounds.createUnion(placed);
+        }
+        return new Placement(lines, x, overallBounds);
+    }
+
+    /// One line flattened into outlines at (0, y), with their bottom faces triangulated.
+    /// Contours are sorted into outers and holes a glyph at a time, as generateStreaming does,
+    /// so one glyph drawn over or inside another (e.g., a combining mark) stays a shell of its own.
+    Layout layoutLine(String line, Font font, double y) {
+        GlyphVector gv = font.createGlyphVector(fontRenderContext(), line);
+        java.util.List<Outline> outlines = new ArrayList<>();
+        for (int g = 0; g < gv.getNumGlyphs(); g++) {
+            outlines.addAll(extractOutlines(gv.getGlyphOutline(g, 0, (float) y)));
         }
+        return new Layout(outlines, glyphBounds(gv, y));
+    }
 
-        Rectangle2D baseBounds = new Rectangle2D.Double(
-            overallBounds.getX() - DEFAULT_BASE_MARGIN,
-            overallBounds.getY() - DEFAULT_BASE_MARGIN,
-            overallBounds.getWidth() + 2 * DEFAULT_BASE_MARGIN,
-            overallBounds.getHeight() + 2 * DEFAULT_BASE_MARGIN
-        );
+    /// The bevel stage, for one line: inset each of its outlines
+    private java.util.List<Bevel> bevels(LineBevelKey key, RenderStage.Context context) throws IOException {
+        java.util.List<Outline> outlines = lineStage.get(key.line(), context).outlines();
+        java.util.List<Bevel> bevels = new ArrayList<>();
+        for (int n = 0; n < outlines.size(); n++) {
+            context.cancel().checkCancelled();
+            context.progress().progress("Bevel", n, outlines.size());
+            bevels.add(computeBevel(outlines.get(n), key.bevelInset()));
+        }
+        return bevels;
+    }
 
+    /// The letters of one line, extruded where the line is laid out, at x = 0
+    private java.util.List<Triangle> extrudeLine(LineMeshKey key, RenderStage.Context context) throws IOException {
+        java.util.List<Outline> outlines = lineStage.get(key.bevel().line(), context).outlines();
+        java.util.List<Bevel> bevels = lineBevelStage.get(key.bevel(), context);
         java.util.List<Triangle> triangles = new ArrayList<>();
+        for (int n = 0; n < outlines.size(); n++) {
+            context.cancel().checkCancelled();
+            addLetter(triangles, outlines.get(n), bevels.get(n), key.dimensions());
+        }
+        return triangles;
+    }
 
-        addBase(triangles, baseBounds);
+    /// The whole model: the base, and each line's letters moved across into place
+    private java.util.List<Triangle> extrude(ExtrudeKey key, RenderStage.Context context) throws IOException {
+        Placement placement = place(key.bevel().layout(), context);
+        java.util.List<Triangle> triangles = new ArrayList<>();
+        addBase(triangles, baseBounds(placement.bounds(), key.dimensions()), key.dimensions());
+        for (int n = 0; n < placement.lines().size(); n++) {
+            context.cancel().checkCancelled();
+            context.progress().progress("Geometry", n, placement.lines().size());
+            LineMeshKey line = new LineMeshKey(
+                new LineBevelKey(placement.lines().get(n), key.bevel().bevelInset()), key.dimensions());
+            translate(lineMeshStage.get(line, context), placement.x()[n] * SCALE_FACTOR, triangles);
+        }
+        return triangles;
+    }
 
-        for (Shape shape : letterShapes) {
-            addLetterGeometry(triangles, shape);
+    /// Add the triangles to the list, moved dx along the x axis; the same ones, if dx is 0
+    static void translate(java.util.List<Triangle> from, double dx, java.util.List<Triangle> to) {
+        if (dx == 0) {
+            to.addAll(from);
+            return;
         }
-
-        switch (format) {
-            case STL:
-                writeSTL(triangles, file);
-                break;
-            case THREEMF:
-                write3MF(triangles, file);
-                break;
+        for (Triangle t : from) {
+            to.add(new Triangle(new Point3D(t.p1.x + dx, t.p1.y, t.p1.z), new Point3D(t.p2.x + dx, t.p2.y, t.p2.z),
+                new Point3D(t.p3.x + dx, t.p3.y, t.p3.z), t.normal));
         }
     }
 
-    private void write3MF(java.util.List<Triangle> triangles, File file) throws IOException {
+    /// The base plate under the text, in font units: the bounds of the text plus the margin all round
+    static Rectangle2D baseBounds(Rectangle2D overallBounds, RenderSpec spec) {
+        return new Rectangle2D.Double(
+            overallBounds.getX() - spec.baseMargin(),
+            overallBounds.getY() - spec.baseMargin(),
+            overallBounds.getWidth() + 2 * spec.baseMargin(),
+            overallBounds.getHeight() + 2 * spec.baseMargin()
+        );
+    }
+
+    void write3MF(java.util.List<Triangle> triangles, WritableByteChannel out, Compression compression,
+                  CancellationToken cancel) throws IOException {
         // 3MF is a ZIP file with specific structure
-        try (java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(
-                new FileOutputStream(file))) {
-
-            // Add [Content_Types].xml
-            zos.putNextEntry(new java.util.zip.ZipEntry("[Content_Types].xml"));
-            zos.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">\n" +
-                "  <Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>\n" +
-                "  <Default Extension=\"model\" ContentType=\"application/vnd.ms-package.3dmanufacturing-3dmodel+xml\"/>\n" +
-                "</Types>\n").getBytes());
-            zos.closeEntry();
-
-            // Add _rels/.rels
-            zos.putNextEntry(new java.util.zip.ZipEntry("_rels/.rels"));
-            zos.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">\n" +
-                "  <Relationship Target=\"/3D/3dmodel.model\" Id=\"rel0\" Type=\"http://schemas.microsoft.com/3dmanufacturing/2013/01/3dmodel\"/>\n" +
-                "</Relationships>\n").getBytes());
-            zos.closeEntry();
-
-            // Add 3D/3dmodel.model (the main model file)
-            zos.putNextEntry(new java.util.zip.ZipEntry("3D/3dmodel.model"));
-            write3DModelXML(zos, triangles);
-            zos.closeEntry();
-        }
-    }
-
-    private void write3DModelXML(java.util.zip.ZipOutputStream zos, java.util.List<Triangle> triangles) throws IOException {
-        StringBuilder xml = new StringBuilder();
+        try (ThreeMFPackager zip = new ThreeMFPackager(out, compression);
+             Writer xml = new BufferedWriter(new OutputStreamWriter(
+                 zip.entry(ThreeMFPackager.MODEL, MODEL_BYTES_PER_TRIANGLE * triangles.size()),
+                 StandardCharsets.UTF_8), 1 << 16)) {
+            write3DModelXML(xml, triangles, cancel);
+        }
+    }
+
+    /// Roughly how much each triangle adds to the model XML, with its share of the vertices
+    static final long MODEL_BYTES_PER_TRIANGLE = 320;
+
+    private void write3DModelXML(Writer xml, java.util.List<Triangle> triangles,
+                                 CancellationToken cancel) throws IOException {
         xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
         xml.append("<model unit=\"millimeter\" xml:lang=\"en-US\" xmlns=\"http://schemas.microsoft.com/3dmanufacturing/core/2015/02\">\n");
         xml.append("  <resources>\n");
 
-        // Build vertex and triangle lists
-        java.util.List<Point3D> vertices = new ArrayList<>();
-        java.util.List<int[]> triangleIndices = new ArrayList<>();
-
-        for (Triangle tri : triangles) {
-            int idx1 = addVertex(vertices, tri.p1);
-            int idx2 = addVertex(vertices, tri.p2);
-            int idx3 = addVertex(vertices, tri.p3);
-
-            triangleIndices.add(new int[]{idx1, idx2, idx3});
-        }
-
-        // Write mesh object (no materials/colors)
+        // Welded as for the other indexed formats, by hashing, not by searching every vertex so far
         xml.append("    <object id=\"2\" type=\"model\">\n");
-        xml.append("      <mesh>\n");
-        xml.append("        <vertices>\n");
-        for (Point3D v : vertices) {
-            xml.append(String.format("          <vertex x=\"%.6f\" y=\"%.6f\" z=\"%.6f\"/>\n",
-                v.x, v.y, v.z));
-        }
-        xml.append("        </vertices>\n");
-        xml.append("        <triangles>\n");
-        for (int[] tri : triangleIndices) {
-            xml.append(String.format("          <triangle v1=\"%d\" v2=\"%d\" v3=\"%d\"/>\n",
-                tri[0], tri[1], tri[2]));
-        }
-        xml.append("        </triangles>\n");
-        xml.append("      </mesh>\n");
+        try (IndexedMesh mesh = indexed(triangles, cancel)) {
+            mesh.writeModelMesh(xml);
+        }
         xml.append("    </object>\n");
         xml.append("  </resources>\n");
         xml.append("  <build>\n");
         xml.append("    <item objectid=\"2\"/>\n");
         xml.append("  </build>\n");
         xml.append("</model>\n");
-
-        zos.write(xml.toString().getBytes());
     }
 
-    private int addVertex(java.util.List<Point3D> vertices, Point3D p) {
-        // Check if vertex already exists with very tight tolerance
-        // This is critical for eliminating open edges
-        final double EPSILON = 1e-9;
-        for (int i = 0; i < vertices.size(); i++) {
-            Point3D existing = vertices.get(i);
-            if (Math.abs(existing.x - p.x) < EPSILON &&
-                Math.abs(existing.y - p.y) < EPSILON &&
-                Math.abs(existing.z - p.z) < EPSILON) {
-                return i;
-            }
-        }
-        vertices.add(p);
-        return vertices.size() - 1;
-    }
-
-
-    private void writeSTL(List<Triangle> triangles, File file) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+    void writeSTL(List<Triangle> triangles, WritableByteChannel out, CancellationToken cancel) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
             writer.write("solid TextSign ; ClaudeRenderer\n");
 
             for (Triangle tri : triangles) {
-                writer.write(String.format("  facet normal %.6f %.6f %.6f\n",
-                    tri.normal.x, tri.normal.y, tri.normal.z));
-                writer.write("    outer loop\n");
-                writer.write(String.format("      vertex %.6f %.6f %.6f\n",
-                    tri.p1.x, tri.p1.y, tri.p1.z));
-                writer.write(String.format("      vertex %.6f %.6f %.6f\n",
-                    tri.p2.x, tri.p2.y, tri.p2.z));
-                writer.write(String.format("      vertex %.6f %.6f %.6f\n",
-                    tri.p3.x, tri.p3.y, tri.p3.z));
-                writer.write("    endloop\n");
-                writer.write("  endfacet\n");
+                cancel.checkCancelled();
+                writeFacet(writer, tri);
             }
 
             writer.write("endsolid TextSign\n");
         }
     }
 
-    private static class Point3D {
+    static void writeFacet(Writer writer, Triangle tri) throws IOException {
+        writer.write(String.format(Locale.ROOT, "  facet normal %.6f %.6f %.6f\n",
+            tri.normal.x, tri.normal.y, tri.normal.z));
+        writer.write("    outer loop\n");
+        writer.write(String.format(Locale.ROOT, "      vertex %.6f %.6f %.6f\n",
+            tri.p1.x, tri.p1.y, tri.p1.z));
+        writer.write(String.format(Locale.ROOT, "      vertex %.6f %.6f %.6f\n",
+            tri.p2.x, tri.p2.y, tri.p2.z));
+        writer.write(String.format(Locale.ROOT, "      vertex %.6f %.6f %.6f\n",
+            tri.p3.x, tri.p3.y, tri.p3.z));
+        writer.write("    endloop\n");
+        writer.write("  endfacet\n");
+    }
+
+    static class Point3D {
         double x, y, z;
         Point3D(double x, double y, double z) {
             this.x = x; this.y = y; this.z = z;
         }
     }
 
-    private static class Triangle {
+    static class Triangle {
         Point3D p1, p2, p3, normal;
         Triangle(Point3D p1, Point3D p2, Point3D p3, Point3D normal) {
             this.p1 = p1; this.p2 = p2; this.p3 = p3; this.normal = normal;
         }
     }
 
-    private Shape createTextShape(String text, Font font, double x, double y) {
+    private static FontRenderContext fontRenderContext() {
         BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2d = img.createGraphics();
         FontRenderContext frc = g2d.getFontRenderContext();
-        GlyphVector gv = font.createGlyphVector(frc, text);
-        Shape shape = gv.getOutline((float)x, (float)y);
         g2d.dispose();
-        return shape;
+        return frc;
     }
 
-    private void addBase(java.util.List<Triangle> triangles, Rectangle2D bounds) {
+    void addBase(java.util.List<Triangle> triangles, Rectangle2D bounds, RenderSpec spec) {
         double x1 = bounds.getX() * SCALE_FACTOR;
         double y1 = -bounds.getY() * SCALE_FACTOR;
         double x2 = (bounds.getX() + bounds.getWidth()) * SCALE_FACTOR;
         double y2 = -(bounds.getY() + bounds.getHeight()) * SCALE_FACTOR;
         double z0 = 0;
-        double z1 = DEFAULT_BASE_HEIGHT;
+        double z1 = spec.baseHeight();
 
         addQuad(triangles,
             new Point3D(x1, y1, z0), new Point3D(x2, y1, z0),
@@ -269,7 +570,7 @@ public class ClaudeTextToFile implements TextToFile {
             new Point3D(x1, y1, z1), new Point3D(x1, y1, z0), new Point3D(-1, 0, 0));
     }
 
-    private void addLetterGeometry(java.util.List<Triangle> triangles, Shape shape) {
+    private java.util.List<Outline> extractOutlines(Shape shape) {
         PathIterator pi = shape.getPathIterator(null, 0.5);
         java.util.List<java.util.List<Point2D>> allContours = new ArrayList<>();
         java.util.List<Point2D> currentContour = new ArrayList<>();
@@ -294,13 +595,6 @@ public class ClaudeTextToFile implements TextToFile {
                     currentContour.add(newPoint);
                 }
             } else if (type == PathIterator.SEG_CLOSE) {
-                // Ensure the contour is actually closed
-                if (!currentContour.isEmpty() && firstPoint != null) {
-                    Point2D lastPoint = currentContour.getLast();
-                    if (lastPoint.distance(firstPoint) > 0.001) {
-                        currentContour.add(new Point2D.Double(firstPoint.getX(), firstPoint.getY()));
-                    }
-                }
                 if (currentContour.size() > 2) {
                     allContours.add(new ArrayList<>(currentContour));
                 }
@@ -312,12 +606,6 @@ public class ClaudeTextToFile implements TextToFile {
 
         // Handle unclosed contour at end
         if (currentContour.size() > 2) {
-            if (firstPoint != null) {
-                Point2D lastPoint = currentContour.getLast();
-                if (lastPoint.distance(firstPoint) > 0.001) {
-                    currentContour.add(new Point2D.Double(firstPoint.getX(), firstPoint.getY()));
-                }
-            }
             allContours.add(new ArrayList<>(currentContour));
         }
 
@@ -325,18 +613,33 @@ public class ClaudeTextToFile implements TextToFile {
         java.util.List<java.util.List<Point2D>> outerContours = new ArrayList<>();
         java.util.List<java.util.List<Point2D>> holeContours = new ArrayList<>();
 
+        // Clean the contours once, here, so the walls and the triangulated faces get
+        // exactly the same points, else the faces don't meet the walls. Contours are closed
+        // implicitly everywhere they're used, so this also drops any repeat of the first point.
+        allContours.replaceAll(contour -> removeDuplicates(contour, 0.01));
+        allContours.removeIf(contour -> contour.size() < 3);
+
+        // A contour inside an odd number of others is a hole. Going by winding alone
+        // only works for some fonts, as TrueType and PostScript outlines wind opposite ways;
+        // so having classified them, make them all wind the same way, which is what
+        // the side walls and bevels (reversed for holes) expect.
         for (java.util.List<Point2D> contour : allContours) {
-            if (contour.size() > 2) {
-                if (isClockwise(contour)) {
-                    outerContours.add(contour);
-                } else {
-                    holeContours.add(contour);
+            int depth = 0;
+            for (java.util.List<Point2D> other : allContours) {
+                if (other != contour && pointInPolygon(contour.getFirst(), other)) {
+                    ++depth;
                 }
             }
+            boolean hole = depth % 2 == 1;
+            if (!isClockwise(contour)) {
+                Collections.reverse(contour);
+            }
+            (hole ? holeContours : outerContours).add(contour);
         }
 
         // Process EACH outer contour with its associated holes
         // Match holes to their containing outer contours
+        java.util.List<Outline> outlines = new ArrayList<>();
         for (java.util.List<Point2D> outer : outerContours) {
             java.util.List<java.util.List<Point2D>> matchingHoles = new ArrayList<>();
 
@@ -347,8 +650,10 @@ public class ClaudeTextToFile implements TextToFile {
                 }
             }
 
-            addLetterWithProperTriangulation(triangles, outer, matchingHoles);
+            // Triangulate bottom face (ring if holes exist)
+            outlines.add(new Outline(outer, matchingHoles, triangulatePolygonWithHoles(outer, matchingHoles)));
         }
+        return outlines;
     }
 
     private boolean pointInPolygon(Point2D point, java.util.List<Point2D> polygon) {
@@ -368,191 +673,185 @@ public class ClaudeTextToFile implements TextToFile {
         return (intersections % 2) == 1;
     }
 
-    private void addLetterWithProperTriangulation(java.util.List<Triangle> triangles, java.util.List<Point2D> outer, java.util.List<java.util.List<Point2D>> holes) {
-        double zBase = DEFAULT_BASE_HEIGHT;
-        double zTop = DEFAULT_BASE_HEIGHT + DEFAULT_LETTER_HEIGHT - DEFAULT_BEVEL_HEIGHT;
-        double zBevel = DEFAULT_BASE_HEIGHT + DEFAULT_LETTER_HEIGHT;
-        double bevelInset = DEFAULT_BEVEL_HEIGHT * 0.7;
-
-        // Pre-calculate beveled vertices for outer contour
-        Point2D center = calculateCentroid(outer);
-        double cx = center.getX() * SCALE_FACTOR;
-        double cy = -center.getY() * SCALE_FACTOR;
-
-        java.util.List<Point3D> outerTopVertices = new ArrayList<>();
-        java.util.List<Point3D> outerBevelVertices = new ArrayList<>();
-
-        for (Point2D p : outer) {
-            double x = p.getX() * SCALE_FACTOR;
-            double y = -p.getY() * SCALE_FACTOR;
+    /// Inset the contours of an outline to make its bevel, and triangulate the bevelled top face.
+    /// The inset contours are in model units, so they line up with the top of the side walls.
+    Bevel computeBevel(Outline outline, double bevelInset) {
+        java.util.List<PolygonOffset.Ring> rings = inset(outline, bevelInset);
 
-            outerTopVertices.add(new Point3D(x, y, zTop));
-
-            // Calculate inset position for bevel
-            double dx = cx - x;
-            double dy = cy - y;
-            double len = Math.sqrt(dx*dx + dy*dy);
-            if (len > 0.001) {
-                double bx = x + (dx/len) * bevelInset;
-                double by = y + (dy/len) * bevelInset;
-                outerBevelVertices.add(new Point3D(bx, by, zBevel));
-            } else {
-                // Degenerate case: point is at center
-                outerBevelVertices.add(new Point3D(x, y, zBevel));
-            }
+        // Triangulate the top beveled surface (including holes), back in font units
+        java.util.List<java.util.List<Point2D>> bevelHoles = new ArrayList<>();
+        for (PolygonOffset.Ring hole : rings.subList(1, rings.size())) {
+            bevelHoles.add(toFontUnits(hole));
         }
+        return new Bevel(rings, triangulatePolygonWithHoles(toFontUnits(rings.getFirst()), bevelHoles));
+    }
 
-        // Add side walls for outer contour using pre-calculated vertices
-        for (int i = 0; i < outer.size(); i++) {
-            Point2D p1 = outer.get(i);
-            Point2D p2 = outer.get((i + 1) % outer.size());
-
-            double x1 = p1.getX() * SCALE_FACTOR;
-            double y1 = -p1.getY() * SCALE_FACTOR;
-            double x2 = p2.getX() * SCALE_FACTOR;
-            double y2 = -p2.getY() * SCALE_FACTOR;
-
-            Point3D bottomP1 = new Point3D(x1, y1, zBase);
-            Point3D bottomP2 = new Point3D(x2, y2, zBase);
-            Point3D topP1 = outerTopVertices.get(i);
-            Point3D topP2 = outerTopVertices.get((i + 1) % outer.size());
+    /// The contours of an outline inset by this much, in model units: the outer first, then its holes
+    static java.util.List<PolygonOffset.Ring> inset(Outline outline, double distance) {
+        return OFFSET.inset(toModelUnits(outline), distance);
+    }
 
-            addQuad(triangles, bottomP1, bottomP2, topP2, topP1, null);
+    /// The contours of an outline in model units, the outer first and then its holes
+    static java.util.List<double[][]> toModelUnits(Outline outline) {
+        java.util.List<double[][]> contours = new ArrayList<>();
+        contours.add(toModelUnits(outline.outer()));
+        for (java.util.List<Point2D> hole : outline.holes()) {
+            contours.add(toModelUnits(hole));
         }
+        return contours;
+    }
 
-        // Pre-calculate beveled vertices for holes
-        java.util.List<java.util.List<Point3D>> holesTopVertices = new ArrayList<>();
-        java.util.List<java.util.List<Point3D>> holesBevelVertices = new ArrayList<>();
-
-        for (java.util.List<Point2D> hole : holes) {
-            Point2D holeCenter = calculateCentroid(hole);
-            double hcx = holeCenter.getX() * SCALE_FACTOR;
-            double hcy = -holeCenter.getY() * SCALE_FACTOR;
-
-            java.util.List<Point3D> holeTopVerts = new ArrayList<>();
-            java.util.List<Point3D> holeBevelVerts = new ArrayList<>();
-
-            for (Point2D p : hole) {
-                double x = p.getX() * SCALE_FACTOR;
-                double y = -p.getY() * SCALE_FACTOR;
+    /// The x and y coordinates of a contour in font units, scaled to model units with y flipped
+    private static double[][] toModelUnits(java.util.List<Point2D> contour) {
+        int n = contour.size();
+        double[] x = new double[n], y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = contour.get(i).getX();
+            y[i] = contour.get(i).getY();
+        }
+        KERNELS.scale(x, SCALE_FACTOR, x, n);
+        KERNELS.scale(y, -SCALE_FACTOR, y, n);
+        return new double[][] { x, y };
+    }
 
-                holeTopVerts.add(new Point3D(x, y, zTop));
+    /// A contour in model units back in font units, for the triangulator
+    private static java.util.List<Point2D> toFontUnits(PolygonOffset.Ring ring) {
+        int n = ring.size();
+        double[] x = new double[n], y = new double[n];
+        KERNELS.unscale(ring.x(), SCALE_FACTOR, x, n);
+        KERNELS.unscale(ring.y(), -SCALE_FACTOR, y, n);
+        java.util.List<Point2D> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(new Point2D.Double(x[i], y[i]));
+        }
+        return result;
+    }
 
-                // For holes, inset is OUTWARD (away from hole center)
-                double dx = x - hcx;
-                double dy = y - hcy;
-                double len = Math.sqrt(dx*dx + dy*dy);
-                if (len > 0.001) {
-                    double bx = x + (dx/len) * bevelInset;
-                    double by = y + (dy/len) * bevelInset;
-                    holeBevelVerts.add(new Point3D(bx, by, zBevel));
-                } else {
-                    holeBevelVerts.add(new Point3D(x, y, zBevel));
-                }
+    /// Extrude one outline and its bevel to the heights in the spec
+    void addLetter(java.util.List<Triangle> triangles, Outline outline, Bevel bevel, RenderSpec spec) {
+        double zBase = spec.baseHeight();
+        double zTop = spec.baseHeight() + spec.letterHeight() - spec.bevelHeight();
+        double zBevel = spec.baseHeight() + spec.letterHeight();
+
+        // The outer contour, then the holes
+        java.util.List<java.util.List<Point2D>> contours = new ArrayList<>();
+        contours.add(outline.outer());
+        contours.addAll(outline.holes());
+
+        // Side walls, up to where the bevel starts
+        java.util.List<Point3D[]> tops = new ArrayList<>();
+        for (int c = 0; c < contours.size(); c++) {
+            double[][] xy = toModelUnits(contours.get(c));
+            int n = xy[0].length;
+            Point3D[] bottom = new Point3D[n], top = new Point3D[n];
+            for (int i = 0; i < n; i++) {
+                bottom[i] = new Point3D(xy[0][i], xy[1][i], zBase);
+                top[i] = new Point3D(xy[0][i], xy[1][i], zTop);
+            }
+            tops.add(top);
+            if (c == 0) {
+                addQuads(triangles, bottom, next(bottom), next(top), top);
+            } else {
+                // Inward-facing walls (reversed winding)
+                addQuads(triangles, bottom, top, next(top), next(bottom));
             }
-
-            holesTopVertices.add(holeTopVerts);
-            holesBevelVertices.add(holeBevelVerts);
         }
 
-        // Add side walls for holes using pre-calculated vertices
-        for (int h = 0; h < holes.size(); h++) {
-            java.util.List<Point2D> hole = holes.get(h);
-            java.util.List<Point3D> holeTopVerts = holesTopVertices.get(h);
-
-            for (int i = 0; i < hole.size(); i++) {
-                Point2D p1 = hole.get(i);
-                Point2D p2 = hole.get((i + 1) % hole.size());
+        addFace(triangles, outline.bottomTris(), zBase, -1);
 
-                double x1 = p1.getX() * SCALE_FACTOR;
-                double y1 = -p1.getY() * SCALE_FACTOR;
-                double x2 = p2.getX() * SCALE_FACTOR;
-                double y2 = -p2.getY() * SCALE_FACTOR;
+        // The bevels, bands from the tops of the walls to the inset contours
+        for (int c = 0; c < contours.size(); c++) {
+            Point3D[] top = tops.get(c);
+            PolygonOffset.Ring ring = bevel.rings().get(c);
+            Point3D[] points = Arrays.copyOf(top, top.length + ring.size());
+            for (int j = 0; j < ring.size(); j++) {
+                points[top.length + j] = new Point3D(ring.x()[j], ring.y()[j], zBevel);
+            }
+            // Reversed winding for inward-facing bevel
+            addTriangles(triangles, points, ring.band(top.length), c > 0);
+        }
 
-                Point3D bottomP1 = new Point3D(x1, y1, zBase);
-                Point3D bottomP2 = new Point3D(x2, y2, zBase);
-                Point3D topP1 = holeTopVerts.get(i);
-                Point3D topP2 = holeTopVerts.get((i + 1) % hole.size());
+        addFace(triangles, bevel.topTris(), zBevel, 1);
+    }
 
-                // Inward-facing walls (reversed winding)
-                addQuad(triangles, bottomP1, topP1, topP2, bottomP2, null);
-            }
+    /// Each point's successor around a closed contour
+    private static Point3D[] next(Point3D[] contour) {
+        Point3D[] result = new Point3D[contour.length];
+        for (int i = 0; i < contour.length; i++) {
+            result[i] = contour[(i + 1) % contour.length];
         }
+        return result;
+    }
 
-        // Triangulate bottom face (ring if holes exist)
-        java.util.List<Point2D[]> bottomTris = triangulatePolygonWithHoles(outer, holes);
-        for (Point2D[] tri : bottomTris) {
-            double x1 = tri[0].getX() * SCALE_FACTOR;
-            double y1 = -tri[0].getY() * SCALE_FACTOR;
-            double x2 = tri[1].getX() * SCALE_FACTOR;
-            double y2 = -tri[1].getY() * SCALE_FACTOR;
-            double x3 = tri[2].getX() * SCALE_FACTOR;
-            double y3 = -tri[2].getY() * SCALE_FACTOR;
-
-            triangles.add(new Triangle(
-                new Point3D(x1, y1, zBase),
-                new Point3D(x2, y2, zBase),
-                new Point3D(x3, y3, zBase),
-                new Point3D(0, 0, -1)));
-        }
-
-        // Add beveled outer edge using pre-calculated vertices
-        for (int i = 0; i < outer.size(); i++) {
-            int nextI = (i + 1) % outer.size();
-            Point3D topP1 = outerTopVertices.get(i);
-            Point3D topP2 = outerTopVertices.get(nextI);
-            Point3D bevelP1 = outerBevelVertices.get(i);
-            Point3D bevelP2 = outerBevelVertices.get(nextI);
-
-            addQuad(triangles, topP1, topP2, bevelP2, bevelP1, null);
-        }
-
-        // Add beveled hole edges using pre-calculated vertices
-        for (int h = 0; h < holes.size(); h++) {
-            java.util.List<Point3D> holeTopVerts = holesTopVertices.get(h);
-            java.util.List<Point3D> holeBevelVerts = holesBevelVertices.get(h);
-
-            for (int i = 0; i < holeTopVerts.size(); i++) {
-                int nextI = (i + 1) % holeTopVerts.size();
-                Point3D topP1 = holeTopVerts.get(i);
-                Point3D topP2 = holeTopVerts.get(nextI);
-                Point3D bevelP1 = holeBevelVerts.get(i);
-                Point3D bevelP2 = holeBevelVerts.get(nextI);
-
-                // Reversed winding for inward-facing bevel
-                addQuad(triangles, topP1, bevelP1, bevelP2, topP2, null);
-            }
+    /// Add the quads p1[i], p2[i], p3[i], p4[i], each as two triangles with the normal of the first
+    private void addQuads(java.util.List<Triangle> triangles, Point3D[] p1, Point3D[] p2, Point3D[] p3, Point3D[] p4) {
+        int n = p1.length;
+        double[] u = new double[3 * n], v = new double[3 * n], normals = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            u[i] = p2[i].x - p1[i].x;
+            u[n + i] = p2[i].y - p1[i].y;
+            u[2 * n + i] = p2[i].z - p1[i].z;
+            v[i] = p3[i].x - p1[i].x;
+            v[n + i] = p3[i].y - p1[i].y;
+            v[2 * n + i] = p3[i].z - p1[i].z;
+        }
+        KERNELS.normals(u, v, normals, n);
+        for (int i = 0; i < n; i++) {
+            addQuad(triangles, p1[i], p2[i], p3[i], p4[i],
+                new Point3D(normals[i], normals[n + i], normals[2 * n + i]));
         }
+    }
 
-        // Triangulate the top beveled surface (including holes)
-        java.util.List<Point2D> bevelOuter = new ArrayList<>();
-        for (Point3D p : outerBevelVertices) {
-            bevelOuter.add(new Point2D.Double(p.x / SCALE_FACTOR, -p.y / SCALE_FACTOR));
+    /// Add triangles given as three indices each into points, turned over if reversed
+    private void addTriangles(java.util.List<Triangle> triangles, Point3D[] points, int[] tris, boolean reversed) {
+        int n = tris.length / 3;
+        double[] u = new double[3 * n], v = new double[3 * n], normals = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            Point3D p1 = points[tris[3 * i]];
+            Point3D p2 = points[tris[3 * i + (reversed ? 2 : 1)]];
+            Point3D p3 = points[tris[3 * i + (reversed ? 1 : 2)]];
+            u[i] = p2.x - p1.x;
+            u[n + i] = p2.y - p1.y;
+            u[2 * n + i] = p2.z - p1.z;
+            v[i] = p3.x - p1.x;
+            v[n + i] = p3.y - p1.y;
+            v[2 * n + i] = p3.z - p1.z;
+        }
+        KERNELS.normals(u, v, normals, n);
+        for (int i = 0; i < n; i++) {
+            triangles.add(new Triangle(points[tris[3 * i]], points[tris[3 * i + (reversed ? 2 : 1)]],
+                points[tris[3 * i + (reversed ? 1 : 2)]],
+                new Point3D(normals[i], normals[n + i], normals[2 * n + i])));
         }
+    }
 
-        java.util.List<java.util.List<Point2D>> bevelHoles = new ArrayList<>();
-        for (java.util.List<Point3D> holeBevelVerts : holesBevelVertices) {
-            java.util.List<Point2D> bevelHole = new ArrayList<>();
-            for (Point3D p : holeBevelVerts) {
-                bevelHole.add(new Point2D.Double(p.x / SCALE_FACTOR, -p.y / SCALE_FACTOR));
+    /// Add a flat, horizontal face from triangles in font units, facing up or down as normalZ says
+    private void addFace(java.util.List<Triangle> triangles, java.util.List<Point2D[]> tris, double z, int normalZ) {
+        int n = 3 * tris.size();
+        double[] xs = new double[n], ys = new double[n];
+        for (int t = 0; t < tris.size(); t++) {
+            for (int k = 0; k < 3; k++) {
+                xs[3 * t + k] = tris.get(t)[k].getX();
+                ys[3 * t + k] = tris.get(t)[k].getY();
             }
-            bevelHoles.add(bevelHole);
         }
-
-        java.util.List<Point2D[]> topTris = triangulatePolygonWithHoles(bevelOuter, bevelHoles);
-        for (Point2D[] tri : topTris) {
-            double x1 = tri[0].getX() * SCALE_FACTOR;
-            double y1 = -tri[0].getY() * SCALE_FACTOR;
-            double x2 = tri[1].getX() * SCALE_FACTOR;
-            double y2 = -tri[1].getY() * SCALE_FACTOR;
-            double x3 = tri[2].getX() * SCALE_FACTOR;
-            double y3 = -tri[2].getY() * SCALE_FACTOR;
-
-            triangles.add(new Triangle(
-                new Point3D(x1, y1, zBevel),
-                new Point3D(x2, y2, zBevel),
-                new Point3D(x3, y3, zBevel),
-                new Point3D(0, 0, 1)));
+        KERNELS.scale(xs, SCALE_FACTOR, xs, n);
+        KERNELS.scale(ys, -SCALE_FACTOR, ys, n);
+        for (int t = 0; t < n; t += 3) {
+            double x1 = xs[t], y1 = ys[t];
+            double x2 = xs[t + 1], y2 = ys[t + 1];
+            double x3 = xs[t + 2], y3 = ys[t + 2];
+
+            Point3D p1 = new Point3D(x1, y1, z);
+            Point3D p2 = new Point3D(x2, y2, z);
+            Point3D p3 = new Point3D(x3, y3, z);
+            // The triangulator doesn't promise any particular winding, so fix it up here
+            double cross = (x2 - x1) * (y3 - y1) - (y2 - y1) * (x3 - x1);
+            if (cross * normalZ < 0) {
+                triangles.add(new Triangle(p1, p3, p2, new Point3D(0, 0, normalZ)));
+            } else {
+                triangles.add(new Triangle(p1, p2, p3, new Point3D(0, 0, normalZ)));
+            }
         }
     }
 
@@ -561,7 +860,7 @@ public class ClaudeTextToFile implements TextToFile {
      *
      * @return List of triangles as Point2D triplets
      */
-    private java.util.List<Point2D[]> triangulatePolygonWithHoles(java.util.List<Point2D> outer, java.util.List<java.util.List<Point2D>> holes) {
+    java.util.List<Point2D[]> triangulatePolygonWithHoles(java.util.List<Point2D> outer, java.util.List<java.util.List<Point2D>> holes) {
         java.util.List<Point2D[]> result = new ArrayList<>();
 
         try {
@@ -680,22 +979,9 @@ public class ClaudeTextToFile implements TextToFile {
     }
 
     private void addQuad(java.util.List<Triangle> triangles, Point3D p1, Point3D p2, Point3D p3, Point3D p4, Point3D normal) {
-        if (normal == null) {
-            normal = calculateNormal(p1, p2, p3);
-        }
         triangles.add(new Triangle(p1, p2, p3, normal));
         triangles.add(new Triangle(p1, p3, p4, normal));
     }
 
-    private Point3D calculateNormal(Point3D p1, Point3D p2, Point3D p3) {
-        double ux = p2.x - p1.x, uy = p2.y - p1.y, uz = p2.z - p1.z;
-        double vx = p3.x - p1.x, vy = p3.y - p1.y, vz = p3.z - p1.z;
-        double nx = uy * vz - uz * vy;
-        double ny = uz * vx - ux * vz;
-        double nz = ux * vy - uy * vx;
-        double len = Math.sqrt(nx*nx + ny*ny + nz*nz);
-        return new Point3D(nx/len, ny/len, nz/len);
-    }
-
 
 }
@@ -0,0 +1,33 @@
+package text3d;
+
+import java.util.zip.Deflater;
+
+/// How hard to compress the model inside a 3MF file: a trade of time against size
+public enum Compression {
+    /// No compression at all; the quickest to write, and several times the size
+    STORED(Deflater.NO_COMPRESSION),
+    FASTEST(Deflater.BEST_SPEED),
+    DEFAULT(6),
+    SMALLEST(Deflater.BEST_COMPRESSION);
+
+    private final int level;
+
+    Compression(int level) {
+        this.level = level;
+    }
+
+    /// The Deflater level; unused for STORED
+    int level() {
+        return level;
+    }
+
+    /// Look up a setting by name, ignoring case
+    static Compression fromName(String name) {
+        for (Compression c : values()) {
+            if (c.name().equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression " + name);
+    }
+}
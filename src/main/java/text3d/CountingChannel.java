@@ -0,0 +1,46 @@
+package text3d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/// Counts the bytes a renderer writes, for its RenderMetrics. Closing this
+/// leaves the wrapped channel open, so writers can be closed as usual
+/// without closing the caller's channel.
+/// @author Ian Darwin
+final class CountingChannel implements WritableByteChannel {
+
+    private final WritableByteChannel channel;
+    private long count;
+
+    CountingChannel(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /// The channel being written to
+    WritableByteChannel channel() {
+        return channel;
+    }
+
+    /// The number of bytes written so far
+    long count() {
+        return count;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int n = channel.write(src);
+        count += n;
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        // Leave the caller's channel open
+    }
+}
@@ -0,0 +1,216 @@
+package text3d;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.awt.Font;
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/// The installed font families, with a little about each, for the font chooser (FontDialog).
+/// With a large font collection, enumerating them takes seconds, so the GUI starts this on a
+/// background thread at startup, and opens the chooser, which lists just these families,
+/// only once it's done. The families are also kept on disk
+/// between runs, with a fingerprint of the font directories (how many files, how big, how new),
+/// so they're only worked out afresh when fonts are added, removed or updated.
+/// @author Ian Darwin
+final class FontCatalog {
+
+    /// What we know about one family
+    /// @param name The family name, as the chooser lists it (in the default locale)
+    /// @param faces The names of its fonts, e.g., "DejaVu Sans Bold"
+    /// @param bold Whether one of them is bold
+    /// @param italic Whether one of them is italic or oblique
+    /// @param latin Whether it has letters and digits, unlike symbol and dingbat fonts
+    record Family(String name, List<String> faces, boolean bold, boolean italic, boolean latin) {
+
+        /// One line about it, e.g., for a tooltip
+        String describe() {
+            return String.format(Locale.ROOT, "%s: %d face%s%s%s%s", name, faces.size(),
+                faces.size() == 1 ? "" : "s", bold ? ", bold" : "", italic ? ", italic" : "",
+                latin ? "" : " (no letters)");
+        }
+    }
+
+    /// The file format
+    record Snapshot(String fingerprint, List<Family> families) {}
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader READER = MAPPER.readerFor(Snapshot.class);
+    private static final ObjectWriter WRITER = MAPPER.writerFor(Snapshot.class);
+
+    /// Where the GUI keeps it
+    static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".signgenerator", "fonts.json");
+
+    /// Where fonts are installed, system-wide and per user, on the platforms we know
+    static List<Path> fontDirectories() {
+        String home = System.getProperty("user.home");
+        List<Path> dirs = new ArrayList<>(List.of(
+            Path.of("/usr/share/fonts"), Path.of("/usr/local/share/fonts"), Path.of("/usr/X11R6/lib/X11/fonts"),
+            Path.of(home, ".fonts"), Path.of(home, ".local", "share", "fonts"),
+            Path.of("/System/Library/Fonts"), Path.of("/Library/Fonts"), Path.of(home, "Library", "Fonts")));
+        String windows = System.getenv("WINDIR");
+        if (windows != null) {
+            dirs.add(Path.of(windows, "Fonts"));
+        }
+        String local = System.getenv("LOCALAPPDATA");
+        if (local != null) {
+            dirs.add(Path.of(local, "Microsoft", "Windows", "Fonts"));
+        }
+        return dirs;
+    }
+
+    private final Path file;
+    private final List<Path> fontDirs;
+    private volatile CompletableFuture<List<Family>> families;
+
+    FontCatalog(Path file, List<Path> fontDirs) {
+        this.file = file;
+        this.fontDirs = fontDirs;
+    }
+
+    /// Start loading the families on a background thread
+    /// @return this
+    FontCatalog start() {
+        CompletableFuture<List<Family>> future = new CompletableFuture<>();
+        families = future;
+        Thread.ofPlatform().daemon().name("FontCatalog").start(() -> {
+            try {
+                future.complete(load());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return this;
+    }
+
+    /// The families, when they've been loaded; start() must have been called
+    CompletableFuture<List<Family>> families() {
+        return families;
+    }
+
+    /// Whether the families are loaded, so the chooser won't hold up the GUI
+    boolean isReady() {
+        return families != null && families.isDone();
+    }
+
+    /// The families by name, or none if they aren't loaded (or couldn't be)
+    Map<String, Family> byName() {
+        Map<String, Family> map = new HashMap<>();
+        if (isReady() && !families.isCompletedExceptionally()) {
+            for (Family family : families.join()) {
+                map.put(family.name(), family);
+            }
+        }
+        return map;
+    }
+
+    /// The families, from the file if it's up to date, otherwise from the fonts (and saved)
+    List<Family> load() throws IOException {
+        String fingerprint = fingerprint(fontDirs);
+        if (Files.isReadable(file)) {
+            try {
+                Snapshot saved = READER.readValue(file.toFile());
+                if (fingerprint.equals(saved.fingerprint())) {
+                    return saved.families();
+                }
+            } catch (IOException e) {
+                // Unreadable (e.g., from an older version); just make it again
+            }
+        }
+        List<Family> fresh = enumerate();
+        try {
+            save(new Snapshot(fingerprint, fresh));
+        } catch (IOException e) {
+            // e.g., a read-only home directory; the fonts are still good, they'll just be found again next time
+            System.err.println("Couldn't save the font list to " + file + ": " + e);
+        }
+        return fresh;
+    }
+
+    /// Write the snapshot to a temporary file of its own, so that two programs saving at once
+    /// don't write over each other's, and move it into place
+    private void save(Snapshot snapshot) throws IOException {
+        Path parent = Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(parent, "fonts", ".tmp");
+        try {
+            WRITER.writeValue(temp.toFile(), snapshot);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /// Ask the JDK for every font, and sort them into families
+    static List<Family> enumerate() {
+        Map<String, List<Font>> byFamily = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Font font : GraphicsEnvironment.getLocalGraphicsEnvironment().getAllFonts()) {
+            byFamily.computeIfAbsent(font.getFamily(), k -> new ArrayList<>()).add(font);
+        }
+        List<Family> families = new ArrayList<>(byFamily.size());
+        for (var e : byFamily.entrySet()) {
+            List<String> faces = new ArrayList<>();
+            boolean bold = false, italic = false, latin = false;
+            for (Font font : e.getValue()) {
+                String face = font.getFontName();
+                String lower = face.toLowerCase(Locale.ROOT);
+                faces.add(face);
+                bold |= lower.contains("bold");
+                italic |= lower.contains("italic") || lower.contains("oblique");
+                latin |= font.canDisplayUpTo("AZaz09") == -1;
+            }
+            families.add(new Family(e.getKey(), List.copyOf(faces), bold, italic, latin));
+        }
+        return families;
+    }
+
+    /// Something that changes when fonts are added, removed or replaced in any of these directories:
+    /// the number of files in each, their total size, and the newest time any was modified.
+    /// Parts that can't be read are left out.
+    static String fingerprint(List<Path> dirs) throws IOException {
+        StringBuilder sb = new StringBuilder(Runtime.version().feature() + ";" + Locale.getDefault());
+        for (Path dir : dirs) {
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            long[] totals = new long[3];  // files, bytes, newest
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                    totals[2] = Math.max(totals[2], attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path f, BasicFileAttributes attrs) {
+                    totals[0]++;
+                    totals[1] += attrs.size();
+                    totals[2] = Math.max(totals[2], attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path f, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            sb.append(';').append(dir).append('=').append(totals[0]).append(',').append(totals[1])
+                .append(',').append(totals[2]);
+        }
+        return sb.toString();
+    }
+}
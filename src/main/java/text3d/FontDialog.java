@@ -0,0 +1,154 @@
+package text3d;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.util.List;
+import java.util.Locale;
+
+/// Modal dialog for choosing a font: family, size, bold and italic, with a preview.
+/// The families are FontCatalog's, already found on a background thread (or read from disk),
+/// so unlike a chooser that asks the JDK for them, it opens at once however many fonts are installed.
+/// @author Ian Darwin
+class FontDialog extends JDialog {
+
+    static final String PREVIEW_TEXT = "Room 101";
+    private static final Integer[] SIZES = {8, 10, 11, 12, 14, 16, 18, 20, 24, 30, 36, 40, 48, 60, 72, 96};
+
+    private final List<FontCatalog.Family> families;
+    private final DefaultListModel<FontCatalog.Family> model = new DefaultListModel<>();
+    private final JList<FontCatalog.Family> familyList = new JList<>(model);
+    private final JList<Integer> sizeList = new JList<>(SIZES);
+    private final JCheckBox bold = new JCheckBox("Bold"), italic = new JCheckBox("Italic");
+    private final JLabel preview = new JLabel(PREVIEW_TEXT, SwingConstants.CENTER);
+    private Font selected;
+
+    /// @param families The families to choose from, in the order to list them
+    /// @param initial The font to start at
+    FontDialog(Frame owner, List<FontCatalog.Family> families, Font initial) {
+        super(owner, "Choose Font", true);
+        this.families = families;
+        familyList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // A fixed cell size, so a list of thousands of families isn't measured a cell at a time
+        familyList.setPrototypeCellValue(new FontCatalog.Family("MMMMMMMMMMMMMMMMMMMMMMMM", List.of(), false, false, true));
+        familyList.setFixedCellHeight(familyList.getFontMetrics(familyList.getFont()).getHeight() + 2);
+        familyList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                FontCatalog.Family family = (FontCatalog.Family) value;
+                super.getListCellRendererComponent(list, family.name(), index, isSelected, cellHasFocus);
+                setToolTipText(family.describe());
+                return this;
+            }
+        });
+        sizeList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        filter("");
+
+        JTextField filterField = new JTextField(20);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { filter(filterField.getText()); }
+            @Override public void removeUpdate(DocumentEvent e) { filter(filterField.getText()); }
+            @Override public void changedUpdate(DocumentEvent e) { filter(filterField.getText()); }
+        });
+
+        familyList.addListSelectionListener(e -> updatePreview());
+        sizeList.addListSelectionListener(e -> updatePreview());
+        bold.addActionListener(e -> updatePreview());
+        italic.addActionListener(e -> updatePreview());
+        select(initial);
+
+        JButton okButton = new JButton("OK");
+        okButton.addActionListener(e -> {
+            selected = font();
+            dispose();
+        });
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> dispose());
+
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.add(new JLabel("Filter:"), BorderLayout.WEST);
+        top.add(filterField, BorderLayout.CENTER);
+        JPanel lists = new JPanel(new BorderLayout(5, 5));
+        lists.add(new JScrollPane(familyList), BorderLayout.CENTER);
+        lists.add(new JScrollPane(sizeList), BorderLayout.EAST);
+        JPanel styles = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        styles.add(bold);
+        styles.add(italic);
+        preview.setPreferredSize(new Dimension(360, 100));
+        preview.setBorder(BorderFactory.createEtchedBorder());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(okButton);
+        buttons.add(cancelButton);
+        JPanel bottom = new JPanel(new BorderLayout(5, 5));
+        bottom.add(styles, BorderLayout.NORTH);
+        bottom.add(preview, BorderLayout.CENTER);
+        bottom.add(buttons, BorderLayout.SOUTH);
+
+        JPanel content = new JPanel(new BorderLayout(5, 5));
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(top, BorderLayout.NORTH);
+        content.add(lists, BorderLayout.CENTER);
+        content.add(bottom, BorderLayout.SOUTH);
+        setContentPane(content);
+        getRootPane().setDefaultButton(okButton);
+        setSize(420, 560);
+        setLocationRelativeTo(owner);
+    }
+
+    /// The font chosen, or null if the dialog was cancelled
+    Font getSelectedFont() {
+        return selected;
+    }
+
+    /// List just the families whose names contain the text, keeping the selection if it's still listed
+    private void filter(String text) {
+        FontCatalog.Family current = familyList.getSelectedValue();
+        String wanted = text.trim().toLowerCase(Locale.ROOT);
+        model.clear();
+        for (FontCatalog.Family family : families) {
+            if (family.name().toLowerCase(Locale.ROOT).contains(wanted)) {
+                model.addElement(family);
+            }
+        }
+        if (current != null) {
+            familyList.setSelectedValue(current, true);
+        }
+    }
+
+    private void select(Font font) {
+        for (int i = 0; i < model.size(); i++) {
+            if (model.get(i).name().equalsIgnoreCase(font.getFamily())) {
+                familyList.setSelectedIndex(i);
+                familyList.ensureIndexIsVisible(i);
+                break;
+            }
+        }
+        sizeList.setSelectedValue(font.getSize(), true);
+        if (sizeList.isSelectionEmpty()) {
+            sizeList.setSelectedValue(SignGenerator.DEFAULT_RENDER_FONT_SIZE, true);
+        }
+        bold.setSelected(font.isBold());
+        italic.setSelected(font.isItalic());
+        updatePreview();
+    }
+
+    /// The font as currently chosen, or null if no family is selected
+    private Font font() {
+        FontCatalog.Family family = familyList.getSelectedValue();
+        if (family == null) {
+            return null;
+        }
+        int size = sizeList.isSelectionEmpty() ? SignGenerator.DEFAULT_RENDER_FONT_SIZE : sizeList.getSelectedValue();
+        int style = (bold.isSelected() ? Font.BOLD : 0) | (italic.isSelected() ? Font.ITALIC : 0);
+        return new Font(family.name(), style, size);
+    }
+
+    private void updatePreview() {
+        Font font = font();
+        if (font != null) {
+            preview.setFont(font);
+        }
+    }
+}
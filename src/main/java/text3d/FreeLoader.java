@@ -49,9 +49,9 @@ public class FreeLoader {
 		if (ret.isPresent()) {
 			var os = ret.get();
 			if (os.name().equals(osName)) {
-				System.out.println(os);
+				System.err.println(os);
 				final SymbolLookup LNK = SymbolLookup.libraryLookup(os.libraryName(), Arena.global());
-				System.out.println("Success: LNK = " + LNK);
+				System.err.println("Success: LNK = " + LNK);
 				return LNK;
 			}
 		}
@@ -68,7 +68,7 @@ public class FreeLoader {
 	 * @throws IllegalStateException If we fail to find a single exact match
 	 */
 	public static Path getFontFile(String fontName) throws IOException {
-		System.out.printf("getFontFile(%s)\n", fontName);
+		System.err.printf("getFontFile(%s)\n", fontName);
 		var lcFontName = fontName.toLowerCase();
 		if (getOsInfo().isEmpty()) {
 			throw new IllegalStateException("Don't know font list for " + osName);
@@ -76,7 +76,7 @@ public class FreeLoader {
 		fontPaths.clear();
 		for (String s : getOsInfo().get().fontDirs()) {
 			Path path = Path.of(s);
-			System.out.println("Looking in " + path);
+			System.err.println("Looking in " + path);
 			Files.walk(path, Integer.MAX_VALUE)
 					.filter(p->p.getFileName().toString().endsWith(".ttf"))
 					.filter(p -> p.getFileName()
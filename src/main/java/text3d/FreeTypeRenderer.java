@@ -1,21 +1,43 @@
 package text3d;
 
 import java.awt.*;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.lang.foreign.*;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 public class FreeTypeRenderer implements TextToFile {
 
+    // A constant, so using it doesn't initialize this class either
+    static final String ID = "F";
+
+    /// Kept apart from the renderer so that listing it doesn't run the static
+    /// initializers below, which load the native FreeType library.
+    public static class Provider implements RendererProvider {
+        @Override public String id() { return ID; }
+        @Override public String displayName() { return "FreeType Renderer"; }
+        @Override public Set<OutputFormat> formats() { return EnumSet.of(OutputFormat.STL); }
+        @Override public boolean needsNativeLibrary() { return true; }
+        @Override public TextToFile create() { return new FreeTypeRenderer(); }
+    }
+
     private static final SymbolLookup LNK = FreeLoader.loadFreetypeLibrary();
     private static final Linker LINKER = Linker.nativeLinker();
+    // Glyph outlines come in pixels at 48 per em here, so anything under a fiftieth is noise
+    private static final PolygonOffset OFFSET = new PolygonOffset(PolygonOffset.DEFAULT_MITER_LIMIT, 0.02);
 
     // --- Native Method Handles ---
     private static final MethodHandle FT_Init_FreeType = LINKER.downcallHandle(LNK.find("FT_Init_FreeType").get(), FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
@@ -24,59 +46,135 @@ public class FreeTypeRenderer implements TextToFile {
     private static final MethodHandle FT_Load_Char = LINKER.downcallHandle(LNK.find("FT_Load_Char").get(), FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT));
     private static final MethodHandle FT_Outline_Decompose = LINKER.downcallHandle(LNK.find("FT_Outline_Decompose").get(), FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.ADDRESS));
 
-    private static final float TOTAL_HEIGHT = 2.0f;
-    private static final float BEVEL_VAL = 0.1f;
-    private static final float SHOULDER_Z = TOTAL_HEIGHT - BEVEL_VAL;
+    /// Key for the glyph contours, which depend only on the font file and the text
+    private record ContourKey(Path fontPath, String text) {}
+
+    /// Key for the insets of the contours, which also depend on the size of the bevel
+    private record InsetKey(ContourKey contours, float bevel) {}
+
+    // Re-reading the glyphs means a round trip through FreeType, so keep recent results
+    private final RenderStage<ContourKey, List<Contour>> glyphStage = new RenderStage<>("Glyphs", 8,
+        (key, context) -> {
+            try {
+                return loadContours(key.fontPath(), key.text(), context.progress(), context.cancel());
+            } catch (IOException | CancellationException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IOException("Native FreeType error", t);
+            }
+        },
+        (event, key, contours) -> event.finish(() -> RenderPhaseEvent.glyphsIn(key.text()), contours::size,
+            RenderPhaseEvent.NONE, RenderPhaseEvent.NONE));
+    private final RenderStage<InsetKey, List<PolygonOffset.Ring>> bevelStage = new RenderStage<>("Bevel", 8,
+        (key, context) -> {
+            List<PolygonOffset.Ring> insets = new ArrayList<>();
+            for (Contour contour : glyphStage.get(key.contours(), context)) {
+                context.cancel().checkCancelled();
+                insets.add(calculateInset(contour.points, contour.isClockwise() ? -key.bevel() : key.bevel()));
+            }
+            return insets;
+        },
+        (event, key, insets) -> event.finish(RenderPhaseEvent.NONE, insets::size, RenderPhaseEvent.NONE,
+            RenderPhaseEvent.NONE));
 
     @Override
-    public void generateFile(String text, Font font, File file, OutputFormat format, TextAlign align) throws IOException {
+    public RenderMetrics generate(String text, Font font, RenderSpec spec, WritableByteChannel channel, OutputFormat format,
+                                  TextAlign align, ProgressListener progress, CancellationToken cancel) throws IOException {
+        // Only ASCII STL is written, whatever was asked for
+        RendererRegistry.checkFormat(ID, format);
+        // The mesh is written straight out, never collected for MeshValidator, so it can't pass a check
+        if (spec.meshCheck() == MeshCheck.FAIL) {
+            throw new IOException("The FreeType renderer's meshes aren't validated, so it can't render with " +
+                "MeshCheck.FAIL (-strict)");
+        }
+        RenderMetrics.Builder metrics = new RenderMetrics.Builder(ID, format);
 
         // First see if we can even get the TTF fonf for this font
         String s = font.getFontName();
         // This will throw an exception if it can't find file
         Path fontPath = FreeLoader.getFontFile(s);
 
-        try (Arena arena = Arena.ofConfined(); FileWriter writer = new FileWriter(file)) {
-            writer.write("solid TextSign\n");
+        float totalHeight = (float) spec.letterHeight();
+        float bevel = (float) spec.bevelHeight();
+        float shoulderZ = totalHeight - bevel;
 
-            // 1. Setup FreeType
-            MemorySegment libPtr = arena.allocate(ValueLayout.ADDRESS);
-            FT_Init_FreeType.invokeExact(libPtr);
-            MemorySegment library = libPtr.get(ValueLayout.ADDRESS, 0);
-
-            MemorySegment facePtr = arena.allocate(ValueLayout.ADDRESS);
-            FT_New_Face.invokeExact(library, arena.allocateFrom(fontPath.toString()), 0L, facePtr);
-            MemorySegment face = facePtr.get(ValueLayout.ADDRESS, 0);
-            FT_Set_Pixel_Sizes.invokeExact(face, 0, 48);
+        // 1. Extract Vectors and inset them, unless we've recently done so
+        RenderStage.Context context = new RenderStage.Context(metrics, progress, cancel);
+        ContourKey key = new ContourKey(fontPath, text);
+        List<Contour> contours = glyphStage.get(key, context);
+        List<PolygonOffset.Ring> insets = bevelStage.get(new InsetKey(key, bevel), context);
 
-            // 2. Extract Vectors & Generate Mesh
-            List<Contour> allGlyphContours = fetchGlyphVectors(text, face, arena);
+        // 2. Generate Mesh
+        RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Write " + format);
+        CountingChannel out = new CountingChannel(channel);
+        try (Writer writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write("solid TextSign\n");
 
-            for (Contour contour : allGlyphContours) {
-                boolean isHole = contour.isClockwise();
-                float currentInset = isHole ? -BEVEL_VAL : BEVEL_VAL;
+            for (int n = 0; n < contours.size(); n++) {
+                cancel.checkCancelled();
+                progress.progress("Contours", n, contours.size());
+                Contour contour = contours.get(n);
 
                 // Walls: Base -> Shoulder
-                writeWall(writer, contour.points, contour.points, 0.0f, SHOULDER_Z);
+                writeWall(writer, contour.points, contour.points, 0.0f, shoulderZ);
 
                 // Walls: Shoulder -> Crown (Bevel)
-                List<Vector2> insetPoints = calculateInset(contour.points, currentInset);
-                writeWall(writer, contour.points, insetPoints, SHOULDER_Z, TOTAL_HEIGHT);
+                PolygonOffset.Ring inset = insets.get(n);
+                writeBevel(writer, contour.points, inset, shoulderZ, totalHeight);
 
                 // Top Cap
-                tessellateTop(writer, insetPoints, TOTAL_HEIGHT);
+                tessellateTop(writer, points(inset), totalHeight);
             }
 
             // 3. Base Plate
-            writeBasePlate(writer, allGlyphContours);
+            writeBasePlate(writer, contours, (float) spec.baseMargin(), (float) -spec.baseHeight());
 
             writer.write("endsolid TextSign\n");
-        } catch (Throwable t) {
-            throw new IOException("Native FreeType error", t);
         }
+        event.finish(RenderPhaseEvent.NONE, contours::size, () -> triangles(contours, insets), out::count);
+        return metrics.build(triangles(contours, insets), uniqueVertices(contours, insets), out.count());
+    }
+
+    /// The number of facets written for these contours and their insets:
+    /// a wall, a bevel and a top for each, plus the base
+    private static long triangles(List<Contour> contours, List<PolygonOffset.Ring> insets) {
+        long n = 1;
+        for (int i = 0; i < contours.size(); i++) {
+            int points = contours.get(i).points().size();
+            PolygonOffset.Ring inset = insets.get(i);
+            n += 2L * points + inset.band(points).length / 3 + Math.max(inset.size() - 2, 0);
+        }
+        return n;
     }
 
-    private List<Contour> fetchGlyphVectors(String text, MemorySegment face, Arena arena) throws Throwable {
+    /// The number of distinct vertices: each contour's base, shoulder and inset rings, plus the base
+    private static long uniqueVertices(List<Contour> contours, List<PolygonOffset.Ring> insets) {
+        long n = 3;
+        for (int i = 0; i < contours.size(); i++) {
+            n += 2L * contours.get(i).points().size() + insets.get(i).size();
+        }
+        return n;
+    }
+
+    private List<Contour> loadContours(Path fontPath, String text,
+                                       ProgressListener progress, CancellationToken cancel) throws Throwable {
+        try (Arena arena = Arena.ofConfined()) {
+            // Setup FreeType
+            MemorySegment libPtr = arena.allocate(ValueLayout.ADDRESS);
+            FT_Init_FreeType.invokeExact(libPtr);
+            MemorySegment library = libPtr.get(ValueLayout.ADDRESS, 0);
+
+            MemorySegment facePtr = arena.allocate(ValueLayout.ADDRESS);
+            FT_New_Face.invokeExact(library, arena.allocateFrom(fontPath.toString()), 0L, facePtr);
+            MemorySegment face = facePtr.get(ValueLayout.ADDRESS, 0);
+            FT_Set_Pixel_Sizes.invokeExact(face, 0, 48);
+
+            return fetchGlyphVectors(text, face, arena, progress, cancel);
+        }
+    }
+
+    private List<Contour> fetchGlyphVectors(String text, MemorySegment face, Arena arena,
+                                            ProgressListener progress, CancellationToken cancel) throws Throwable {
         List<Contour> all = new ArrayList<>();
         List<Vector2> current = new ArrayList<>();
 
@@ -95,7 +193,11 @@ public class FreeTypeRenderer implements TextToFile {
         funcs.set(ValueLayout.ADDRESS, 16, funcs.get(ValueLayout.ADDRESS, 8)); // conic as lines
         funcs.set(ValueLayout.ADDRESS, 24, funcs.get(ValueLayout.ADDRESS, 8)); // cubic as lines
 
-        for (char c : text.toCharArray()) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            cancel.checkCancelled();
+            progress.progress("Glyphs", i, chars.length);
             FT_Load_Char.invokeExact(face, (long) c, 1 << 0);
             // Get the pointer to the GlyphSlot (offset 152 in FT_FaceRec)
             MemorySegment glyphSlotPtr = face.get(ValueLayout.ADDRESS, 152);
@@ -125,21 +227,22 @@ public class FreeTypeRenderer implements TextToFile {
         return new Vector2(ptr.get(ValueLayout.JAVA_LONG, 0) / 64.0f, -ptr.get(ValueLayout.JAVA_LONG, 8) / 64.0f);
     }
 
-    private void writeBasePlate(FileWriter writer, List<Contour> contours) throws IOException {
+    private void writeBasePlate(Writer writer, List<Contour> contours, float margin, float z) throws IOException {
         float minX = 0, minY = 0, maxX = 0, maxY = 0;
         for(var c : contours) for(var p : c.points) {
             minX = Math.min(minX, p.x); maxX = Math.max(maxX, p.x);
             minY = Math.min(minY, p.y); maxY = Math.max(maxY, p.y);
         }
         // Simplified: render one box covering the total area + margin
-        writeFacet(writer, new Vector2(minX-2, minY-2), new Vector2(maxX+2, minY-2), new Vector2(minX-2, maxY+2), -2, -2, -2);
+        writeFacet(writer, new Vector2(minX-margin, minY-margin), new Vector2(maxX+margin, minY-margin),
+            new Vector2(minX-margin, maxY+margin), z, z, z);
     }
 
-    private void tessellateTop(FileWriter w, List<Vector2> pts, float z) throws IOException {
+    private void tessellateTop(Writer w, List<Vector2> pts, float z) throws IOException {
         for (int i = 1; i < pts.size() - 1; i++) writeFacet(w, pts.get(0), pts.get(i), pts.get(i+1), z, z, z);
     }
 
-    private void writeWall(FileWriter w, List<Vector2> b, List<Vector2> t, float z1, float z2) throws IOException {
+    private void writeWall(Writer w, List<Vector2> b, List<Vector2> t, float z1, float z2) throws IOException {
         for (int i = 0; i < b.size(); i++) {
             int n = (i + 1) % b.size();
             writeFacet(w, b.get(i), b.get(n), t.get(i), z1, z1, z2);
@@ -147,38 +250,47 @@ public class FreeTypeRenderer implements TextToFile {
         }
     }
 
-    private void writeFacet(FileWriter w, Vector2 v1, Vector2 v2, Vector2 v3, float z1, float z2, float z3) throws IOException {
+    /// The bevel between a contour at z1 and its inset at z2, as PolygonOffset.Ring.band lays it out
+    private void writeBevel(Writer w, List<Vector2> b, PolygonOffset.Ring t, float z1, float z2) throws IOException {
+        int n = b.size();
+        List<Vector2> top = points(t);
+        int[] band = t.band(n);
+        for (int i = 0; i < band.length; i += 3) {
+            int v1 = band[i], v2 = band[i + 1], v3 = band[i + 2];
+            writeFacet(w, v1 < n ? b.get(v1) : top.get(v1 - n), v2 < n ? b.get(v2) : top.get(v2 - n),
+                v3 < n ? b.get(v3) : top.get(v3 - n), v1 < n ? z1 : z2, v2 < n ? z1 : z2, v3 < n ? z1 : z2);
+        }
+    }
+
+    private void writeFacet(Writer w, Vector2 v1, Vector2 v2, Vector2 v3, float z1, float z2, float z3) throws IOException {
         w.write("  facet normal 0 0 0\n    outer loop\n");
-        w.write(String.format("      vertex %.4f %.4f %.4f\n", v1.x, v1.y, z1));
-        w.write(String.format("      vertex %.4f %.4f %.4f\n", v2.x, v2.y, z2));
-        w.write(String.format("      vertex %.4f %.4f %.4f\n", v3.x, v3.y, z3));
+        w.write(String.format(Locale.ROOT, "      vertex %.4f %.4f %.4f\n", v1.x, v1.y, z1));
+        w.write(String.format(Locale.ROOT, "      vertex %.4f %.4f %.4f\n", v2.x, v2.y, z2));
+        w.write(String.format(Locale.ROOT, "      vertex %.4f %.4f %.4f\n", v3.x, v3.y, z3));
         w.write("    endloop\n  endfacet\n");
     }
 
-    private List<Vector2> calculateInset(List<Vector2> pts, float delta) {
-        List<Vector2> inset = new ArrayList<>();
+    /// The contour offset into its own area by delta, or out of it when delta is negative,
+    /// with sharp corners squared off rather than mitered to a spike
+    private PolygonOffset.Ring calculateInset(List<Vector2> pts, float delta) {
+        double[][] c = new double[2][pts.size()];
         for (int i = 0; i < pts.size(); i++) {
-            Vector2 p1 = pts.get((i + pts.size() - 1) % pts.size());
-            Vector2 p2 = pts.get(i);
-            Vector2 p3 = pts.get((i + 1) % pts.size());
-            Vector2 n1 = p2.sub(p1).perp().normalize();
-            Vector2 n2 = p3.sub(p2).perp().normalize();
-            Vector2 bisector = n1.add(n2).normalize();
-            float miterDist = delta / (float) Math.sqrt((1 + n1.dot(n2)) / 2);
-            inset.add(p2.add(bisector.mul(miterDist)));
+            c[0][i] = pts.get(i).x;
+            c[1][i] = pts.get(i).y;
         }
-        return inset;
+        return OFFSET.inset(List.<double[][]>of(c), delta).getFirst();
     }
 
-    record Vector2(float x, float y) {
-        Vector2 add(Vector2 o) { return new Vector2(x + o.x, y + o.y); }
-        Vector2 sub(Vector2 o) { return new Vector2(x - o.x, y - o.y); }
-        Vector2 mul(float s) { return new Vector2(x * s, y * s); }
-        Vector2 perp() { return new Vector2(-y, x); }
-        float dot(Vector2 o) { return x * o.x + y * o.y; }
-        Vector2 normalize() { float m = (float)Math.sqrt(x*x+y*y); return new Vector2(x/m, y/m); }
+    private static List<Vector2> points(PolygonOffset.Ring ring) {
+        List<Vector2> pts = new ArrayList<>(ring.size());
+        for (int j = 0; j < ring.size(); j++) {
+            pts.add(new Vector2((float) ring.x()[j], (float) ring.y()[j]));
+        }
+        return pts;
     }
 
+    record Vector2(float x, float y) {}
+
     record Contour(List<Vector2> points) {
         boolean isClockwise() {
             float sum = 0;
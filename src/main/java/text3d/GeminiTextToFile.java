@@ -6,7 +6,6 @@ import eu.mihosoft.jcsg.Cube;
 import eu.mihosoft.vvecmath.Vector3d;
 import eu.mihosoft.vvecmath.Transform;
 import org.locationtech.jts.geom.*;
-import org.locationtech.jts.operation.buffer.BufferParameters;
 import org.locationtech.jts.algorithm.Orientation;
 
 import java.awt.*;
@@ -14,11 +13,11 @@ import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.PathIterator;
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.List;
-import java.util.zip.*;
 
 import static text3d.SignGenerator.*;
 
@@ -27,56 +26,246 @@ import static text3d.SignGenerator.*;
 /// @author Google Gemini, guided by Ian Darwin
 public class GeminiTextToFile implements TextToFile {
 
+    static final String ID = "G";
+
+    public static class Provider implements RendererProvider {
+        @Override public String id() { return ID; }
+        @Override public String displayName() { return "Gemini Renderer"; }
+        @Override public boolean needsJavaFX() { return true; }
+        @Override public TextToFile create() { return new GeminiTextToFile(); }
+    }
+
+    /// Thickness of the top layer (rim and coloured inlay)
+    static final double INLAY_THICKNESS = 1.0;
+
+    /// For the inset faces; a join shorter than this isn't worth the CSG's trouble
+    private static final PolygonOffset OFFSET = new PolygonOffset(PolygonOffset.DEFAULT_MITER_LIMIT, 1e-3);
+
+    /// Key for the 2D letter outlines, which don't depend on any Z value
+    private record OutlineKey(String text, Font font, TextAlign align) {}
+
+    /// Key for the inset face and border rim, which also depend on the bevel size
+    private record BevelKey(OutlineKey outlines, double bevel) {}
+
+    /// The inset (coloured face) and border (rim) polygons for one bevel size
+    private record Bevel(List<org.locationtech.jts.geom.Polygon> inset, List<org.locationtech.jts.geom.Polygon> border) {}
+
+    /// Key for the extruded parts and their unions, which depend on the bevel and every dimension
+    private record ExtrudeKey(BevelKey bevel, RenderSpec dimensions) {}
+
+    /// The separately extruded parts of the sign, in place
+    private record Parts(CSG basePlate, CSG letterBody, CSG letterRim, CSG letterInlay) {}
+
+    // The JTS steps are repeated only when the text, font or bevel changes, and the
+    // extrusion and unions only when a dimension does too; the unions are the slow part.
+    // CSGs are big, so keep just enough of them to write one model in a few formats.
+    private final RenderStage<OutlineKey, List<org.locationtech.jts.geom.Polygon>> outlineStage =
+        new RenderStage<>("Outlines", 8,
+            (key, context) -> multilineTextToJTS(key.text(), key.font(), key.align(),
+                context.progress(), context.cancel()),
+            (event, key, polys) -> event.finish(() -> RenderPhaseEvent.glyphsIn(key.text()), () -> contours(polys),
+                RenderPhaseEvent.NONE, RenderPhaseEvent.NONE));
+    private final RenderStage<BevelKey, Bevel> bevelStage = new RenderStage<>("Bevel", 8,
+        (key, context) -> {
+            List<org.locationtech.jts.geom.Polygon> outlines = outlineStage.get(key.outlines(), context);
+            // Inset for the colored face and subtraction for the border rim
+            List<org.locationtech.jts.geom.Polygon> inset = insetPolygons(outlines, - key.bevel());
+            return new Bevel(inset, subtractPolygons(outlines, inset));
+        },
+        (event, key, bevel) -> event.finish(RenderPhaseEvent.NONE,
+            () -> contours(bevel.inset()) + contours(bevel.border()), RenderPhaseEvent.NONE, RenderPhaseEvent.NONE));
+    private final RenderStage<ExtrudeKey, Parts> extrudeStage = new RenderStage<>("Extrude", 2, this::extrude,
+        (event, key, parts) -> event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE,
+            () -> triangles(parts.letterBody()) + triangles(parts.letterRim()) + triangles(parts.letterInlay()),
+            RenderPhaseEvent.NONE));
+    /// All but the inlay, which is a separate object in 3MF
+    private final RenderStage<ExtrudeKey, CSG> mainStage = new RenderStage<>("Union", 2,
+        (key, context) -> {
+            Parts parts = extrudeStage.get(key, context);
+            // Check between each union, as they're slow
+            context.progress().progress("Union", 0, 3);
+            CSG combined = parts.basePlate().union(parts.letterBody());
+            context.cancel().checkCancelled();
+            context.progress().progress("Union", 1, 3);
+            combined = combined.union(parts.letterRim());
+            context.cancel().checkCancelled();
+            context.progress().progress("Union", 2, 3);
+            return combined;
+        },
+        (event, key, main) -> event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, () -> triangles(main),
+            RenderPhaseEvent.NONE));
+    /// Everything, for the single-mesh formats
+    private final RenderStage<ExtrudeKey, CSG> allStage = new RenderStage<>("Union", 2,
+        (key, context) -> {
+            CSG all = mainStage.get(key, context).union(extrudeStage.get(key, context).letterInlay());
+            context.cancel().checkCancelled();
+            return all;
+        },
+        (event, key, all) -> event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, () -> triangles(all),
+            RenderPhaseEvent.NONE));
+
     @Override
-    public void generateFile(String text, Font font, File file, OutputFormat format, TextAlign align) throws IOException {
+    public RenderMetrics generate(String text, Font font, RenderSpec spec, WritableByteChannel channel, OutputFormat format,
+                                  TextAlign align, ProgressListener progress, CancellationToken cancel) throws IOException {
+        RenderMetrics.Builder metrics = new RenderMetrics.Builder(ID, format);
+        RenderStage.Context context = new RenderStage.Context(metrics, progress, cancel);
         // 1. Generate 2D Polygons via JTS
-        List<org.locationtech.jts.geom.Polygon> fullLetterPolys = multilineTextToJTS(text, font, align);
-        if (fullLetterPolys.isEmpty()) return;
+        OutlineKey outlineKey = new OutlineKey(text, font, align);
+        if (outlineStage.get(outlineKey, context).isEmpty()) return metrics.build(0, 0, 0);
+        cancel.checkCancelled();
+        ExtrudeKey key = new ExtrudeKey(new BevelKey(outlineKey, spec.bevelHeight()), spec.dimensions());
+
+        // 4. Export logic
+        CountingChannel out = new CountingChannel(channel);
+        if (format != OutputFormat.THREEMF) {
+            // The other formats are a single mesh; union everything
+            CSG all = allStage.get(key, context);
+            progress.progress("Union", 3, 3);
+            validate(spec.meshCheck(), metrics, all);
+            RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Write " + format);
+            if (format == OutputFormat.STL) {
+                try (Writer writer = Channels.newWriter(out, StandardCharsets.UTF_8)) {
+                    writer.write(all.toStlString());
+                }
+            } else {
+                try (IndexedMesh mesh = indexed(all)) {
+                    mesh.write(out, format);
+                }
+            }
+            event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, () -> triangles(all), out::count);
+            return metrics.build(triangles(all), uniqueVertices(all), out.count());
+        } else {
+            // 3MF supports multi-material; group by intended color
+            CSG main = mainStage.get(key, context);
+            CSG letterInlay = extrudeStage.get(key, context).letterInlay();
+            progress.progress("Union", 3, 3);
+            validate(spec.meshCheck(), metrics, main, letterInlay);
+            RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Write " + format);
+            Map<String, CSG> parts = new LinkedHashMap<>();
+            parts.put("Main_Structure", main);
+            parts.put("Text_Inlay", letterInlay);
+            export3MF(out, parts, spec.compression());
+            event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE,
+                () -> triangles(main) + triangles(letterInlay), out::count);
+            return metrics.build(triangles(main) + triangles(letterInlay),
+                uniqueVertices(main, letterInlay), out.count());
+        }
+    }
 
-        // Inset for the colored face and subtraction for the border rim
-        List<org.locationtech.jts.geom.Polygon> insetPolys = insetPolygons(fullLetterPolys, - DEFAULT_BEVEL_HEIGHT);
-        List<org.locationtech.jts.geom.Polygon> borderPolys = subtractPolygons(fullLetterPolys, insetPolys);
+    /// The extrusion stage: the base plate, and the letters in their three parts
+    private Parts extrude(ExtrudeKey key, RenderStage.Context context) throws IOException {
+        List<org.locationtech.jts.geom.Polygon> fullLetterPolys = outlineStage.get(key.bevel().outlines(), context);
+        Bevel bevel = bevelStage.get(key.bevel(), context);
+        RenderSpec spec = key.dimensions();
+        ProgressListener progress = context.progress();
+        CancellationToken cancel = context.cancel();
 
         // Calculate total bounds for the base plate
         Envelope env = new Envelope();
-        fullLetterPolys.forEach(p -> env.expandToInclude(p.getEnvelopeInternal()));
+        for (var p : fullLetterPolys) {
+            env.expandToInclude(p.getEnvelopeInternal());
+        }
 
         // 2. Build the Base Plate
         // JCSG Cube is centered at 0,0,0. We move Z up by half its height so bottom is at Z=0.
-        double baseW = env.getWidth() + (DEFAULT_BASE_MARGIN * 2);
-        double baseH = env.getHeight() + (DEFAULT_BASE_MARGIN * 2);
-        CSG basePlate = new Cube(baseW, baseH, DEFAULT_BASE_HEIGHT).toCSG();
+        double baseW = env.getWidth() + (spec.baseMargin() * 2);
+        double baseH = env.getHeight() + (spec.baseMargin() * 2);
+        CSG basePlate = new Cube(baseW, baseH, spec.baseHeight()).toCSG();
 
         double cx = env.getMinX() + env.getWidth() / 2.0;
         double cy = env.getMinY() + env.getHeight() / 2.0;
-        basePlate = basePlate.transformed(Transform.unity().translate(cx, cy, DEFAULT_BASE_HEIGHT / 2.0));
+        basePlate = basePlate.transformed(Transform.unity().translate(cx, cy, spec.baseHeight() / 2.0));
 
         // 3. Build the Letter Components
-        Transform textRise = Transform.unity().translateZ(DEFAULT_BASE_HEIGHT);
+        Transform textRise = Transform.unity().translateZ(spec.baseHeight());
 
         // Body: The bottom part of the letters (stalk)
-        CSG letterBody = createExtrusion(fullLetterPolys, DEFAULT_LETTER_HEIGHT - 1.0).transformed(textRise);
+        CSG letterBody = createExtrusion(fullLetterPolys, spec.letterHeight() - INLAY_THICKNESS, "Body", progress, cancel).transformed(textRise);
 
         // Top: The Rim (same color as body) and Inlay (different color)
-        Transform topRise = textRise.translateZ(DEFAULT_LETTER_HEIGHT - 1.0);
-        CSG letterRim = createExtrusion(borderPolys, 1.0).transformed(topRise);
-        CSG letterInlay = createExtrusion(insetPolys, 1.0).transformed(topRise);
+        Transform topRise = textRise.translateZ(spec.letterHeight() - INLAY_THICKNESS);
+        CSG letterRim = createExtrusion(bevel.border(), INLAY_THICKNESS, "Rim", progress, cancel).transformed(topRise);
+        CSG letterInlay = createExtrusion(bevel.inset(), INLAY_THICKNESS, "Inlay", progress, cancel).transformed(topRise);
+        return new Parts(basePlate, letterBody, letterRim, letterInlay);
+    }
 
-        // 4. Export logic
-        if (format == OutputFormat.STL) {
-            // STL is a single mesh; union everything
-            CSG combined = basePlate.union(letterBody).union(letterRim).union(letterInlay);
-            Files.writeString(file.toPath(), combined.toStlString());
-        } else {
-            // 3MF supports multi-material; group by intended color
-            Map<String, CSG> parts = new LinkedHashMap<>();
-            parts.put("Main_Structure", basePlate.union(letterBody).union(letterRim));
-            parts.put("Text_Inlay", letterInlay);
-            export3MF(file, parts);
+    /// Check each part (a separate object in a 3MF file) as a mesh of its own, as written;
+    /// coordinates are rounded to the coarsest precision we write (%.4f, in 3MF)
+    private static void validate(MeshCheck check, RenderMetrics.Builder metrics, CSG... parts) throws IOException {
+        if (check == MeshCheck.OFF) {
+            return;
+        }
+        RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Validate");
+        MeshReport mesh = null;
+        for (CSG part : parts) {
+            MeshValidator validator = new MeshValidator(1e-4);
+            for (var p : part.getPolygons()) {
+                // Fan-triangulated, just as it's written
+                var v0 = p.vertices.get(0).pos;
+                for (int i = 1; i < p.vertices.size() - 1; i++) {
+                    var v1 = p.vertices.get(i).pos;
+                    var v2 = p.vertices.get(i + 1).pos;
+                    validator.add(v0.getX(), v0.getY(), v0.getZ(), v1.getX(), v1.getY(), v1.getZ(),
+                        v2.getX(), v2.getY(), v2.getZ());
+                }
+            }
+            mesh = mesh == null ? validator.report() : mesh.plus(validator.report());
+        }
+        MeshReport report = mesh;
+        event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, report::triangles, RenderPhaseEvent.NONE);
+        check.enforce(report);
+        metrics.mesh(report);
+    }
+
+    /// Count the exterior and interior rings
+    private static long contours(List<org.locationtech.jts.geom.Polygon> polys) {
+        long n = 0;
+        for (var p : polys) {
+            n += 1 + p.getNumInteriorRing();
+        }
+        return n;
+    }
+
+    /// Count the distinct vertex positions in all the parts
+    private static long uniqueVertices(CSG... parts) {
+        Set<List<Double>> seen = new HashSet<>();
+        for (CSG part : parts) {
+            for (var p : part.getPolygons()) {
+                for (var v : p.vertices) {
+                    seen.add(List.of(v.pos.getX(), v.pos.getY(), v.pos.getZ()));
+                }
+            }
+        }
+        return seen.size();
+    }
+
+    /// The CSG's polygons as triangle fans, with vertices welded at the precision we write 3MF with;
+    /// off the heap for big models
+    private static IndexedMesh indexed(CSG csg) {
+        IndexedMesh mesh = new IndexedMesh(1e-4, triangles(csg) >= IndexedMesh.OFF_HEAP_TRIANGLES);
+        for (var p : csg.getPolygons()) {
+            var v0 = p.vertices.getFirst().pos;
+            for (int i = 1; i < p.vertices.size() - 1; i++) {
+                var v1 = p.vertices.get(i).pos;
+                var v2 = p.vertices.get(i + 1).pos;
+                mesh.add(v0.getX(), v0.getY(), v0.getZ(), v1.getX(), v1.getY(), v1.getZ(),
+                    v2.getX(), v2.getY(), v2.getZ());
+            }
         }
+        return mesh;
     }
 
-    private List<org.locationtech.jts.geom.Polygon> multilineTextToJTS(String text, Font font, TextAlign align) {
+    /// Count the triangles a CSG's polygons will be written as
+    private static long triangles(CSG csg) {
+        long n = 0;
+        for (var p : csg.getPolygons()) {
+            n += p.vertices.size() - 2;
+        }
+        return n;
+    }
+
+    List<org.locationtech.jts.geom.Polygon> multilineTextToJTS(String text, Font font, TextAlign align,
+                                                               ProgressListener progress, CancellationToken cancel) {
         String[] lines = text.split("\n");
         FontRenderContext frc = new FontRenderContext(null, true, true);
         double lineSpacing = font.getSize() * 1.2;
@@ -96,6 +285,8 @@ public class GeminiTextToFile implements TextToFile {
         List<org.locationtech.jts.geom.Polygon> allPolys = new ArrayList<>();
         double yOffset = 0;
         for (int i = 0; i < lines.length; i++) {
+            cancel.checkCancelled();
+            progress.progress("Outlines", i, lines.length);
             if (!lines[i].trim().isEmpty()) {
                 double xOffset = switch (align) {
                     case LEFT -> 0;
@@ -146,11 +337,15 @@ public class GeminiTextToFile implements TextToFile {
         return result;
     }
 
-    private CSG createExtrusion(List<org.locationtech.jts.geom.Polygon> jtsPolys, double depth) {
+    CSG createExtrusion(List<org.locationtech.jts.geom.Polygon> jtsPolys, double depth,
+                        String phase, ProgressListener progress, CancellationToken cancel) {
         CSG result = null;
         Vector3d dir = Vector3d.xyz(0, 0, depth);
 
+        int n = 0;
         for (org.locationtech.jts.geom.Polygon jp : jtsPolys) {
+            cancel.checkCancelled();
+            progress.progress(phase, n++, jtsPolys.size());
             // Shell must be CCW for most renderers
             LinearRing shell = jp.getExteriorRing();
             if (Orientation.isCCW(shell.getCoordinates())) shell = shell.reverse();
@@ -177,20 +372,47 @@ public class GeminiTextToFile implements TextToFile {
         return pts;
     }
 
-    private List<org.locationtech.jts.geom.Polygon> insetPolygons(List<org.locationtech.jts.geom.Polygon> inputs, double dist) {
+    /// Offset each polygon by dist, as buffer(dist) would (negative shrinks it), but with
+    /// PolygonOffset: about twice as fast, and each polygon keeps its holes however thin the strokes
+    List<org.locationtech.jts.geom.Polygon> insetPolygons(List<org.locationtech.jts.geom.Polygon> inputs, double dist) {
+        GeometryFactory gf = new GeometryFactory();
         List<org.locationtech.jts.geom.Polygon> res = new ArrayList<>();
         for (var p : inputs) {
-            Geometry g = p.buffer(dist, 8, BufferParameters.CAP_ROUND);
-            if (g instanceof org.locationtech.jts.geom.Polygon poly) res.add(poly);
-            else if (g instanceof MultiPolygon mp) {
-                for (int i = 0; i < mp.getNumGeometries(); i++) {
-                    if (mp.getGeometryN(i) instanceof org.locationtech.jts.geom.Polygon sp) res.add(sp);
-                }
+            List<double[][]> contours = new ArrayList<>();
+            contours.add(contour(p.getExteriorRing()));
+            for (int i = 0; i < p.getNumInteriorRing(); i++) {
+                contours.add(contour(p.getInteriorRingN(i)));
             }
+            List<PolygonOffset.Ring> rings = OFFSET.inset(contours, -dist);
+            LinearRing[] holes = new LinearRing[rings.size() - 1];
+            for (int i = 1; i < rings.size(); i++) {
+                holes[i - 1] = linearRing(gf, rings.get(i));
+            }
+            res.add(gf.createPolygon(linearRing(gf, rings.getFirst()), holes));
         }
         return res;
     }
 
+    /// A JTS ring as {x[], y[]}, without the repeat of its first point
+    private static double[][] contour(LineString ring) {
+        Coordinate[] coords = ring.getCoordinates();
+        double[][] c = new double[2][coords.length - 1];
+        for (int i = 0; i < coords.length - 1; i++) {
+            c[0][i] = coords[i].x;
+            c[1][i] = coords[i].y;
+        }
+        return c;
+    }
+
+    private static LinearRing linearRing(GeometryFactory gf, PolygonOffset.Ring ring) {
+        Coordinate[] coords = new Coordinate[ring.size() + 1];
+        for (int i = 0; i < ring.size(); i++) {
+            coords[i] = new Coordinate(ring.x()[i], ring.y()[i]);
+        }
+        coords[ring.size()] = coords[0].copy();
+        return gf.createLinearRing(coords);
+    }
+
     private List<org.locationtech.jts.geom.Polygon> subtractPolygons(List<org.locationtech.jts.geom.Polygon> main, List<org.locationtech.jts.geom.Polygon> minus) {
         GeometryFactory fact = new GeometryFactory();
         Geometry m = fact.buildGeometry(main);
@@ -205,30 +427,30 @@ public class GeminiTextToFile implements TextToFile {
 
     // --- 3MF Packager ---
 
-    private void export3MF(File file, Map<String, CSG> parts) throws IOException {
-        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
-            addZipEntry(zos, "[Content_Types].xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\"><Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/><Default Extension=\"model\" ContentType=\"application/vnd.ms-package.3dmanufacturing-3dmodel+xml\"/></Types>");
-            addZipEntry(zos, "_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\"><Relationship Target=\"/3D/3dmodel.model\" Id=\"rel0\" Type=\"http://schemas.microsoft.com/3dmanufacturing/2013/01/3dmodel\"/></Relationships>");
-            zos.putNextEntry(new ZipEntry("3D/3dmodel.model"));
-            zos.write(buildModelXml(parts).getBytes(StandardCharsets.UTF_8));
-            zos.closeEntry();
+    void export3MF(WritableByteChannel out, Map<String, CSG> parts, Compression compression) throws IOException {
+        // Polygons don't share vertices, so each triangle is about 200 bytes of XML
+        long triangles = parts.values().stream().mapToLong(GeminiTextToFile::triangles).sum();
+        try (ThreeMFPackager zip = new ThreeMFPackager(out, compression);
+             Writer xml = new BufferedWriter(new OutputStreamWriter(
+                 zip.entry(ThreeMFPackager.MODEL, 200 * triangles), StandardCharsets.UTF_8), 1 << 16)) {
+            writeModelXml(xml, parts);
         }
     }
 
-    private String buildModelXml(Map<String, CSG> parts) {
-        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><model unit=\"millimeter\" xml:lang=\"en-US\" xmlns=\"http://schemas.microsoft.com/3dmanufacturing/core/2015/02\"><resources>");
+    private void writeModelXml(Writer sb, Map<String, CSG> parts) throws IOException {
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?><model unit=\"millimeter\" xml:lang=\"en-US\" xmlns=\"http://schemas.microsoft.com/3dmanufacturing/core/2015/02\"><resources>");
         int id = 1;
         for (var entry : parts.entrySet()) {
-            sb.append("<object id=\"").append(id).append("\" name=\"").append(entry.getKey()).append("\" type=\"model\"><mesh><vertices>");
+            sb.append("<object id=\"").append(String.valueOf(id)).append("\" name=\"").append(entry.getKey()).append("\" type=\"model\"><mesh><vertices>");
             List<eu.mihosoft.jcsg.Polygon> polygons = entry.getValue().getPolygons();
             for (var p : polygons) {
-                for (var v : p.vertices) sb.append(String.format("<vertex x=\"%.4f\" y=\"%.4f\" z=\"%.4f\" />", v.pos.getX(), v.pos.getY(), v.pos.getZ()));
+                for (var v : p.vertices) sb.append(String.format(Locale.ROOT, "<vertex x=\"%.4f\" y=\"%.4f\" z=\"%.4f\" />", v.pos.getX(), v.pos.getY(), v.pos.getZ()));
             }
             sb.append("</vertices><triangles>");
             int vOffset = 0;
             for (var p : polygons) {
                 for (int i = 1; i < p.vertices.size() - 1; i++) {
-                    sb.append(String.format("<triangle v1=\"%d\" v2=\"%d\" v3=\"%d\" />", vOffset, vOffset + i, vOffset + i + 1));
+                    sb.append(String.format(Locale.ROOT, "<triangle v1=\"%d\" v2=\"%d\" v3=\"%d\" />", vOffset, vOffset + i, vOffset + i + 1));
                 }
                 vOffset += p.vertices.size();
             }
@@ -236,13 +458,7 @@ public class GeminiTextToFile implements TextToFile {
             id++;
         }
         sb.append("</resources><build>");
-        for (int i = 1; i < id; i++) sb.append("<item objectid=\"").append(i).append("\" />");
-        return sb.append("</build></model>").toString();
-    }
-
-    private void addZipEntry(ZipOutputStream zos, String name, String content) throws IOException {
-        zos.putNextEntry(new ZipEntry(name));
-        zos.write(content.getBytes(StandardCharsets.UTF_8));
-        zos.closeEntry();
+        for (int i = 1; i < id; i++) sb.append("<item objectid=\"").append(String.valueOf(i)).append("\" />");
+        sb.append("</build></model>");
     }
 }
@@ -0,0 +1,75 @@
+package text3d;
+
+/// The per-vertex arithmetic of extrusion, over primitive arrays rather than
+/// one boxed point at a time: scaling between font units and model units,
+/// and the normals of the walls and bevels. This class does it a value at a time; when the
+/// `jdk.incubator.vector` module is present (`--add-modules jdk.incubator.vector`), and the
+/// build has it (`mvn -Psimd`), {@link VectorKernels} does the same sums across SIMD lanes.
+/// Both use the same operations in the same order, with no fused multiply-adds,
+/// so their results are identical to the last bit and the choice never changes a model.
+/// `-Dtext3d.vector=false` keeps to this one.
+/// @author Ian Darwin
+class GeometryKernels {
+
+    /// The kernels to use in this JVM
+    static final GeometryKernels INSTANCE = choose();
+
+    private static GeometryKernels choose() {
+        if (!Boolean.parseBoolean(System.getProperty("text3d.vector", "true")) ||
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new GeometryKernels();
+        }
+        GeometryKernels vector = vector();
+        return vector != null && vector.lanes() > 1 ? vector : new GeometryKernels();
+    }
+
+    /// The SIMD kernels, or null if the module or the build hasn't got them
+    static GeometryKernels vector() {
+        try {
+            // By name, as it's only in builds made with -Psimd
+            return (GeometryKernels) Class.forName("text3d.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /// How many doubles are done at once
+    int lanes() {
+        return 1;
+    }
+
+    /// `out[i] = a[i] * factor` for the first n
+    void scale(double[] a, double factor, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = a[i] * factor;
+        }
+    }
+
+    /// `out[i] = a[i] / divisor` for the first n
+    void unscale(double[] a, double divisor, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = a[i] / divisor;
+        }
+    }
+
+    /// The unit normal `u × v / |u × v|` of each of n pairs of edges.
+    /// Each array holds n x values, then n y values, then n z values.
+    void normals(double[] u, double[] v, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            double ux = u[i], uy = u[n + i], uz = u[2 * n + i];
+            double vx = v[i], vy = v[n + i], vz = v[2 * n + i];
+            double nx = uy * vz - uz * vy;
+            double ny = uz * vx - ux * vz;
+            double nz = ux * vy - uy * vx;
+            double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            out[i] = nx / len;
+            out[n + i] = ny / len;
+            out[2 * n + i] = nz / len;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + lanes() + " lanes]";
+    }
+}
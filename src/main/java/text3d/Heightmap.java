@@ -0,0 +1,337 @@
+package text3d;
+
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferUShort;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import text3d.ClaudeTextToFile.LayoutKey;
+import text3d.ClaudeTextToFile.Outline;
+import text3d.ClaudeTextToFile.Placement;
+
+import static text3d.SignGenerator.SCALE_FACTOR;
+
+/// A sign as a depth map instead of a model, for CNC routers and laser engravers:
+/// a 16-bit grayscale PNG, one pixel per dot at the chosen DPI, whose value is the height
+/// of the sign there, from 0 (nothing) to 65535 (the tops of the letters).
+/// The image covers exactly the base, so its edges are at the base height.
+///
+/// The letters are the outlines the Claude renderer lays out (and remembers) for its models,
+/// but no mesh is made: the base, each letter's body, and its bevel are filled as flat layers.
+/// The bevel is a stack of layers inset a step further each time, the steps a pixel or less
+/// apart, which is as fine as the image can show the slope anyway. Each row is filled by
+/// scanning across it for where it crosses each layer's contours, and the rows are done
+/// in bands of BAND_ROWS, as many at once as there are cores.
+/// @author Ian Darwin
+final class Heightmap {
+
+    static final int DEFAULT_DPI = 300;
+
+    static final String USAGE = "Usage: SignGeneratorMain --heightmap [-dpi n] [-o file.png] file.sgn";
+
+    /// Rows filled, and compressed, together; enough to be worth a task, few enough to keep all the cores busy
+    static final int BAND_ROWS = 32;
+
+    private static final double MM_PER_INCH = 25.4;
+
+    /// One layer of one outline: its contours' edges in pixels, {x0, y0, x1, y1} each, the rows
+    /// they span (bottom not included), and the value the pixels inside them (and outside any hole) get
+    private record Region(double[] edges, int top, int bottom, int value) {}
+
+    private final ClaudeTextToFile renderer;
+
+    /// @param renderer The renderer whose outlines to use, and keep
+    Heightmap(ClaudeTextToFile renderer) {
+        this.renderer = renderer;
+    }
+
+    Heightmap() {
+        this(new ClaudeTextToFile());
+    }
+
+    /// Make the depth map of a sign
+    /// @param dpi Pixels to the inch, across and down
+    BufferedImage rasterise(String text, Font font, RenderSpec spec, TextAlign align, double dpi,
+                            RenderStage.Context context) throws IOException {
+        if (!(dpi > 0)) {
+            throw new IllegalArgumentException("Bad DPI " + dpi);
+        }
+        Placement placement = renderer.place(new LayoutKey(text, font, align), context);
+        double pixel = MM_PER_INCH / dpi;
+        Rectangle2D base = ClaudeTextToFile.baseBounds(placement.bounds(), spec);
+        double left = base.getX() * SCALE_FACTOR, top = -base.getY() * SCALE_FACTOR;
+        int width = (int) Math.ceil(base.getWidth() * SCALE_FACTOR / pixel);
+        int height = (int) Math.ceil(base.getHeight() * SCALE_FACTOR / pixel);
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IOException(String.format(Locale.ROOT, "%d x %d pixels is too many; use fewer DPI",
+                width, height));
+        }
+
+        // Every letter's body, then its bevel a step at a time
+        double zMax = spec.baseHeight() + spec.letterHeight();
+        double zTop = zMax - spec.bevelHeight();
+        double inset = spec.bevelHeight() * 0.7;
+        int steps = spec.bevelHeight() == 0 ? 0 : Math.max(1, (int) Math.ceil(inset / pixel));
+        RenderPhaseEvent event = RenderPhaseEvent.start(context.metrics(), "Bevel");
+        record Placed(Outline outline, double dx) {}
+        List<Placed> outlines = new ArrayList<>();
+        for (int n = 0; n < placement.lines().size(); n++) {
+            for (Outline outline : renderer.lineStage.get(placement.lines().get(n), context).outlines()) {
+                outlines.add(new Placed(outline, placement.x()[n] * SCALE_FACTOR));
+            }
+        }
+        List<Region> regions = new ArrayList<>();
+        for (Placed p : outlines) {
+            regions.add(region(ClaudeTextToFile.toModelUnits(p.outline()), left - p.dx(), top, pixel,
+                value(steps == 0 ? zMax : zTop, zMax)));
+        }
+        // The insets are the slow part, and each outline's are independent
+        CancellationToken cancel = context.cancel();
+        outlines.parallelStream().map(p -> {
+            cancel.checkCancelled();
+            List<Region> bevel = new ArrayList<>(steps);
+            for (int k = 1; k <= steps; k++) {
+                List<double[][]> rings = new ArrayList<>();
+                for (PolygonOffset.Ring ring : ClaudeTextToFile.inset(p.outline(), inset * k / steps)) {
+                    rings.add(new double[][] { ring.x(), ring.y() });
+                }
+                bevel.add(region(rings, left - p.dx(), top, pixel,
+                    value(zTop + (zMax - zTop) * k / steps, zMax)));
+            }
+            return bevel;
+        }).forEachOrdered(regions::addAll);
+        event.finish(RenderPhaseEvent.NONE, outlines::size, RenderPhaseEvent.NONE, RenderPhaseEvent.NONE);
+
+        event = RenderPhaseEvent.start(context.metrics(), "Rasterise");
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
+        short[] pixels = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, (short) value(spec.baseHeight(), zMax));
+        regions.sort((a, b) -> Integer.compare(a.top(), b.top()));
+        IntStream.range(0, (height + BAND_ROWS - 1) / BAND_ROWS).parallel().forEach(band -> {
+            cancel.checkCancelled();
+            fill(regions, pixels, width, band * BAND_ROWS, Math.min(height, (band + 1) * BAND_ROWS));
+        });
+        event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, RenderPhaseEvent.NONE);
+        return image;
+    }
+
+    /// The pixel value for a height
+    static int value(double z, double zMax) {
+        return (int) Math.round(z / zMax * 0xFFFF);
+    }
+
+    /// Contours in model units as a Region in pixels, across from left and down from top
+    private static Region region(List<double[][]> contours, double left, double top, double pixel, int value) {
+        int edges = 0;
+        for (double[][] c : contours) {
+            edges += c[0].length;
+        }
+        double[] e = new double[4 * edges];
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        int t = 0;
+        for (double[][] c : contours) {
+            int n = c[0].length;
+            for (int i = 0; i < n; i++) {
+                int j = (i + 1) % n;
+                e[t++] = (c[0][i] - left) / pixel;
+                e[t++] = (top - c[1][i]) / pixel;
+                e[t++] = (c[0][j] - left) / pixel;
+                e[t++] = (top - c[1][j]) / pixel;
+                minY = Math.min(minY, e[t - 3]);
+                maxY = Math.max(maxY, e[t - 3]);
+            }
+        }
+        return new Region(e, (int) Math.floor(minY), (int) Math.ceil(maxY), value);
+    }
+
+    /// Fill rows from to (not including) to: each pixel whose centre is inside a region
+    /// (by the even-odd rule) gets the region's value, if that's higher than what it has
+    private static void fill(List<Region> regions, short[] pixels, int width, int from, int to) {
+        double[] crossings = new double[16];
+        for (Region region : regions) {
+            if (region.top() >= to) {
+                break;
+            }
+            if (region.bottom() <= from) {
+                continue;
+            }
+            double[] e = region.edges();
+            short value = (short) region.value();
+            for (int row = Math.max(from, region.top()); row < Math.min(to, region.bottom()); row++) {
+                double y = row + 0.5;
+                int count = 0;
+                for (int i = 0; i < e.length; i += 4) {
+                    if ((e[i + 1] <= y) != (e[i + 3] <= y)) {
+                        if (count == crossings.length) {
+                            crossings = Arrays.copyOf(crossings, 2 * count);
+                        }
+                        crossings[count++] = e[i] + (y - e[i + 1]) * (e[i + 2] - e[i]) / (e[i + 3] - e[i + 1]);
+                    }
+                }
+                Arrays.sort(crossings, 0, count);
+                int offset = row * width;
+                for (int c = 0; c + 1 < count; c += 2) {
+                    int start = Math.max(0, (int) Math.ceil(crossings[c] - 0.5));
+                    int end = Math.min(width, (int) Math.ceil(crossings[c + 1] - 0.5));
+                    for (int x = start; x < end; x++) {
+                        if (Short.toUnsignedInt(pixels[offset + x]) < Short.toUnsignedInt(value)) {
+                            pixels[offset + x] = value;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /// Write the image as PNG, saying how many DPI it is, so other programs get its size right.
+    /// Like ThreeMFPackager, it's deflated in parallel, a band of rows at a time, each band
+    /// ending on a byte boundary so they join up into one stream; each row is stored as its
+    /// differences from one pixel to the next (PNG's Sub filter), which are mostly 0 here.
+    static void writePNG(BufferedImage image, double dpi, Compression compression, OutputStream out)
+            throws IOException {
+        int width = image.getWidth(), height = image.getHeight();
+        short[] pixels = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+        int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+        long[] adler = new long[bands];
+        List<byte[]> deflated = IntStream.range(0, bands).parallel().mapToObj(band -> {
+            int from = band * BAND_ROWS, to = Math.min(height, from + BAND_ROWS);
+            byte[] rows = new byte[(to - from) * (1 + 2 * width)];
+            int t = 0;
+            for (int row = from; row < to; row++) {
+                rows[t++] = 1;  // Sub
+                int previous = 0;
+                for (int x = row * width; x < (row + 1) * width; x++) {
+                    int v = Short.toUnsignedInt(pixels[x]);
+                    // Byte by byte, high then low
+                    rows[t++] = (byte) ((v >> 8) - (previous >> 8));
+                    rows[t++] = (byte) (v - previous);
+                    previous = v;
+                }
+            }
+            Adler32 checksum = new Adler32();
+            checksum.update(rows);
+            adler[band] = checksum.getValue();
+            return ThreeMFPackager.deflate(rows, rows.length, null, compression.level(), band == bands - 1);
+        }).toList();
+
+        long checksum = 1;
+        for (int band = 0; band < bands; band++) {
+            int rows = Math.min(height, (band + 1) * BAND_ROWS) - band * BAND_ROWS;
+            checksum = adler32Combine(checksum, adler[band], (long) rows * (1 + 2 * width));
+        }
+
+        out.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' });
+        chunk(out, "IHDR", ByteBuffer.allocate(13).putInt(width).putInt(height)
+            .put((byte) 16).put((byte) 0)     // 16-bit grayscale
+            .put((byte) 0).put((byte) 0).put((byte) 0).array());
+        int perMetre = (int) Math.round(dpi / MM_PER_INCH * 1000);
+        chunk(out, "pHYs", ByteBuffer.allocate(9).putInt(perMetre).putInt(perMetre).put((byte) 1).array());
+        chunk(out, "IDAT", new byte[] { 0x78, (byte) 0x9C });   // zlib header: deflate, 32K window
+        for (byte[] band : deflated) {
+            chunk(out, "IDAT", band);
+        }
+        chunk(out, "IDAT", ByteBuffer.allocate(4).putInt((int) checksum).array());
+        chunk(out, "IEND", new byte[0]);
+    }
+
+    /// Write one PNG chunk
+    private static void chunk(OutputStream out, String type, byte[] data) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data);
+        out.write(ByteBuffer.allocate(8).putInt(data.length).put(name).array());
+        out.write(data);
+        out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    /// The Adler-32 of two pieces of data end to end, from each's and the length of the second (as zlib's)
+    static long adler32Combine(long adler1, long adler2, long length2) {
+        final long mod = 65521;
+        long remainder = length2 % mod;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = remainder * sum1 % mod;
+        sum1 += (adler2 & 0xFFFF) + mod - 1;
+        sum2 += (adler1 >>> 16 & 0xFFFF) + (adler2 >>> 16 & 0xFFFF) + mod - remainder;
+        return sum1 % mod | sum2 % mod << 16;
+    }
+
+    /// Make the depth map of a saved Sign and write it as PNG
+    /// @return Timings and the size of the file; the format is null, and there are no triangles
+    RenderMetrics write(Sign sign, double dpi, OutputStream out, ProgressListener progress,
+                        CancellationToken cancel) throws IOException {
+        RenderMetrics.Builder metrics = new RenderMetrics.Builder(ClaudeTextToFile.ID, null);
+        RenderStage.Context context = new RenderStage.Context(metrics, progress, cancel);
+        BufferedImage image = rasterise(sign.text(), sign.font(), RenderSpec.of(sign), sign.alignment(), dpi, context);
+        RenderPhaseEvent event = RenderPhaseEvent.start(metrics, "Write PNG");
+        CountingChannel counted = new CountingChannel(Channels.newChannel(out));
+        try (OutputStream png = new BufferedOutputStream(Channels.newOutputStream(counted), 1 << 16)) {
+            writePNG(image, dpi, Compression.DEFAULT, png);
+        }
+        event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, counted::count);
+        return metrics.build(0, 0, counted.count());
+    }
+
+    /// Entry point for the --heightmap mode of SignGeneratorMain
+    /// @return The process exit status
+    static int main(List<String> args) throws IOException {
+        double dpi = DEFAULT_DPI;
+        Path output = null;
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                switch (arg) {
+                    case "-dpi" -> dpi = Double.parseDouble(args.get(++i));
+                    case "-o" -> output = Path.of(args.get(++i));
+                    default -> {
+                        if (arg.startsWith("-")) {
+                            System.err.println(USAGE);
+                            return 2;
+                        }
+                        inputs.add(arg);
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // An option given without its value
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (inputs.size() != 1) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path input = Path.of(inputs.getFirst());
+        if (output == null) {
+            String name = input.getFileName().toString();
+            output = input.resolveSibling(name.replaceFirst("\\.sgn$", "") + ".png");
+        }
+        Sign sign = Sign.fromJSON(Files.readString(input));
+        RenderMetrics metrics;
+        try (OutputStream out = Files.newOutputStream(output)) {
+            metrics = new Heightmap().write(sign, dpi, out, ProgressListener.NONE, new CancellationToken());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+        System.out.printf(Locale.ROOT, "%s: %,d bytes at %s DPI in %.0f ms %s%n", output, metrics.bytes(),
+            dpi, metrics.totalMillis(), metrics.phaseMillis());
+        return 0;
+    }
+}
@@ -0,0 +1,432 @@
+package text3d;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/// A triangle mesh as a vertex buffer and an index buffer, with each distinct vertex
+/// stored once, as wanted by the indexed formats: OBJ, PLY and glTF binary (GLB).
+///
+/// Vertices are welded as they're added, through an open-addressed hash table of
+/// quantised positions (as in MeshValidator), and kept as float x, y, z triples,
+/// which is what PLY and GLB store; so those two are written with bulk copies of
+/// the arrays, and OBJ with a hand-rolled number formatter instead of String.format.
+///
+/// The vertex and index arrays are packed little-endian, as the files want them, in
+/// MemorySegments: on the heap, or for big meshes off it, where a multi-million-triangle
+/// model doesn't fill the old generation and lengthen the render service's GC pauses,
+/// and where PLY and GLB are written by handing slices of the segments straight to
+/// the channel, with no copying. An off-heap mesh must be closed to free its memory.
+/// Not thread-safe; use one per render.
+/// @author Ian Darwin
+final class IndexedMesh implements AutoCloseable {
+
+    /// Meshes from this many triangles up are best kept off the heap
+    static final int OFF_HEAP_TRIANGLES = 100_000;
+
+    private static final int EMPTY = -1;
+    private static final int CHUNK = 1 << 20;
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final double quantum;
+
+    private final Store positions, indices;
+    private int vertices;
+    private int triangles;
+
+    // Weld table: quantised position -> vertex number
+    private long[] keyX, keyY, keyZ;
+    private int[] keyId;
+
+    /// A mesh on the heap
+    /// @param quantum Positions that round to the same multiple of this are the same vertex
+    IndexedMesh(double quantum) {
+        this(quantum, false);
+    }
+
+    /// @param quantum Positions that round to the same multiple of this are the same vertex
+    /// @param offHeap Whether to keep the vertices and indices off the heap, until closed
+    IndexedMesh(double quantum, boolean offHeap) {
+        this.quantum = quantum;
+        positions = new Store(offHeap, 12 * 1024);
+        indices = new Store(offHeap, 12 * 1024);
+        allocateKeys(1 << 11);
+    }
+
+    boolean isOffHeap() {
+        return positions.offHeap;
+    }
+
+    /// Free the off-heap memory, if any; the mesh can't be used afterwards
+    @Override
+    public void close() {
+        positions.close();
+        indices.close();
+    }
+
+    int vertexCount() {
+        return vertices;
+    }
+
+    int triangleCount() {
+        return triangles;
+    }
+
+    /// Add one triangle, with its corners in counter-clockwise order seen from outside
+    void add(double x1, double y1, double z1, double x2, double y2, double z2,
+             double x3, double y3, double z3) {
+        int a = vertex(x1, y1, z1), b = vertex(x2, y2, z2), c = vertex(x3, y3, z3);
+        MemorySegment ints = indices.ensure(12L * triangles + 12);
+        ints.setAtIndex(INT, 3L * triangles, a);
+        ints.setAtIndex(INT, 3L * triangles + 1, b);
+        ints.setAtIndex(INT, 3L * triangles + 2, c);
+        ++triangles;
+    }
+
+    private int vertex(double x, double y, double z) {
+        long qx = Math.round(x / quantum), qy = Math.round(y / quantum), qz = Math.round(z / quantum);
+        int mask = keyId.length - 1;
+        int slot = hash(qx, qy, qz) & mask;
+        while (keyId[slot] != EMPTY) {
+            if (keyX[slot] == qx && keyY[slot] == qy && keyZ[slot] == qz) {
+                return keyId[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keyX[slot] = qx;
+        keyY[slot] = qy;
+        keyZ[slot] = qz;
+        keyId[slot] = vertices;
+        MemorySegment floats = positions.ensure(12L * vertices + 12);
+        floats.setAtIndex(FLOAT, 3L * vertices, (float) x);
+        floats.setAtIndex(FLOAT, 3L * vertices + 1, (float) y);
+        floats.setAtIndex(FLOAT, 3L * vertices + 2, (float) z);
+        if (++vertices * 2 > keyId.length) {
+            growKeys();
+        }
+        return vertices - 1;
+    }
+
+    /// Write in one of the indexed formats; the channel is left open
+    void write(WritableByteChannel out, OutputFormat format) throws IOException {
+        switch (format) {
+            case OBJ -> writeObj(out);
+            case PLY -> writePly(out);
+            case GLB -> writeGlb(out);
+            default -> throw new IllegalArgumentException(format + " is not an indexed format");
+        }
+    }
+
+    /// Wavefront OBJ: text, one "v x y z" line per vertex then one "f a b c" per triangle, counting from 1
+    void writeObj(WritableByteChannel ch) throws IOException {
+        Writer out = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.US_ASCII), CHUNK);
+        out.write("# SignGenerator\no sign\n");
+        appendObj(out, 0);
+        out.flush();
+    }
+
+    /// The OBJ "v" and "f" lines, with vertex numbers starting after firstVertex others
+    void appendObj(Writer out, long firstVertex) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        for (int v = 0; v < vertices; v++) {
+            line.setLength(0);
+            line.append("v ");
+            appendFixed(line, coordinate(3 * v)).append(' ');
+            appendFixed(line, coordinate(3 * v + 1)).append(' ');
+            appendFixed(line, coordinate(3 * v + 2)).append('\n');
+            out.append(line);
+        }
+        for (int t = 0; t < triangles; t++) {
+            line.setLength(0);
+            line.append("f ").append(firstVertex + index(3 * t) + 1)
+                .append(' ').append(firstVertex + index(3 * t + 1) + 1)
+                .append(' ').append(firstVertex + index(3 * t + 2) + 1).append('\n');
+            out.append(line);
+        }
+    }
+
+    /// The 3MF `<mesh>` element, for a model with more than one object; indented to sit in an `<object>`
+    void writeModelMesh(Writer xml) throws IOException {
+        xml.write("      <mesh>\n        <vertices>\n");
+        appendModelVertices(xml);
+        xml.write("        </vertices>\n        <triangles>\n");
+        appendModelTriangles(xml, 0);
+        xml.write("        </triangles>\n      </mesh>\n");
+    }
+
+    /// The 3MF `<vertex>` elements
+    void appendModelVertices(Writer xml) throws IOException {
+        StringBuilder line = new StringBuilder(80);
+        for (int v = 0; v < vertices; v++) {
+            line.setLength(0);
+            line.append("          <vertex x=\"");
+            appendFixed(line, coordinate(3 * v)).append("\" y=\"");
+            appendFixed(line, coordinate(3 * v + 1)).append("\" z=\"");
+            appendFixed(line, coordinate(3 * v + 2)).append("\"/>\n");
+            xml.append(line);
+        }
+    }
+
+    /// The 3MF `<triangle>` elements, with vertex numbers starting after firstVertex others
+    void appendModelTriangles(Writer xml, long firstVertex) throws IOException {
+        StringBuilder line = new StringBuilder(80);
+        for (int t = 0; t < triangles; t++) {
+            line.setLength(0);
+            line.append("          <triangle v1=\"").append(firstVertex + index(3 * t))
+                .append("\" v2=\"").append(firstVertex + index(3 * t + 1))
+                .append("\" v3=\"").append(firstVertex + index(3 * t + 2)).append("\"/>\n");
+            xml.append(line);
+        }
+    }
+
+    /// Append v with six decimal places, the precision we write STL and 3MF with
+    static StringBuilder appendFixed(StringBuilder sb, float v) {
+        long micros = Math.round(v * 1e6);
+        if (micros < 0) {
+            sb.append('-');
+            micros = -micros;
+        }
+        sb.append(micros / 1_000_000).append('.');
+        String fraction = Long.toString(micros % 1_000_000);
+        for (int i = fraction.length(); i < 6; i++) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /// Binary little-endian PLY: float vertices, then each face as a count (3) and three ints
+    void writePly(WritableByteChannel ch) throws IOException {
+        ByteBuffer buf = newBuffer();
+        buf.put(plyHeader(vertices, triangles).getBytes(StandardCharsets.US_ASCII));
+        putPositions(ch, buf);
+        putPlyFaces(ch, buf, 0);
+        drain(ch, buf);
+    }
+
+    static String plyHeader(long vertices, long triangles) {
+        return "ply\n" +
+            "format binary_little_endian 1.0\n" +
+            "comment SignGenerator\n" +
+            "element vertex " + vertices + "\n" +
+            "property float x\n" +
+            "property float y\n" +
+            "property float z\n" +
+            "element face " + triangles + "\n" +
+            "property list uchar int vertex_indices\n" +
+            "end_header\n";
+    }
+
+    /// A buffer for the put methods, which drain it to their channel as it fills
+    static ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /// The vertices as little-endian float x, y, z triples, as both PLY and GLB want them
+    void putPositions(WritableByteChannel ch, ByteBuffer buf) throws IOException {
+        positions.write(ch, buf, 12L * vertices);
+    }
+
+    /// The PLY faces, with vertex numbers starting after firstVertex others.
+    /// Faces are 13 bytes each, so can't be copied as a block of ints.
+    void putPlyFaces(WritableByteChannel ch, ByteBuffer buf, int firstVertex) throws IOException {
+        for (int t = 0; t < triangles; t++) {
+            if (buf.remaining() < 13) {
+                drain(ch, buf);
+            }
+            buf.put((byte) 3).putInt(firstVertex + index(3 * t))
+                .putInt(firstVertex + index(3 * t + 1)).putInt(firstVertex + index(3 * t + 2));
+        }
+    }
+
+    /// The triangles as a block of little-endian ints, as GLB wants them, numbered after firstVertex others
+    void putIndices(WritableByteChannel ch, ByteBuffer buf, int firstVertex) throws IOException {
+        if (firstVertex == 0) {
+            indices.write(ch, buf, 12L * triangles);
+            return;
+        }
+        for (int i = 0; i < 3 * triangles; i++) {
+            if (buf.remaining() < 4) {
+                drain(ch, buf);
+            }
+            buf.putInt(firstVertex + index(i));
+        }
+    }
+
+    /// Widen min and max to take in every vertex
+    void bounds(float[] min, float[] max) {
+        for (int i = 0; i < 3 * vertices; i++) {
+            float c = coordinate(i);
+            min[i % 3] = Math.min(min[i % 3], c);
+            max[i % 3] = Math.max(max[i % 3], c);
+        }
+    }
+
+    /// glTF 2.0 binary: a JSON chunk describing one mesh, then a BIN chunk holding the
+    /// positions and indices as they are. glTF is in metres with Y up, so the node
+    /// scales our millimetres and turns Z up to Y up.
+    void writeGlb(WritableByteChannel ch) throws IOException {
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        bounds(min, max);
+        ByteBuffer buf = newBuffer();
+        putGlbHeader(buf, vertices, triangles, min, max);
+        putPositions(ch, buf);
+        putIndices(ch, buf, 0);
+        drain(ch, buf);
+    }
+
+    /// Everything in a GLB file up to the start of the binary data: the file header,
+    /// the JSON chunk and the BIN chunk's header
+    /// @throws IOException if the file would be too big for GLB's 32-bit lengths
+    static void putGlbHeader(ByteBuffer buf, long vertices, long triangles, float[] min, float[] max)
+            throws IOException {
+        if (vertices == 0) {
+            min = max = new float[3];
+        }
+        long positionBytes = 12L * vertices, indexBytes = 12L * triangles;
+        String json = "{\"asset\":{\"version\":\"2.0\",\"generator\":\"SignGenerator\"}," +
+            "\"scene\":0,\"scenes\":[{\"nodes\":[0]}]," +
+            "\"nodes\":[{\"name\":\"sign\",\"mesh\":0,\"rotation\":[-0.70710677,0,0,0.70710677]," +
+            "\"scale\":[0.001,0.001,0.001]}]," +
+            "\"meshes\":[{\"primitives\":[{\"attributes\":{\"POSITION\":0},\"indices\":1}]}]," +
+            "\"accessors\":[" +
+            "{\"bufferView\":0,\"componentType\":5126,\"count\":" + vertices + ",\"type\":\"VEC3\"," +
+            "\"min\":" + Arrays.toString(min).replace(" ", "") + ",\"max\":" + Arrays.toString(max).replace(" ", "") + "}," +
+            "{\"bufferView\":1,\"componentType\":5125,\"count\":" + 3L * triangles + ",\"type\":\"SCALAR\"}]," +
+            "\"bufferViews\":[" +
+            "{\"buffer\":0,\"byteOffset\":0,\"byteLength\":" + positionBytes + ",\"target\":34962}," +
+            "{\"buffer\":0,\"byteOffset\":" + positionBytes + ",\"byteLength\":" + indexBytes + ",\"target\":34963}]," +
+            "\"buffers\":[{\"byteLength\":" + (positionBytes + indexBytes) + "}]}";
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        int jsonLength = (jsonBytes.length + 3) & ~3;      // chunks are padded to 4 bytes; JSON with spaces
+        long binLength = positionBytes + indexBytes;       // already a multiple of 4
+        long total = 12 + 8 + jsonLength + 8 + binLength;
+        if (total > 0xFFFFFFFFL) {
+            throw new IOException("Model is too big for GLB: " + total + " bytes");
+        }
+        buf.putInt(0x46546C67).putInt(2).putInt((int) total);          // "glTF", version, length
+        buf.putInt(jsonLength).putInt(0x4E4F534A).put(jsonBytes);      // "JSON"
+        for (int i = jsonBytes.length; i < jsonLength; i++) {
+            buf.put((byte) ' ');
+        }
+        buf.putInt((int) binLength).putInt(0x004E4942);                // "BIN"
+    }
+
+    private float coordinate(int i) {
+        return positions.segment.getAtIndex(FLOAT, i);
+    }
+
+    private int index(int i) {
+        return indices.segment.getAtIndex(INT, i);
+    }
+
+    /// A growable block of memory, on the heap (a byte[], so it can be viewed as a ByteBuffer) or off it.
+    /// Off the heap each block has its own shared Arena, so growing can free the old block at once,
+    /// and the mesh can be written by a thread other than the one that built it.
+    private static final class Store {
+        final boolean offHeap;
+        private Arena arena;
+        MemorySegment segment;
+
+        Store(boolean offHeap, long bytes) {
+            this.offHeap = offHeap;
+            allocate(bytes);
+        }
+
+        private void allocate(long bytes) {
+            if (offHeap) {
+                arena = Arena.ofShared();
+                segment = arena.allocate(bytes, 4);
+            } else {
+                segment = MemorySegment.ofArray(new byte[Math.toIntExact(bytes)]);
+            }
+        }
+
+        /// Make room for at least this many bytes, doubling as needed
+        /// @return The (perhaps new) segment
+        MemorySegment ensure(long bytes) {
+            if (bytes > segment.byteSize()) {
+                MemorySegment old = segment;
+                Arena oldArena = arena;
+                allocate(Math.max(bytes, 2 * old.byteSize()));
+                segment.copyFrom(old);
+                if (oldArena != null) {
+                    oldArena.close();
+                }
+            }
+            return segment;
+        }
+
+        /// Write the first n bytes, after whatever is waiting in buf. Off the heap, the channel
+        /// gets the memory itself, in slices of up to a gigabyte (a ByteBuffer's limit is 2GB);
+        /// on the heap, a megabyte at a time, which a FileChannel copies through a direct buffer.
+        void write(WritableByteChannel ch, ByteBuffer buf, long n) throws IOException {
+            drain(ch, buf);
+            long slice = offHeap ? 1L << 30 : CHUNK;
+            for (long done = 0; done < n; done += slice) {
+                ByteBuffer bytes = segment.asSlice(done, Math.min(slice, n - done)).asByteBuffer();
+                while (bytes.hasRemaining()) {
+                    ch.write(bytes);
+                }
+            }
+        }
+
+        void close() {
+            if (arena != null) {
+                arena.close();
+                arena = null;
+            }
+        }
+    }
+
+    static void drain(WritableByteChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+
+    private static int hash(long x, long y, long z) {
+        long h = (x ^ Long.rotateLeft(y, 21) ^ Long.rotateLeft(z, 42)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    private void allocateKeys(int size) {
+        keyX = new long[size];
+        keyY = new long[size];
+        keyZ = new long[size];
+        keyId = new int[size];
+        Arrays.fill(keyId, EMPTY);
+    }
+
+    private void growKeys() {
+        long[] xs = keyX, ys = keyY, zs = keyZ;
+        int[] ids = keyId;
+        allocateKeys(ids.length * 2);
+        int mask = keyId.length - 1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == EMPTY) {
+                continue;
+            }
+            int slot = hash(xs[i], ys[i], zs[i]) & mask;
+            while (keyId[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keyX[slot] = xs[i];
+            keyY[slot] = ys[i];
+            keyZ[slot] = zs[i];
+            keyId[slot] = ids[i];
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package text3d;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/// Modal dialog listing the Signs in a SignLibrary, with a filter box.
+/// Names come straight from the library's index and cells are a fixed size,
+/// so even a very large library lists at once; a Sign is only parsed when opened.
+/// @author Ian Darwin
+class LibraryBrowser extends JDialog {
+
+    private final SignLibrary library;
+    private final NameModel model;
+    private final JList<String> list;
+
+    /// @param onOpen Called with the chosen Sign, on the event thread
+    LibraryBrowser(Frame owner, String title, SignLibrary library, Consumer<Sign> onOpen) {
+        super(owner, title, true);
+        this.library = library;
+        model = new NameModel();
+        list = new JList<>(model);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Without these, JList measures every cell up front
+        list.setPrototypeCellValue("MMMMMMMMMMMMMMMMMMMMMMMMMMMMMM");
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight() + 2);
+
+        JTextField filter = new JTextField(20);
+        filter.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { model.filter(filter.getText()); }
+            @Override public void removeUpdate(DocumentEvent e) { model.filter(filter.getText()); }
+            @Override public void changedUpdate(DocumentEvent e) { model.filter(filter.getText()); }
+        });
+
+        JButton openButton = new JButton("Open");
+        Runnable open = () -> {
+            int row = list.getSelectedIndex();
+            if (row < 0) {
+                return;
+            }
+            try {
+                Sign sign = library.get(model.libraryIndex(row));
+                dispose();
+                onOpen.accept(sign);
+            } catch (IOException | RuntimeException ex) {
+                JOptionPane.showMessageDialog(this, "Could not read sign: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        };
+        openButton.addActionListener(e -> open.run());
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    open.run();
+                }
+            }
+        });
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> dispose());
+
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.add(new JLabel("Filter:"), BorderLayout.WEST);
+        top.add(filter, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(openButton);
+        buttons.add(cancelButton);
+
+        JPanel content = new JPanel(new BorderLayout(5, 5));
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(top, BorderLayout.NORTH);
+        content.add(new JScrollPane(list), BorderLayout.CENTER);
+        content.add(buttons, BorderLayout.SOUTH);
+        setContentPane(content);
+        getRootPane().setDefaultButton(openButton);
+        setSize(400, 500);
+        setLocationRelativeTo(owner);
+    }
+
+    /// All the library's names, or those matching the filter.
+    /// Unfiltered, names are fetched from the index only as cells are painted.
+    private class NameModel extends AbstractListModel<String> {
+        private int[] matches;   // Library indices that pass the filter, or null for all
+
+        @Override
+        public int getSize() {
+            return matches == null ? library.size() : matches.length;
+        }
+
+        @Override
+        public String getElementAt(int row) {
+            return library.name(libraryIndex(row));
+        }
+
+        int libraryIndex(int row) {
+            return matches == null ? row : matches[row];
+        }
+
+        void filter(String text) {
+            int oldSize = getSize();
+            String wanted = text.trim().toLowerCase(Locale.ROOT);
+            if (wanted.isEmpty()) {
+                matches = null;
+            } else {
+                int[] found = new int[library.size()];
+                int n = 0;
+                for (int i = 0; i < library.size(); i++) {
+                    if (library.name(i).toLowerCase(Locale.ROOT).contains(wanted)) {
+                        found[n++] = i;
+                    }
+                }
+                matches = java.util.Arrays.copyOf(found, n);
+            }
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (getSize() > 0) {
+                fireIntervalAdded(this, 0, getSize() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package text3d;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/// A small thread-safe least-recently-used cache, for renderers to keep
+/// intermediate geometry between renders.
+class LruCache<K, V> {
+
+    private final Map<K, V> map;
+
+    LruCache(int maxEntries) {
+        map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    synchronized void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,404 @@
+package text3d;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/// Mail-merge: apply one template Sign to every row of a CSV or JSONL file,
+/// e.g., for name badges or room labels.
+/// The input is streamed one row at a time and never held in memory as a whole.
+/// Each row is rendered on its own virtual thread, but no more than one row per CPU
+/// is in flight at once; the reader blocks until a slot is free.
+/// Rows that fail are written to a report file; they do not stop the batch.
+/// @author Ian Darwin
+public class MailMerge {
+
+    public static final String USAGE =
+        "Usage: SignGeneratorMain --merge template.sgn data.csv|data.jsonl " +
+        "[-f stl|3mf|obj|ply|glb] [-o outDir] [-p namePattern] [-r renderer] [-report file] [-metrics] [-strict] " +
+        "[-z stored|fastest|default|smallest] [-plate WIDTHxDEPTH [-gap mm]]";
+
+    /// Matches {fieldName} in the template text and the name pattern
+    private static final Pattern FIELD = Pattern.compile("\\{([^{}]+)}");
+
+    /// Always available, in addition to the fields from the input file
+    static final String ROW_FIELD = "row";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Sign template;
+    private final TextToFile renderer;
+    private final OutputFormat format;
+    private final Path outDir;
+    private final String namePattern;
+    private RenderSpec spec;
+    private boolean writeMetrics;
+    private SignPlate plate;
+
+    MailMerge(Sign template, TextToFile renderer, OutputFormat format, Path outDir, String namePattern) {
+        this.template = template;
+        this.renderer = renderer;
+        this.format = format;
+        this.outDir = outDir;
+        this.namePattern = namePattern;
+        this.spec = RenderSpec.of(template);
+    }
+
+    /// Write each row's RenderMetrics to a JSON file alongside its output
+    void setWriteMetrics(boolean writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
+    /// How to check each mesh; FAIL makes a non-manifold model a failed row
+    void setMeshCheck(MeshCheck meshCheck) {
+        spec = spec.withMeshCheck(meshCheck);
+    }
+
+    /// How hard to compress 3MF files
+    void setCompression(Compression compression) {
+        spec = spec.withCompression(compression);
+    }
+
+    /// Pack the signs onto build plates of this size, as plate-1.3mf and so on,
+    /// instead of writing one file per row; needs the Claude renderer
+    void setPlate(double bedWidth, double bedDepth, double gap) {
+        if (!(renderer instanceof ClaudeTextToFile claude)) {
+            throw new IllegalArgumentException("Plates can only be made with renderer " + ClaudeTextToFile.ID);
+        }
+        plate = new SignPlate(claude, bedWidth, bedDepth, gap);
+    }
+
+    /// Replace each {field} in the template with the corresponding value
+    /// @throws IllegalArgumentException if the row has no such field
+    static String substitute(String template, Map<String, String> fields) {
+        Matcher m = FIELD.matcher(template);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            String value = fields.get(m.group(1));
+            if (value == null) {
+                throw new IllegalArgumentException("No field named " + m.group(1));
+            }
+            m.appendReplacement(sb, Matcher.quoteReplacement(value));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    Path outputFor(Map<String, String> fields) {
+        String name = substitute(namePattern, fields).replaceAll("[/\\\\:*?\"<>|\\s]+", "_");
+        if (!name.toLowerCase(Locale.ROOT).endsWith(format.ext())) {
+            name += format.ext();
+        }
+        return outDir.resolve(name);
+    }
+
+    /// Merge every row of the input, writing failures to the report, then write any plates.
+    /// @return The number of rows that failed
+    int run(Path input, PrintWriter report) throws IOException, InterruptedException {
+        Semaphore permits = new Semaphore(Runtime.getRuntime().availableProcessors());
+        AtomicInteger failures = new AtomicInteger();
+        report.println("row,error");
+        try (BufferedReader in = Files.newBufferedReader(input);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Iterator<Map<String, String>> rows = input.toString().endsWith(".jsonl") ?
+                new JsonlRows(in) : new CsvRows(in);
+            int rowNumber = 0;
+            while (rows.hasNext()) {
+                int row = ++rowNumber;
+                Map<String, String> fields;
+                try {
+                    fields = rows.next();
+                } catch (RuntimeException e) {
+                    fail(report, failures, row, e);
+                    continue;
+                }
+                fields.put(ROW_FIELD, Integer.toString(row));
+                permits.acquire();
+                executor.submit(() -> {
+                    try {
+                        renderRow(fields);
+                    } catch (Exception e) {
+                        fail(report, failures, row, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        if (plate != null) {
+            writePlates();
+        }
+        return failures.get();
+    }
+
+    private void writePlates() throws IOException {
+        int plates = plate.pack();
+        for (int n = 0; n < plates; n++) {
+            Path output = outDir.resolve("plate-" + (n + 1) + OutputFormat.THREEMF.ext());
+            try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                plate.write(n, out, spec.compression());
+            }
+        }
+    }
+
+    private void renderRow(Map<String, String> fields) throws IOException {
+        String text = substitute(template.text(), fields);
+        if (plate != null) {
+            plate.add(text, template.font(), template.alignment(), spec, Integer.parseInt(fields.get(ROW_FIELD)), substitute(namePattern, fields));
+            return;
+        }
+        Path output = outputFor(fields);
+        RenderMetrics metrics = renderer.generateFile(text, template.font(), spec, output.toFile(), format,
+            template.alignment(), ProgressListener.NONE, new CancellationToken());
+        if (writeMetrics) {
+            metrics.writeSidecar(output);
+        }
+    }
+
+    private static void fail(PrintWriter report, AtomicInteger failures, int row, Exception e) {
+        failures.incrementAndGet();
+        String message = String.valueOf(e.getMessage()).replace("\"", "\"\"");
+        synchronized (report) {
+            report.printf("%d,\"%s\"%n", row, message);
+            report.flush();
+        }
+    }
+
+    /// Reads CSV one record at a time; the first record gives the field names.
+    /// Handles quoted fields, doubled quotes and newlines inside quotes.
+    static class CsvRows implements Iterator<Map<String, String>> {
+        private final BufferedReader in;
+        private final List<String> header;
+        private List<String> next;
+        private RuntimeException pending;   // A bad record, reported on the following call
+
+        CsvRows(BufferedReader in) throws IOException {
+            this.in = in;
+            List<String> h = readRecord();
+            header = h != null ? h : List.of();
+            next = readRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null || pending != null;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (pending != null) {
+                RuntimeException e = pending;
+                pending = null;
+                throw e;
+            }
+            List<String> values = next;
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                next = null;
+                pending = new IllegalArgumentException(e.getMessage(), e);
+            }
+            if (values.size() != header.size()) {
+                throw new IllegalArgumentException(
+                    "Expected " + header.size() + " fields, found " + values.size());
+            }
+            Map<String, String> fields = new LinkedHashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                fields.put(header.get(i), values.get(i));
+            }
+            return fields;
+        }
+
+        private List<String> readRecord() throws IOException {
+            String line = in.readLine();
+            while (line != null && line.isBlank()) {
+                line = in.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (quoted) {
+                        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            field.append('"');
+                            ++i;
+                        } else if (c == '"') {
+                            quoted = false;
+                        } else {
+                            field.append(c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (!quoted) {
+                    break;
+                }
+                // Newline inside a quoted field: keep reading
+                line = in.readLine();
+                if (line == null) {
+                    throw new IOException("Unterminated quoted field at end of CSV input");
+                }
+                field.append('\n');
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /// Reads JSON Lines: one flat JSON object per line
+    static class JsonlRows implements Iterator<Map<String, String>> {
+        private final BufferedReader in;
+        private String next;
+
+        JsonlRows(BufferedReader in) throws IOException {
+            this.in = in;
+            advance();
+        }
+
+        private void advance() throws IOException {
+            do {
+                next = in.readLine();
+            } while (next != null && next.isBlank());
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            String line = next;
+            next = null;
+            try {
+                advance();
+                JsonNode node = MAPPER.readTree(line);
+                if (!node.isObject()) {
+                    throw new IllegalArgumentException("Not a JSON object: " + line);
+                }
+                Map<String, String> fields = new LinkedHashMap<>();
+                node.fields().forEachRemaining(e -> fields.put(e.getKey(), e.getValue().asText()));
+                return fields;
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /// Entry point for the --merge mode of SignGeneratorMain
+    /// @return The process exit status
+    static int main(List<String> args) throws IOException, InterruptedException {
+        OutputFormat format = OutputFormat.STL;
+        Path outDir = Path.of(".");
+        String pattern = "{" + ROW_FIELD + "}";
+        String rendererId = null;
+        Path reportFile = null;
+        boolean metrics = false;
+        boolean strict = false;
+        Compression compression = Compression.DEFAULT;
+        double[] bed = null;
+        double gap = SignPlate.DEFAULT_GAP;
+        List<String> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                switch (arg) {
+                    case "-f" -> format = OutputFormat.fromExtension(args.get(++i));
+                    case "-o" -> outDir = Path.of(args.get(++i));
+                    case "-p" -> pattern = args.get(++i);
+                    case "-r" -> rendererId = args.get(++i);
+                    case "-report" -> reportFile = Path.of(args.get(++i));
+                    case "-metrics" -> metrics = true;
+                    case "-strict" -> strict = true;
+                    case "-z" -> compression = Compression.fromName(args.get(++i));
+                    case "-plate" -> bed = PlatePacker.parseBed(args.get(++i));
+                    case "-gap" -> gap = Double.parseDouble(args.get(++i));
+                    default -> {
+                        if (arg.startsWith("-")) {
+                            System.err.println(USAGE);
+                            return 2;
+                        }
+                        files.add(arg);
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // An option given without its value
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (files.size() != 2) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Sign template = Sign.fromJSON(Files.readString(Path.of(files.get(0))));
+        if (rendererId == null && bed != null) {
+            rendererId = ClaudeTextToFile.ID;
+        } else if (rendererId == null) {
+            rendererId = template.renderer() != null ? template.renderer() : SignGenerator.DEFAULT_RENDERER;
+        }
+        try {
+            // Plates are always 3MF
+            RendererRegistry.checkFormat(rendererId, bed != null ? OutputFormat.THREEMF : format);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        Files.createDirectories(outDir);
+        if (reportFile == null) {
+            reportFile = outDir.resolve("merge-report.csv");
+        }
+
+        MailMerge merge = new MailMerge(template, RendererRegistry.get(rendererId), format, outDir, pattern);
+        merge.setWriteMetrics(metrics);
+        merge.setMeshCheck(strict ? MeshCheck.FAIL : MeshCheck.REPORT);
+        merge.setCompression(compression);
+        if (bed != null) {
+            try {
+                merge.setPlate(bed[0], bed[1], gap);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return 2;
+            }
+        }
+        long start = System.nanoTime();
+        int failures;
+        try (PrintWriter report = new PrintWriter(Files.newBufferedWriter(reportFile))) {
+            failures = merge.run(Path.of(files.get(1)), report);
+        }
+        System.out.printf("Merge finished in %d ms, %d row(s) failed; see %s%n",
+            (System.nanoTime() - start) / 1_000_000, failures, reportFile);
+        return failures > 0 ? 1 : 0;
+    }
+}
@@ -0,0 +1,20 @@
+package text3d;
+
+import java.io.IOException;
+
+/// How much checking of the generated mesh (by MeshValidator) a render does before writing it
+public enum MeshCheck {
+    /// Don't check
+    OFF,
+    /// Check, and include the MeshReport in the render's RenderMetrics
+    REPORT,
+    /// As REPORT, but fail the render, writing nothing, if the mesh isn't valid
+    FAIL;
+
+    /// Throw if this level of checking doesn't accept the report
+    void enforce(MeshReport report) throws IOException {
+        if (this == FAIL && !report.isValid()) {
+            throw new IOException("Generated mesh is not printable: " + report.summary());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package text3d;
+
+import java.util.Locale;
+
+/// What MeshValidator found in a generated mesh. In a closed, consistently
+/// wound mesh (what a slicer needs) every edge is shared by exactly two triangles
+/// that run along it in opposite directions, so all the edge counts are zero.
+/// @param triangles Number of triangles checked
+/// @param vertices Number of distinct vertices after welding
+/// @param boundaryEdges Edges used by only one triangle, i.e., holes in the surface
+/// @param nonManifoldEdges Edges shared by more than two triangles
+/// @param flippedEdges Edges whose two triangles both run the same way along them,
+///     meaning one of the two is wound (and so faces) the wrong way
+/// @param degenerateTriangles Triangles with no area, including those whose corners weld together
+/// @author Ian Darwin
+public record MeshReport(long triangles, long vertices, long boundaryEdges, long nonManifoldEdges,
+                         long flippedEdges, long degenerateTriangles) {
+
+    public boolean isValid() {
+        return boundaryEdges == 0 && nonManifoldEdges == 0 && flippedEdges == 0 && degenerateTriangles == 0;
+    }
+
+    /// Combine the reports for separate objects in the same output
+    MeshReport plus(MeshReport other) {
+        return new MeshReport(triangles + other.triangles, vertices + other.vertices,
+            boundaryEdges + other.boundaryEdges, nonManifoldEdges + other.nonManifoldEdges,
+            flippedEdges + other.flippedEdges, degenerateTriangles + other.degenerateTriangles);
+    }
+
+    public String summary() {
+        if (isValid()) {
+            return "mesh OK";
+        }
+        return String.format(Locale.ROOT,
+            "%,d boundary, %,d non-manifold and %,d flipped edges, %,d degenerate triangles",
+            boundaryEdges, nonManifoldEdges, flippedEdges, degenerateTriangles);
+    }
+}
@@ -0,0 +1,284 @@
+package text3d;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import text3d.ClaudeTextToFile.Triangle;
+
+/// Takes a model one closed shell at a time (the base, or one letter) and writes
+/// each as it comes, so what's in memory is one shell however long the text is.
+/// Shells share no vertices, so each is welded on its own (on the heap, being small)
+/// and its vertex numbers are offset by the count of those before it.
+///
+/// STL and OBJ are written straight through (OBJ allows vertices and faces to be
+/// interleaved). The other formats need all the vertices, or the counts, before
+/// the rest, so the later part is spilled to a temporary file and copied after
+/// the first when the sink is closed: the triangles for 3MF, and both the vertices
+/// and the faces for PLY and GLB, whose headers come first.
+/// Closing the sink finishes the model but leaves the channel open.
+/// A render that fails part way aborts the sink instead, which frees the spill files but
+/// writes nothing more, so what's been written is visibly incomplete (no endsolid in STL,
+/// no central directory in 3MF, no header at all in PLY and GLB) rather than a model missing letters.
+/// @author Ian Darwin
+abstract class MeshSink implements Closeable {
+
+    private long triangles, vertices;
+
+    /// @param estimatedTriangles Roughly how many triangles to expect, for 3MF's ZIP64 decision
+    static MeshSink open(OutputFormat format, WritableByteChannel out, Compression compression,
+                         long estimatedTriangles) throws IOException {
+        return switch (format) {
+            case STL -> new Stl(out);
+            case OBJ -> new Obj(out);
+            case THREEMF -> new ThreeMF(out, compression, estimatedTriangles);
+            case PLY -> new Ply(out);
+            case GLB -> new Glb(out);
+        };
+    }
+
+    /// Write one shell
+    final void add(List<Triangle> shell, CancellationToken cancel) throws IOException {
+        vertices += write(shell, cancel);
+        triangles += shell.size();
+    }
+
+    /// @return The number of distinct vertices in the shell
+    abstract long write(List<Triangle> shell, CancellationToken cancel) throws IOException;
+
+    /// Give up on the model: instead of close(), when a shell couldn't be made or written
+    abstract void abort() throws IOException;
+
+    long triangleCount() {
+        return triangles;
+    }
+
+    long vertexCount() {
+        return vertices;
+    }
+
+    /// A temporary file for the part of a model that has to wait; deleted when closed
+    static FileChannel spill() throws IOException {
+        Path file = Files.createTempFile("signgen", ".spill");
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /// Copy all of a spill file to the output; the operating system can often do this without it passing through the heap
+    static void copy(FileChannel spill, WritableByteChannel out) throws IOException {
+        long size = spill.size();
+        for (long done = 0; done < size; ) {
+            done += spill.transferTo(done, size - done, out);
+        }
+    }
+
+    static final class Stl extends MeshSink {
+        private final Writer writer;
+
+        Stl(WritableByteChannel out) throws IOException {
+            writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            writer.write("solid TextSign ; ClaudeRenderer\n");
+        }
+
+        @Override
+        long write(List<Triangle> shell, CancellationToken cancel) throws IOException {
+            for (Triangle tri : shell) {
+                cancel.checkCancelled();
+                ClaudeTextToFile.writeFacet(writer, tri);
+            }
+            return ClaudeTextToFile.uniqueVertices(shell);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.write("endsolid TextSign\n");
+            writer.flush();
+        }
+
+        @Override
+        void abort() throws IOException {
+            writer.flush();
+        }
+    }
+
+    static final class Obj extends MeshSink {
+        private final Writer writer;
+
+        Obj(WritableByteChannel out) throws IOException {
+            writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.US_ASCII), 1 << 16);
+            writer.write("# SignGenerator\no sign\n");
+        }
+
+        @Override
+        long write(List<Triangle> shell, CancellationToken cancel) throws IOException {
+            IndexedMesh mesh = ClaudeTextToFile.indexed(shell, false, cancel);
+            mesh.appendObj(writer, vertexCount());
+            return mesh.vertexCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        void abort() throws IOException {
+            // OBJ has no end to leave off, so say so
+            writer.write("# Incomplete: the render failed\n");
+            writer.flush();
+        }
+    }
+
+    /// The vertices go into the model entry as they come, the triangles to the spill
+    static final class ThreeMF extends MeshSink {
+        private final ThreeMFPackager zip;
+        private final OutputStream entry;
+        private final Writer xml;
+        private final FileChannel spill = spill();
+        private final Writer triangleXml = new BufferedWriter(
+            Channels.newWriter(spill, StandardCharsets.UTF_8), 1 << 16);
+
+        ThreeMF(WritableByteChannel out, Compression compression, long estimatedTriangles) throws IOException {
+            zip = new ThreeMFPackager(out, compression);
+            entry = zip.entry(ThreeMFPackager.MODEL, ClaudeTextToFile.MODEL_BYTES_PER_TRIANGLE * estimatedTriangles);
+            xml = new BufferedWriter(new OutputStreamWriter(entry, StandardCharsets.UTF_8), 1 << 16);
+            xml.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            xml.write("<model unit=\"millimeter\" xml:lang=\"en-US\" xmlns=\"http://schemas.microsoft.com/3dmanufacturing/core/2015/02\">\n");
+            xml.write("  <resources>\n");
+            xml.write("    <object id=\"2\" type=\"model\">\n");
+            xml.write("      <mesh>\n");
+            xml.write("        <vertices>\n");
+        }
+
+        @Override
+        long write(List<Triangle> shell, CancellationToken cancel) throws IOException {
+            IndexedMesh mesh = ClaudeTextToFile.indexed(shell, false, cancel);
+            mesh.appendModelVertices(xml);
+            mesh.appendModelTriangles(triangleXml, vertexCount());
+            return mesh.vertexCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (zip; spill) {
+                xml.write("        </vertices>\n");
+                xml.write("        <triangles>\n");
+                xml.flush();
+                triangleXml.flush();
+                // Into the entry itself (the writer being flushed), so it's compressed with the rest
+                spill.position(0);
+                Channels.newInputStream(spill).transferTo(entry);
+                xml.write("        </triangles>\n");
+                xml.write("      </mesh>\n");
+                xml.write("    </object>\n");
+                xml.write("  </resources>\n");
+                xml.write("  <build>\n");
+                xml.write("    <item objectid=\"2\"/>\n");
+                xml.write("  </build>\n");
+                xml.write("</model>\n");
+                xml.close();
+            }
+        }
+
+        @Override
+        void abort() throws IOException {
+            try (spill) {
+                zip.abort();
+            }
+        }
+    }
+
+    /// Vertices and faces each go to their own spill, to follow the header once the counts are known
+    static final class Ply extends MeshSink {
+        private final WritableByteChannel out;
+        private final FileChannel vertexSpill = spill(), faceSpill = spill();
+        private final ByteBuffer vertexBuf = IndexedMesh.newBuffer(), faceBuf = IndexedMesh.newBuffer();
+
+        Ply(WritableByteChannel out) throws IOException {
+            this.out = out;
+        }
+
+        @Override
+        long write(List<Triangle> shell, CancellationToken cancel) throws IOException {
+            IndexedMesh mesh = ClaudeTextToFile.indexed(shell, false, cancel);
+            mesh.putPositions(vertexSpill, vertexBuf);
+            mesh.putPlyFaces(faceSpill, faceBuf, Math.toIntExact(vertexCount()));
+            return mesh.vertexCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (vertexSpill; faceSpill) {
+                IndexedMesh.drain(vertexSpill, vertexBuf);
+                IndexedMesh.drain(faceSpill, faceBuf);
+                ByteBuffer header = ByteBuffer.wrap(
+                    IndexedMesh.plyHeader(vertexCount(), triangleCount()).getBytes(StandardCharsets.US_ASCII));
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                copy(vertexSpill, out);
+                copy(faceSpill, out);
+            }
+        }
+
+        @Override
+        void abort() throws IOException {
+            try (vertexSpill; faceSpill) {
+                // Nothing has been written, the header being first
+            }
+        }
+    }
+
+    static final class Glb extends MeshSink {
+        private final WritableByteChannel out;
+        private final FileChannel vertexSpill = spill(), indexSpill = spill();
+        private final ByteBuffer vertexBuf = IndexedMesh.newBuffer(), indexBuf = IndexedMesh.newBuffer();
+        private final float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        private final float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+
+        Glb(WritableByteChannel out) throws IOException {
+            this.out = out;
+        }
+
+        @Override
+        long write(List<Triangle> shell, CancellationToken cancel) throws IOException {
+            IndexedMesh mesh = ClaudeTextToFile.indexed(shell, false, cancel);
+            mesh.bounds(min, max);
+            mesh.putPositions(vertexSpill, vertexBuf);
+            mesh.putIndices(indexSpill, indexBuf, Math.toIntExact(vertexCount()));
+            return mesh.vertexCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (vertexSpill; indexSpill) {
+                IndexedMesh.drain(vertexSpill, vertexBuf);
+                IndexedMesh.drain(indexSpill, indexBuf);
+                ByteBuffer header = IndexedMesh.newBuffer();
+                IndexedMesh.putGlbHeader(header, vertexCount(), triangleCount(), min, max);
+                IndexedMesh.drain(out, header);
+                copy(vertexSpill, out);
+                copy(indexSpill, out);
+            }
+        }
+
+        @Override
+        void abort() throws IOException {
+            try (vertexSpill; indexSpill) {
+                // Nothing has been written, the header being first
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package text3d;
+
+/// Checks a triangle mesh for the faults that make slicers complain: boundary (open)
+/// edges, non-manifold edges, inconsistent winding and degenerate triangles.
+///
+/// Feed it every triangle with add(), then call report(). Vertices are welded and
+/// each edge's uses counted in hash tables, so the whole check is a single pass,
+/// linear in the number of triangles; the tables are open-addressed arrays
+/// of primitives, so even a large mesh costs no boxing and little garbage.
+/// Not thread-safe; use one per mesh.
+/// @author Ian Darwin
+final class MeshValidator {
+
+    private static final int EMPTY = -1;
+
+    private final double quantum;
+    private final double minDoubleArea;
+    private long triangles;
+    private long degenerate;
+
+    // Vertex table: quantised position -> vertex number
+    private long[] vertexX, vertexY, vertexZ;
+    private int[] vertexId;
+    private int vertices;
+
+    // Edge table: (lower, higher) vertex numbers -> number of uses in each direction
+    private long[] edgeKey;
+    private int[] forward, backward;
+    private int edges;
+
+    /// @param quantum Positions that round to the same multiple of this are the same vertex;
+    ///     use the precision the output is written with, since that's what the slicer will see
+    MeshValidator(double quantum) {
+        this.quantum = quantum;
+        this.minDoubleArea = quantum * quantum;
+        allocateVertices(1 << 10);
+        allocateEdges(1 << 11);
+    }
+
+    /// Add one triangle, with its corners in counter-clockwise order seen from outside
+    void add(double x1, double y1, double z1, double x2, double y2, double z2,
+             double x3, double y3, double z3) {
+        ++triangles;
+        int a = vertex(x1, y1, z1), b = vertex(x2, y2, z2), c = vertex(x3, y3, z3);
+        if (a == b || b == c || c == a) {
+            // Collapses to a line or point; its edges would only confuse the counts
+            ++degenerate;
+            return;
+        }
+        // The cross product of two sides is twice the area
+        double ux = x2 - x1, uy = y2 - y1, uz = z2 - z1;
+        double vx = x3 - x1, vy = y3 - y1, vz = z3 - z1;
+        double cx = uy * vz - uz * vy, cy = uz * vx - ux * vz, cz = ux * vy - uy * vx;
+        if (cx * cx + cy * cy + cz * cz < minDoubleArea * minDoubleArea) {
+            ++degenerate;
+        }
+        edge(a, b);
+        edge(b, c);
+        edge(c, a);
+    }
+
+    MeshReport report() {
+        long boundary = 0, nonManifold = 0, flipped = 0;
+        for (int i = 0; i < edgeKey.length; i++) {
+            if (edgeKey[i] == EMPTY) {
+                continue;
+            }
+            int uses = forward[i] + backward[i];
+            if (uses == 1) {
+                ++boundary;
+            } else if (uses > 2) {
+                ++nonManifold;
+            } else if (forward[i] != 1) {
+                ++flipped;
+            }
+        }
+        return new MeshReport(triangles, vertices, boundary, nonManifold, flipped, degenerate);
+    }
+
+    private int vertex(double x, double y, double z) {
+        long qx = Math.round(x / quantum), qy = Math.round(y / quantum), qz = Math.round(z / quantum);
+        int mask = vertexId.length - 1;
+        int slot = hash(qx, qy, qz) & mask;
+        while (vertexId[slot] != EMPTY) {
+            if (vertexX[slot] == qx && vertexY[slot] == qy && vertexZ[slot] == qz) {
+                return vertexId[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        vertexX[slot] = qx;
+        vertexY[slot] = qy;
+        vertexZ[slot] = qz;
+        vertexId[slot] = vertices;
+        if (++vertices * 2 > vertexId.length) {
+            growVertices();
+        }
+        return vertices - 1;
+    }
+
+    private void edge(int from, int to) {
+        long key = from < to ? (long) from << 32 | to : (long) to << 32 | from;
+        int slot = edgeSlot(edgeKey, key);
+        if (edgeKey[slot] == EMPTY) {
+            edgeKey[slot] = key;
+            if (++edges * 2 > edgeKey.length) {
+                growEdges();
+                slot = edgeSlot(edgeKey, key);
+            }
+        }
+        if (from < to) {
+            ++forward[slot];
+        } else {
+            ++backward[slot];
+        }
+    }
+
+    /// The slot holding key, or the empty slot where it belongs
+    private static int edgeSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long x, long y, long z) {
+        return hash(x ^ Long.rotateLeft(y, 21) ^ Long.rotateLeft(z, 42));
+    }
+
+    private static int hash(long h) {
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    private void allocateVertices(int size) {
+        vertexX = new long[size];
+        vertexY = new long[size];
+        vertexZ = new long[size];
+        vertexId = new int[size];
+        java.util.Arrays.fill(vertexId, EMPTY);
+    }
+
+    private void growVertices() {
+        long[] xs = vertexX, ys = vertexY, zs = vertexZ;
+        int[] ids = vertexId;
+        allocateVertices(ids.length * 2);
+        int mask = vertexId.length - 1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == EMPTY) {
+                continue;
+            }
+            int slot = hash(xs[i], ys[i], zs[i]) & mask;
+            while (vertexId[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            vertexX[slot] = xs[i];
+            vertexY[slot] = ys[i];
+            vertexZ[slot] = zs[i];
+            vertexId[slot] = ids[i];
+        }
+    }
+
+    private void allocateEdges(int size) {
+        edgeKey = new long[size];
+        forward = new int[size];
+        backward = new int[size];
+        java.util.Arrays.fill(edgeKey, EMPTY);
+    }
+
+    private void growEdges() {
+        long[] keys = edgeKey;
+        int[] fwd = forward, back = backward;
+        allocateEdges(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                int slot = edgeSlot(edgeKey, keys[i]);
+                edgeKey[slot] = keys[i];
+                forward[slot] = fwd[i];
+                backward[slot] = back[i];
+            }
+        }
+    }
+}
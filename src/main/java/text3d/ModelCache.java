@@ -0,0 +1,172 @@
+package text3d;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/// Content-addressed on-disk cache of generated models, so regenerating
+/// an unchanged sign is a file copy (or hard link) instead of a render.
+///
+/// The key is a hash of the Sign (text, font, alignment and dimensions) plus the
+/// renderer id, output format (and, for 3MF, compression), MeshCheck and GEOMETRY_VERSION.
+/// Hits are served without being checked again, so the check level is part of the key:
+/// a model rendered under REPORT, possibly with faults, is never served to a FAIL render.
+/// Entries are evicted least recently used first (by file modification time,
+/// which is updated on every hit) once the total size passes the limit.
+/// @author Ian Darwin
+public class ModelCache {
+
+    /// Bump this whenever any renderer's output changes for the same input,
+    /// so stale entries are never served.
+    static final int GEOMETRY_VERSION = 8;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final boolean hardLinks;
+    private long totalBytes;
+
+    /// @param dir The cache directory, created if need be
+    /// @param maxBytes Evict entries once the cache grows past this
+    /// @param hardLinks Serve hits by hard link where possible, instead of copying
+    public ModelCache(Path dir, long maxBytes, boolean hardLinks) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.maxBytes = maxBytes;
+        this.hardLinks = hardLinks;
+        for (Path p : entries()) {
+            totalBytes += Files.size(p);
+        }
+    }
+
+    /// Compute the cache key for this sign as rendered by the given renderer, format and check
+    static String key(Sign sign, String rendererId, OutputFormat format, MeshCheck check, Compression compression) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(sign.toJSON().getBytes(StandardCharsets.UTF_8));
+            md.update(("\0" + rendererId + "\0" + format.name() + "\0" + check.name()
+                + "\0" + GEOMETRY_VERSION)
+                .getBytes(StandardCharsets.UTF_8));
+            if (format == OutputFormat.THREEMF) {
+                md.update(("\0" + compression.name()).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required in every JRE", e);
+        }
+    }
+
+    Path pathFor(String key, OutputFormat format) {
+        // Two-level layout keeps any one directory from getting huge
+        return dir.resolve(key.substring(0, 2)).resolve(key + format.ext());
+    }
+
+    /// Produce the model for this sign in target, from the cache if possible,
+    /// else by rendering it and adding the result to the cache.
+    /// Models already in the cache are served without being checked again; they were
+    /// checked at this same level when they were rendered.
+    /// @return The metrics of the render, or null if it was a cache hit
+    public RenderMetrics generate(Sign sign, String rendererId, OutputFormat format, MeshCheck check,
+                                  Compression compression, File target) throws IOException {
+        Path cached = pathFor(key(sign, rendererId, format, check, compression), format);
+        if (fetch(cached, target.toPath())) {
+            return null;
+        }
+        // The target may be a hard link to another entry, from an earlier hit, which
+        // rendering into it in place would overwrite
+        Files.deleteIfExists(target.toPath());
+        RenderMetrics metrics = RendererRegistry.get(rendererId).generateFile(sign, target, format, check, compression);
+        store(target.toPath(), cached);
+        return metrics;
+    }
+
+    private boolean fetch(Path cached, Path target) throws IOException {
+        if (!Files.isRegularFile(cached)) {
+            return false;
+        }
+        try {
+            // Mark as recently used before copying, so a concurrent eviction skips it
+            Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+            Files.deleteIfExists(target);
+            if (hardLinks) {
+                try {
+                    Files.createLink(target, cached);
+                    return true;
+                } catch (UnsupportedOperationException | IOException e) {
+                    // e.g., different filesystem; fall through and copy
+                }
+            }
+            Files.copy(cached, target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;   // Evicted while we were looking at it
+        }
+    }
+
+    private void store(Path produced, Path cached) throws IOException {
+        Files.createDirectories(cached.getParent());
+        Path tmp = Files.createTempFile(cached.getParent(), "new", ".tmp");
+        try {
+            Files.copy(produced, tmp, StandardCopyOption.REPLACE_EXISTING);
+            long size = Files.size(tmp);
+            synchronized (this) {
+                if (Files.exists(cached)) {
+                    return;     // Another worker stored the same model first
+                }
+                Files.move(tmp, cached, StandardCopyOption.ATOMIC_MOVE);
+                totalBytes += size;
+                if (totalBytes > maxBytes) {
+                    evict();
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /// Remove least-recently-used entries until we're under the limit
+    private void evict() throws IOException {
+        List<Path> byAge = entries();
+        byAge.sort(Comparator.comparing(ModelCache::lastModified));
+        totalBytes = 0;
+        for (Path p : byAge) {
+            totalBytes += Files.size(p);
+        }
+        for (Path p : byAge) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            long size = Files.size(p);
+            if (Files.deleteIfExists(p)) {
+                totalBytes -= size;
+            }
+        }
+    }
+
+    private List<Path> entries() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir, 2)) {
+            return paths.filter(Files::isRegularFile)
+                .filter(p -> !p.getFileName().toString().endsWith(".tmp"))
+                .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
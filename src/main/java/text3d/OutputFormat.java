@@ -1,16 +1,45 @@
 package text3d;
 
 public enum OutputFormat {
-    STL(".stl"),
-    THREEMF(".3mf");
+    STL(".stl", "STL"),
+    THREEMF(".3mf", "3MF"),
+    /// Wavefront OBJ, indexed text
+    OBJ(".obj", "OBJ"),
+    /// Binary little-endian PLY
+    PLY(".ply", "PLY"),
+    /// Binary glTF 2.0
+    GLB(".glb", "GLB");
 
     private final String ext;
+    private final String label;
 
-    OutputFormat(String ext) {
+    OutputFormat(String ext, String label) {
         this.ext = ext;
+        this.label = label;
     }
 
     String ext() {
         return ext;
     }
+
+    /// Name to show in the UI
+    String label() {
+        return label;
+    }
+
+    /// True for the formats written from an IndexedMesh
+    boolean isIndexed() {
+        return this == OBJ || this == PLY || this == GLB;
+    }
+
+    /// Look up a format by its file extension, with or without the leading dot
+    static OutputFormat fromExtension(String ext) {
+        String dotted = ext.startsWith(".") ? ext : "." + ext;
+        for (OutputFormat f : values()) {
+            if (f.ext.equalsIgnoreCase(dotted)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output format " + ext);
+    }
 }
@@ -0,0 +1,442 @@
+package text3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/// Offsets closed contours by a distance, for the bevels of all the renderers.
+///
+/// Each edge moves along its normal and neighbouring edges are joined where their
+/// offset lines meet (a miter). Where a corner opens up and the miter would reach more
+/// than miterLimit times the distance from it, as at the sharp tip of a "V" offset outward,
+/// the corner is squared off there instead. An edge too short for the distance comes out
+/// reversed; it is collapsed to where its neighbours' offset lines meet, as the edge events
+/// of a straight skeleton do. Then, should the contours still cross themselves or each other
+/// (a stroke thinner than twice the distance), the largest fraction of the distance that
+/// leaves them clear is used for the whole outline, so the result always has the same
+/// contours as the original and every contour stays a simple polygon.
+/// The crossing tests are done exactly, in integers, on the finest grid that keeps
+/// their products within a long, which is what makes the check trustworthy.
+///
+/// Every vertex of an offset contour records the vertices of the original it came from,
+/// so that a renderer can join the two with a band of triangles that shares every edge
+/// with both; see {@link Ring#band}.
+/// @author Ian Darwin
+final class PolygonOffset {
+
+    /// A miter may reach twice the offset distance before it's squared off, as in Clipper
+    static final double DEFAULT_MITER_LIMIT = 2;
+
+    /// Halvings of the distance when the contours cross; the result is within 1/64 of the largest that fits
+    private static final int BISECTIONS = 6;
+
+    /// Grid coordinates stay within this, so differences fit in 31 bits and their products in 62
+    private static final double GRID_RANGE = 1 << 29;
+
+    private final double miterLimit, minimumEdge;
+
+    /// @param minimumEdge Offset vertices closer together than this are merged
+    PolygonOffset(double miterLimit, double minimumEdge) {
+        if (miterLimit < 1 || minimumEdge < 0) {
+            throw new IllegalArgumentException("Bad miter limit " + miterLimit + " or minimum edge " + minimumEdge);
+        }
+        this.miterLimit = miterLimit;
+        this.minimumEdge = minimumEdge;
+    }
+
+    /// One offset contour. Its vertex j came from vertices from[j] to to[j] of the original
+    /// (counting on around the contour): the same one for an ordinary corner, the same one
+    /// for two vertices in a row where a corner was squared off, or several where short edges
+    /// collapsed.
+    record Ring(double[] x, double[] y, int[] from, int[] to) {
+
+        int size() {
+            return x.length;
+        }
+
+        /// The band of triangles between an original contour of n vertices, numbered 0 to n - 1,
+        /// and this offset of it, numbered from n on; three vertex numbers for each triangle.
+        /// For an edge a → b of the original and its offset a' → b' they're wound like the quad
+        /// (a, b, b', a'), so facing outward when a counter-clockwise contour is inset.
+        int[] band(int n) {
+            int m = x.length;
+            int[] tris = new int[3 * (2 * n + m)];
+            int t = 0;
+            for (int j = 0; j < m; j++) {
+                int k = (j + 1) % m;
+                // Edges of the original that collapsed into this vertex
+                for (int s = from[j]; s != to[j]; s = (s + 1) % n) {
+                    tris[t++] = s;
+                    tris[t++] = (s + 1) % n;
+                    tris[t++] = n + j;
+                }
+                if (to[j] == from[k]) {
+                    // A squared-off corner
+                    tris[t++] = to[j];
+                    tris[t++] = n + k;
+                    tris[t++] = n + j;
+                } else {
+                    tris[t++] = to[j];
+                    tris[t++] = from[k];
+                    tris[t++] = n + k;
+                    tris[t++] = to[j];
+                    tris[t++] = n + k;
+                    tris[t++] = n + j;
+                }
+            }
+            return Arrays.copyOf(tris, t);
+        }
+    }
+
+    /// Shrink the region inside an outer contour and outside its holes by distance,
+    /// or grow it if distance is negative. Each contour is {x[], y[]}, either way round;
+    /// the outer comes first, and the result is in the same order.
+    /// A single hole on its own is grown (its region shrunk) with a negative distance.
+    List<Ring> inset(List<double[][]> contours, double distance) {
+        double grid = grid(contours, distance);
+        List<Ring> full = offset(contours, distance);
+        if (full != null && clear(full, grid)) {
+            return full;
+        }
+        List<Ring> unchanged = new ArrayList<>(contours.size());
+        for (double[][] c : contours) {
+            int[] index = new int[c[0].length];
+            Arrays.setAll(index, i -> i);
+            unchanged.add(new Ring(c[0].clone(), c[1].clone(), index, index));
+        }
+        if (full == null && offset(contours, 0) == null || !clear(unchanged, grid)) {
+            // Crossed to begin with, so there's nothing better to be had
+            return full != null ? full : unchanged;
+        }
+        List<Ring> best = unchanged;
+        double good = 0, bad = 1;
+        for (int i = 0; i < BISECTIONS; i++) {
+            double f = (good + bad) / 2;
+            List<Ring> rings = offset(contours, distance * f);
+            if (rings != null && clear(rings, grid)) {
+                good = f;
+                best = rings;
+            } else {
+                bad = f;
+            }
+        }
+        return best;
+    }
+
+    /// @return null if any contour collapsed or turned inside out
+    private List<Ring> offset(List<double[][]> contours, double distance) {
+        List<Ring> rings = new ArrayList<>(contours.size());
+        for (int c = 0; c < contours.size(); c++) {
+            Ring ring = offset(contours.get(c)[0], contours.get(c)[1], c == 0 ? distance : -distance);
+            if (ring == null) {
+                return null;
+            }
+            rings.add(ring);
+        }
+        return rings;
+    }
+
+    /// Offset one contour towards its inside by distance (outward if negative)
+    private Ring offset(double[] px, double[] py, double distance) {
+        int n = px.length;
+        double area = signedArea(px, py, n);
+        if (n < 3 || area == 0) {
+            return null;
+        }
+        // How far to move along each edge's left normal: the inside is on the left of an anticlockwise contour
+        double d = area > 0 ? distance : -distance;
+
+        // Unit direction of each edge; a zero-length one takes its predecessor's
+        double[] ex = new double[n], ey = new double[n];
+        int valid = -1;
+        for (int i = 0; i < n; i++) {
+            int k = (i + 1) % n;
+            double dx = px[k] - px[i], dy = py[k] - py[i], len = Math.hypot(dx, dy);
+            if (len > 0) {
+                ex[i] = dx / len;
+                ey[i] = dy / len;
+                valid = i;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (ex[i] == 0 && ey[i] == 0) {
+                int p = (i + n - 1) % n;
+                ex[i] = ex[p] != 0 || ey[p] != 0 ? ex[p] : ex[valid];
+                ey[i] = ex[p] != 0 || ey[p] != 0 ? ey[p] : ey[valid];
+            }
+        }
+
+        Vertices out = new Vertices(n + 8);
+        for (int i = 0; i < n; i++) {
+            int p = (i + n - 1) % n;
+            // Left normals of the edges before and after
+            double n1x = -ey[p], n1y = ex[p], n2x = -ey[i], n2y = ex[i];
+            double cos = n1x * n2x + n1y * n2y;
+            double turn = ex[p] * ey[i] - ey[p] * ex[i];
+            // A corner that opens up as it's offset (or doubles straight back) may need squaring off
+            boolean spike = cos < -1 + 1e-12;
+            if (d == 0 || !spike && (turn * d >= 0 || Math.sqrt(2 / (1 + cos)) <= miterLimit)) {
+                double k = d / (1 + cos);
+                out.add(px[i] + (n1x + n2x) * k, py[i] + (n1y + n2y) * k, i);
+                continue;
+            }
+            // Square it off across the bisector, miterLimit * |d| from the vertex
+            double ux = ex[p], uy = ey[p];
+            if (!spike) {
+                double ulen = Math.hypot(n1x + n2x, n1y + n2y) * Math.signum(d);
+                ux = (n1x + n2x) / ulen;
+                uy = (n1y + n2y) / ulen;
+            }
+            double along = ex[p] * ux + ey[p] * uy;
+            double t = along > 1e-12 ? Math.abs(d) * (miterLimit - Math.abs(n1x * ux + n1y * uy)) / along : 0;
+            out.add(px[i] + n1x * d + ex[p] * t, py[i] + n1y * d + ey[p] * t, i);
+            out.add(px[i] + n2x * d - ex[i] * t, py[i] + n2y * d - ey[i] * t, i);
+        }
+
+        if (!out.collapse(px, py, n, Math.abs(d) * (miterLimit + 1)) || !out.mergeClose(minimumEdge)) {
+            return null;
+        }
+        Ring ring = out.ring();
+        double offsetArea = signedArea(ring.x(), ring.y(), ring.size());
+        return offsetArea * area > 0 ? ring : null;
+    }
+
+    private static double signedArea(double[] x, double[] y, int n) {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            int k = (i + 1) % n;
+            sum += x[i] * y[k] - x[k] * y[i];
+        }
+        return sum / 2;
+    }
+
+    /// The offset vertices as they're made and tidied, with where each came from
+    private static final class Vertices {
+        private double[] x, y;
+        private int[] from, to;
+        private int size;
+
+        Vertices(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+            from = new int[capacity];
+            to = new int[capacity];
+        }
+
+        void add(double vx, double vy, int source) {
+            if (size == x.length) {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+            }
+            x[size] = vx;
+            y[size] = vy;
+            from[size] = source;
+            to[size] = source;
+            ++size;
+        }
+
+        /// Replace vertex j and the one after it with one at (vx, vy)
+        private void merge(int j, double vx, double vy) {
+            int k = (j + 1) % size;
+            if (k == 0) {
+                // Keep the merged one first, so the order around the contour holds
+                x[0] = vx;
+                y[0] = vy;
+                from[0] = from[j];
+            } else {
+                x[j] = vx;
+                y[j] = vy;
+                to[j] = to[k];
+                System.arraycopy(x, k + 1, x, k, size - k - 1);
+                System.arraycopy(y, k + 1, y, k, size - k - 1);
+                System.arraycopy(from, k + 1, from, k, size - k - 1);
+                System.arraycopy(to, k + 1, to, k, size - k - 1);
+            }
+            --size;
+        }
+
+        /// Collapse every edge that's pointing the opposite way to the edge it's an offset of
+        /// @param reach How far from the edge a collapse may go before the midpoint is used instead
+        /// @return false if the contour collapsed altogether
+        boolean collapse(double[] px, double[] py, int n, double reach) {
+            for (boolean changed = true; changed; ) {
+                changed = false;
+                for (int j = 0; j < size && size >= 3; j++) {
+                    int k = (j + 1) % size;
+                    if (to[j] == from[k]) {
+                        continue;
+                    }
+                    double sx = px[from[k]] - px[to[j]], sy = py[from[k]] - py[to[j]];
+                    double ox = x[k] - x[j], oy = y[k] - y[j];
+                    if (ox * sx + oy * sy > 0) {
+                        continue;
+                    }
+                    int p = (j + size - 1) % size, q = (k + 1) % size;
+                    double mx = (x[j] + x[k]) / 2, my = (y[j] + y[k]) / 2;
+                    double[] at = intersection(x[p], y[p], x[j], y[j], x[k], y[k], x[q], y[q]);
+                    if (at == null || Math.hypot(at[0] - mx, at[1] - my) > reach) {
+                        at = new double[] { mx, my };
+                    }
+                    merge(j, at[0], at[1]);
+                    changed = true;
+                }
+            }
+            return size >= 3 && !coversAll(n);
+        }
+
+        /// Merge neighbours closer than minimumEdge
+        /// @return false if the contour collapsed altogether
+        boolean mergeClose(double minimumEdge) {
+            for (int j = 0; j < size && size >= 3; ) {
+                int k = (j + 1) % size;
+                if (Math.hypot(x[k] - x[j], y[k] - y[j]) < minimumEdge) {
+                    merge(j, (x[j] + x[k]) / 2, (y[j] + y[k]) / 2);
+                } else {
+                    ++j;
+                }
+            }
+            return size >= 3;
+        }
+
+        /// Whether some vertex has taken in every edge of the original
+        private boolean coversAll(int n) {
+            for (int j = 0; j < size; j++) {
+                if ((to[j] + 1) % n == from[j]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Ring ring() {
+            return new Ring(Arrays.copyOf(x, size), Arrays.copyOf(y, size),
+                Arrays.copyOf(from, size), Arrays.copyOf(to, size));
+        }
+    }
+
+    /// Where the line through a and b meets the line through c and d, or null if they're parallel
+    private static double[] intersection(double ax, double ay, double bx, double by,
+                                         double cx, double cy, double dx, double dy) {
+        double rx = bx - ax, ry = by - ay, sx = dx - cx, sy = dy - cy;
+        double denom = rx * sy - ry * sx;
+        if (Math.abs(denom) < 1e-12 * Math.hypot(rx, ry) * Math.hypot(sx, sy)) {
+            return null;
+        }
+        double t = ((cx - ax) * sy - (cy - ay) * sx) / denom;
+        return new double[] { ax + rx * t, ay + ry * t };
+    }
+
+    /// The size of a grid square: the finest that keeps every coordinate, offset included, within GRID_RANGE
+    private double grid(List<double[][]> contours, double distance) {
+        double max = 0;
+        for (double[][] c : contours) {
+            for (double[] axis : c) {
+                for (double v : axis) {
+                    max = Math.max(max, Math.abs(v));
+                }
+            }
+        }
+        return Math.max(max + Math.abs(distance) * (miterLimit + 1), Double.MIN_NORMAL) / GRID_RANGE;
+    }
+
+    /// Whether the rings neither cross nor have changed places: holes can pass right
+    /// over the outer contour without crossing it when a stroke is thin enough
+    private static boolean clear(List<Ring> rings, double grid) {
+        if (crosses(rings, grid)) {
+            return false;
+        }
+        for (int r = 1; r < rings.size(); r++) {
+            double x = rings.get(r).x()[0], y = rings.get(r).y()[0];
+            for (int s = 0; s < rings.size(); s++) {
+                if (s != r && inside(x, y, rings.get(s)) != (s == 0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean inside(double x, double y, Ring ring) {
+        boolean in = false;
+        for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+            double xi = ring.x()[i], yi = ring.y()[i], xj = ring.x()[j], yj = ring.y()[j];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                in = !in;
+            }
+        }
+        return in;
+    }
+
+    /// Whether any two edges of the rings, other than neighbours, touch or cross.
+    /// Edges are swept left to right, so only those that overlap in x are compared.
+    static boolean crosses(List<Ring> rings, double grid) {
+        int total = 0;
+        for (Ring r : rings) {
+            total += r.size();
+        }
+        long[] x0 = new long[total], y0 = new long[total], x1 = new long[total], y1 = new long[total];
+        int[] ringOf = new int[total], indexOf = new int[total];
+        long[] keys = new long[total];
+        int e = 0;
+        for (int r = 0; r < rings.size(); r++) {
+            Ring ring = rings.get(r);
+            int m = ring.size();
+            for (int j = 0; j < m; j++, e++) {
+                int k = (j + 1) % m;
+                x0[e] = Math.round(ring.x()[j] / grid);
+                y0[e] = Math.round(ring.y()[j] / grid);
+                x1[e] = Math.round(ring.x()[k] / grid);
+                y1[e] = Math.round(ring.y()[k] / grid);
+                ringOf[e] = r;
+                indexOf[e] = j;
+                // Sorted by the left end, which is under 2^31 once shifted to be positive
+                keys[e] = (Math.min(x0[e], x1[e]) + (1L << 30)) << 32 | e;
+            }
+        }
+        Arrays.sort(keys);
+        for (int a = 0; a < total; a++) {
+            int i = (int) keys[a];
+            long right = Math.max(x0[i], x1[i]);
+            for (int b = a + 1; b < total; b++) {
+                int j = (int) keys[b];
+                if (Math.min(x0[j], x1[j]) > right) {
+                    break;
+                }
+                if (ringOf[i] == ringOf[j]) {
+                    int m = rings.get(ringOf[i]).size();
+                    int gap = Math.abs(indexOf[i] - indexOf[j]);
+                    if (gap == 1 || gap == m - 1) {
+                        continue;
+                    }
+                }
+                if (touch(x0[i], y0[i], x1[i], y1[i], x0[j], y0[j], x1[j], y1[j])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /// Whether segments ab and cd have any point in common, exactly
+    static boolean touch(long ax, long ay, long bx, long by, long cx, long cy, long dx, long dy) {
+        int d1 = orient(cx, cy, dx, dy, ax, ay), d2 = orient(cx, cy, dx, dy, bx, by);
+        int d3 = orient(ax, ay, bx, by, cx, cy), d4 = orient(ax, ay, bx, by, dx, dy);
+        if (d1 * d2 < 0 && d3 * d4 < 0) {
+            return true;
+        }
+        return d1 == 0 && within(cx, cy, dx, dy, ax, ay) || d2 == 0 && within(cx, cy, dx, dy, bx, by) ||
+            d3 == 0 && within(ax, ay, bx, by, cx, cy) || d4 == 0 && within(ax, ay, bx, by, dx, dy);
+    }
+
+    /// Which side of the line a → b point c is on: 1 left, -1 right, 0 on it
+    private static int orient(long ax, long ay, long bx, long by, long cx, long cy) {
+        return Long.signum((bx - ax) * (cy - ay) - (by - ay) * (cx - ax));
+    }
+
+    /// Whether c, known to be on the line through a and b, is between them
+    private static boolean within(long ax, long ay, long bx, long by, long cx, long cy) {
+        return Math.min(ax, bx) <= cx && cx <= Math.max(ax, bx) && Math.min(ay, by) <= cy && cy <= Math.max(ay, by);
+    }
+}
@@ -0,0 +1,16 @@
+package text3d;
+
+/// Receives progress reports from a TextToFile renderer.
+/// Called on the rendering thread, so implementations that touch
+/// Swing must hand off to the EDT (e.g., via SwingWorker.publish()).
+@FunctionalInterface
+public interface ProgressListener {
+
+    /// @param phase Short human-readable name of the current phase, e.g., "Layout"
+    /// @param done How many units of work in this phase are finished
+    /// @param total How many units of work this phase has in all
+    void progress(String phase, int done, int total);
+
+    /// A listener that ignores all reports
+    ProgressListener NONE = (phase, done, total) -> {};
+}
@@ -0,0 +1,106 @@
+package text3d;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/// What one render cost and produced, as returned by TextToFile.generateFile.
+/// @param renderer The id of the renderer used
+/// @param format The output format, or null for a Heightmap
+/// @param phaseMillis Wall time of each phase that ran, in order; phases served from a cache don't appear
+/// @param totalMillis Wall time of the whole render
+/// @param triangles Number of triangles in the output
+/// @param uniqueVertices Number of distinct vertices among those triangles
+/// @param bytes Size of the output file
+/// @param peakHeapDelta Highest heap use seen during the render (sampled at the end of each phase),
+///     less the heap in use when it started; only approximate, as other threads and GC affect it
+/// @param mesh What MeshValidator found, or null if the mesh wasn't checked
+/// @author Ian Darwin
+public record RenderMetrics(String renderer, OutputFormat format, Map<String, Double> phaseMillis,
+                            double totalMillis, long triangles, long uniqueVertices, long bytes,
+                            long peakHeapDelta, MeshReport mesh) {
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+    /// Suffix for the metrics file written alongside an output file
+    public static final String SIDECAR_SUFFIX = ".metrics.json";
+
+    /// One line, for a status bar or log
+    public String summary() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+            "%s %s: %,d triangles, %,d vertices, %,d bytes in %.0f ms (",
+            renderer, format, triangles, uniqueVertices, bytes, totalMillis));
+        String sep = "";
+        for (var e : phaseMillis.entrySet()) {
+            sb.append(sep).append(e.getKey()).append(String.format(Locale.ROOT, " %.0f", e.getValue()));
+            sep = ", ";
+        }
+        sb.append(String.format(Locale.ROOT, "), heap +%,d KB", peakHeapDelta / 1024));
+        if (mesh != null) {
+            sb.append("; ").append(mesh.summary());
+        }
+        return sb.toString();
+    }
+
+    public String toJSON() throws IOException {
+        return WRITER.writeValueAsString(this);
+    }
+
+    /// Write these metrics next to the output file, as output + SIDECAR_SUFFIX
+    /// @return The sidecar file
+    public Path writeSidecar(Path output) throws IOException {
+        Path sidecar = output.resolveSibling(output.getFileName() + SIDECAR_SUFFIX);
+        Files.writeString(sidecar, toJSON());
+        return sidecar;
+    }
+
+    /// Accumulates the metrics while a renderer works; not thread-safe, as each render has its own.
+    static final class Builder {
+        private static final Runtime RUNTIME = Runtime.getRuntime();
+
+        private final String renderer;
+        private final OutputFormat format;
+        private final long startNanos = System.nanoTime();
+        private final long startHeap = usedHeap();
+        private long peakHeap = startHeap;
+        private final Map<String, Double> phaseMillis = new LinkedHashMap<>();
+        private MeshReport mesh;
+
+        Builder(String renderer, OutputFormat format) {
+            this.renderer = renderer;
+            this.format = format;
+        }
+
+        String renderer() {
+            return renderer;
+        }
+
+        /// Record a finished phase; a phase run more than once is summed
+        void phase(String name, long nanos) {
+            phaseMillis.merge(name, nanos / 1e6, Double::sum);
+            peakHeap = Math.max(peakHeap, usedHeap());
+        }
+
+        void mesh(MeshReport mesh) {
+            this.mesh = mesh;
+        }
+
+        RenderMetrics build(long triangles, long uniqueVertices, long bytes) {
+            peakHeap = Math.max(peakHeap, usedHeap());
+            return new RenderMetrics(renderer, format, Collections.unmodifiableMap(phaseMillis),
+                (System.nanoTime() - startNanos) / 1e6, triangles, uniqueVertices, bytes,
+                peakHeap - startHeap, mesh);
+        }
+
+        private static long usedHeap() {
+            return RUNTIME.totalMemory() - RUNTIME.freeMemory();
+        }
+    }
+}
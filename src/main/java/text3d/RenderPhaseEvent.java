@@ -0,0 +1,97 @@
+package text3d;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/// JFR event for one phase of generating a model, so a slow render can be
+/// pinned on layout, triangulation, CSG, writing, etc., from an ordinary
+/// recording (e.g., java -XX:StartFlightRecording ...) without a profiler.
+///
+/// Usage: `var event = RenderPhaseEvent.start(metrics, phase);` ... `event.finish(...)`.
+/// The counts are only looked at when the event is actually going to be recorded;
+/// when recording is off, the JIT reduces all this to next to nothing.
+/// The phase's wall time also goes into the render's RenderMetrics, if it has one.
+/// @author Ian Darwin
+@Name("text3d.RenderPhase")
+@Label("Render Phase")
+@Category({"SignGenerator", "Rendering"})
+@Description("One phase of turning text into a 3D model")
+@StackTrace(false)
+class RenderPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Renderer")
+    String renderer;
+
+    @Label("Glyphs")
+    int glyphs;
+
+    @Label("Contours")
+    int contours;
+
+    @Label("Triangles")
+    int triangles;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+
+    // Transient, so not part of the recorded event
+    private transient RenderMetrics.Builder metrics;
+    private transient long startNanos;
+
+    static RenderPhaseEvent start(RenderMetrics.Builder metrics, String phase) {
+        RenderPhaseEvent event = start(metrics.renderer(), phase);
+        event.metrics = metrics;
+        return event;
+    }
+
+    static RenderPhaseEvent start(String renderer, String phase) {
+        RenderPhaseEvent event = new RenderPhaseEvent();
+        event.renderer = renderer;
+        event.phase = phase;
+        event.startNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    /// Supplies a count; only called if the event is to be recorded
+    @FunctionalInterface
+    interface Count {
+        long get();
+    }
+
+    static final Count NONE = () -> 0;
+
+    /// Leave time spent in nested phases, which record their own, out of this one's in the RenderMetrics
+    void exclude(long nanos) {
+        startNanos += nanos;
+    }
+
+    /// End the phase, and record it if JFR wants it
+    void finish(Count glyphs, Count contours, Count triangles, Count bytes) {
+        end();
+        if (metrics != null) {
+            metrics.phase(phase, System.nanoTime() - startNanos);
+        }
+        if (shouldCommit()) {
+            this.glyphs = (int) glyphs.get();
+            this.contours = (int) contours.get();
+            this.triangles = (int) triangles.get();
+            this.bytes = bytes.get();
+            commit();
+        }
+    }
+
+    /// The number of visible characters in the text, a cheap stand-in for its glyph count
+    static long glyphsIn(String text) {
+        return text.codePoints().filter(c -> !Character.isWhitespace(c)).count();
+    }
+}
@@ -0,0 +1,306 @@
+package text3d;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Small HTTP service that turns a Sign (as JSON, the same as a .sgn file) into STL or 3MF bytes.
+///
+/// POST /render?format=stl|3mf|obj|ply|glb[&amp;renderer=C] with the Sign JSON as the request body.
+///
+/// Identical concurrent requests share a single render, recent results are kept
+/// in a size-bounded in-memory cache, and rendering happens on a bounded pool:
+/// when its queue is full, the request is refused with 429 rather than left to pile up.
+/// There is no authentication, so it listens only on the loopback address unless told otherwise,
+/// and request bodies over MAX_BODY_BYTES are refused with 413.
+/// @author Ian Darwin
+public class RenderServer {
+
+    public static final String USAGE =
+        "Usage: SignGeneratorMain --serve [-b bindAddress] [-p port] [-t renderThreads] [-q queueSize] [-c cacheMB]";
+
+    static final long RENDER_TIMEOUT_SECONDS = 120;
+
+    /// Far more than any sign's JSON
+    static final int MAX_BODY_BYTES = 1024 * 1024;
+
+    /// What makes two requests "the same"
+    record Key(Sign sign, OutputFormat format, String renderer) {}
+
+    /// Does the actual rendering; replaceable for testing
+    @FunctionalInterface
+    interface Renderer {
+        byte[] render(Key key) throws IOException;
+    }
+
+    private final HttpServer server;
+    private final Renderer renderer;
+    private final ThreadPoolExecutor renderPool;
+    private final Map<Key, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final ResultCache cache;
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /// @param address Where to listen; the loopback address, unless other machines are to be served
+    /// @param port The port, or 0 for any free one
+    RenderServer(InetAddress address, int port, int renderThreads, int queueSize, long cacheBytes) throws IOException {
+        this(address, port, renderThreads, queueSize, cacheBytes, RenderServer::renderBytes);
+    }
+
+    RenderServer(InetAddress address, int port, int renderThreads, int queueSize, long cacheBytes,
+                 Renderer renderer) throws IOException {
+        this.renderer = renderer;
+        renderPool = new ThreadPoolExecutor(renderThreads, renderThreads, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.AbortPolicy());
+        cache = new ResultCache(cacheBytes);
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        // Request threads mostly wait on renders, so virtual threads suit them well
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/render", this::handleRender);
+        server.createContext("/health", ex -> respond(ex, 200, "text/plain", "OK\n".getBytes()));
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(1);
+        renderPool.shutdown();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    /// How many requests have joined a render already running for an identical one
+    long coalesced() {
+        return coalesced.get();
+    }
+
+    /// How many renders are waiting for a thread
+    int queued() {
+        return renderPool.getQueue().size();
+    }
+
+    private void handleRender(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!ex.getRequestMethod().equals("POST")) {
+                ex.getResponseHeaders().set("Allow", "POST");
+                respond(ex, 405, "text/plain", "Use POST\n".getBytes());
+                return;
+            }
+            byte[] request = ex.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+            if (request.length > MAX_BODY_BYTES) {
+                respond(ex, 413, "text/plain", ("Request body over " + MAX_BODY_BYTES + " bytes\n").getBytes());
+                return;
+            }
+            Key key;
+            try {
+                Map<String, String> params = queryParams(ex.getRequestURI());
+                Sign sign = Sign.fromJSON(new String(request, StandardCharsets.UTF_8));
+                OutputFormat format = OutputFormat.fromExtension(params.getOrDefault("format", "stl"));
+                String renderer = params.getOrDefault("renderer",
+                    sign.renderer() != null ? sign.renderer() : SignGenerator.DEFAULT_RENDERER);
+                // Reject unknown ids, and formats the renderer can't write, before rendering
+                RendererRegistry.checkFormat(renderer, format);
+                key = new Key(sign, format, renderer);
+            } catch (RuntimeException e) {
+                respond(ex, 400, "text/plain", ("Bad request: " + e.getMessage() + "\n").getBytes());
+                return;
+            }
+
+            byte[] body;
+            try {
+                body = render(key).get(RENDER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                tooBusy(ex);
+                return;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    tooBusy(ex);
+                } else {
+                    respond(ex, 500, "text/plain", ("Render failed: " + e.getCause() + "\n").getBytes());
+                }
+                return;
+            } catch (TimeoutException e) {
+                respond(ex, 504, "text/plain", "Render timed out\n".getBytes());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            respond(ex, 200, contentType(key.format()), body);
+        }
+    }
+
+    private static void tooBusy(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Retry-After", "1");
+        respond(ex, 429, "text/plain", "Too many renders in progress, try again\n".getBytes());
+    }
+
+    /// Get the bytes for this key: from the cache, by joining an identical render
+    /// that is already running, or by starting a new one.
+    /// @throws RejectedExecutionException if the render pool is saturated
+    CompletableFuture<byte[]> render(Key key) {
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        try {
+            renderPool.execute(() -> {
+                try {
+                    byte[] bytes = renderer.render(key);
+                    cache.put(key, bytes);
+                    inFlight.remove(key, mine);
+                    mine.complete(bytes);
+                } catch (Throwable t) {
+                    inFlight.remove(key, mine);
+                    mine.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Anyone who joined in the meantime gets the same refusal
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        return mine;
+    }
+
+    private static byte[] renderBytes(Key key) throws IOException {
+        TextToFile renderer = RendererRegistry.get(key.renderer());
+        Sign sign = key.sign();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        renderer.generate(sign, out, key.format(), MeshCheck.REPORT, Compression.DEFAULT);
+        return out.toByteArray();
+    }
+
+    static String contentType(OutputFormat format) {
+        return switch (format) {
+            case STL -> "model/stl";
+            case THREEMF -> "model/3mf";
+            case OBJ -> "model/obj";
+            case PLY -> "application/x-ply";
+            case GLB -> "model/gltf-binary";
+        };
+    }
+
+    private static void respond(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    static Map<String, String> queryParams(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), pair.substring(eq + 1));
+                }
+            }
+        }
+        return params;
+    }
+
+    /// Least-recently-used cache of finished renders, bounded by total size in bytes
+    static class ResultCache {
+        private final long maxBytes;
+        private long totalBytes;
+        private final LinkedHashMap<Key, byte[]> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        ResultCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(Key key) {
+            return map.get(key);
+        }
+
+        synchronized void put(Key key, byte[] value) {
+            if (value.length > maxBytes) {
+                return;     // Would evict everything else and still not fit
+            }
+            byte[] old = map.put(key, value);
+            if (old != null) {
+                totalBytes -= old.length;
+            }
+            totalBytes += value.length;
+            var it = map.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                totalBytes -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    /// Entry point for the --serve mode of SignGeneratorMain
+    /// @return The process exit status (only on a usage error; otherwise it runs until killed)
+    static int main(List<String> args) throws IOException, InterruptedException {
+        InetAddress address = InetAddress.getLoopbackAddress();
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = 4 * threads;
+        long cacheMB = 256;
+        List<String> extra = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                switch (args.get(i)) {
+                    case "-b" -> address = InetAddress.getByName(args.get(++i));
+                    case "-p" -> port = Integer.parseInt(args.get(++i));
+                    case "-t" -> threads = Integer.parseInt(args.get(++i));
+                    case "-q" -> queue = Integer.parseInt(args.get(++i));
+                    case "-c" -> cacheMB = Long.parseLong(args.get(++i));
+                    default -> extra.add(args.get(i));
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // An option given without its value
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (!extra.isEmpty()) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        RenderServer server = new RenderServer(address, port, threads, queue, cacheMB * 1024 * 1024);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        System.out.printf("SignGenerator render service listening on %s port %d%n",
+            address.getHostAddress(), server.port());
+        Thread.currentThread().join();  // i.e., until killed
+        return 0;
+    }
+}
@@ -0,0 +1,54 @@
+package text3d;
+
+import java.util.Objects;
+
+import static text3d.SignGenerator.*;
+
+/// All the dimensions (in mm) that shape a rendered sign, passed to every TextToFile,
+/// how the result is to be checked, and how hard to compress it.
+/// Immutable, so renderers can use it (or parts of it) as a cache key.
+/// @param baseHeight Thickness of the base plate
+/// @param baseMargin How far the base plate extends beyond the text
+/// @param letterHeight How far the letters stand up from the base, bevel included
+/// @param bevelHeight Height of the bevelled band at the top of the letters
+/// @param meshCheck Whether to validate the mesh before writing it, and whether a bad one fails the render
+/// @param compression How to compress a 3MF file; ignored for STL
+public record RenderSpec(double baseHeight, double baseMargin, double letterHeight, double bevelHeight,
+                         MeshCheck meshCheck, Compression compression) {
+
+    public static final RenderSpec DEFAULT = new RenderSpec(
+        DEFAULT_BASE_HEIGHT, DEFAULT_BASE_MARGIN, DEFAULT_LETTER_HEIGHT, DEFAULT_BEVEL_HEIGHT);
+
+    public RenderSpec {
+        if (baseHeight <= 0 || baseMargin < 0 || letterHeight <= 0 || bevelHeight < 0 || bevelHeight > letterHeight) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid dimensions: base %s, margin %s, letters %s, bevel %s (bevel may not exceed letter height)",
+                baseHeight, baseMargin, letterHeight, bevelHeight));
+        }
+        Objects.requireNonNull(meshCheck, "meshCheck");
+        Objects.requireNonNull(compression, "compression");
+    }
+
+    /// A spec that reports on the mesh but doesn't fail because of it, with default compression
+    public RenderSpec(double baseHeight, double baseMargin, double letterHeight, double bevelHeight) {
+        this(baseHeight, baseMargin, letterHeight, bevelHeight, MeshCheck.REPORT, Compression.DEFAULT);
+    }
+
+    public RenderSpec withMeshCheck(MeshCheck meshCheck) {
+        return new RenderSpec(baseHeight, baseMargin, letterHeight, bevelHeight, meshCheck, compression);
+    }
+
+    public RenderSpec withCompression(Compression compression) {
+        return new RenderSpec(baseHeight, baseMargin, letterHeight, bevelHeight, meshCheck, compression);
+    }
+
+    /// Just the dimensions, with the default check and compression; a key for
+    /// cached geometry, which neither of those affects
+    public RenderSpec dimensions() {
+        return new RenderSpec(baseHeight, baseMargin, letterHeight, bevelHeight);
+    }
+
+    static RenderSpec of(Sign sign) {
+        return new RenderSpec(sign.baseHeight(), sign.baseMargin(), sign.letterHeight(), sign.bevelHeight());
+    }
+}
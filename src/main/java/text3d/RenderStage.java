@@ -0,0 +1,114 @@
+package text3d;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// One step of a renderer's pipeline (layout, bevel, extrusion, ...), with its output
+/// remembered for the last few inputs. The key is the stage's input: an immutable record
+/// of everything the output depends on, which for all but the first stage includes the
+/// key of the stage before. The step asks the earlier stages for what it needs, by their keys,
+/// so nothing upstream is looked at unless this stage actually has to run.
+///
+/// A renderer is then a chain of stages and a final, uncached, write: changing only the
+/// output format reruns just the write, changing the base height reruns the extrusion
+/// and the write, and so on. A stage's time goes into the render's RenderMetrics (and a
+/// JFR RenderPhaseEvent) only when it runs, less the time of any earlier stages it ran.
+/// @author Ian Darwin
+final class RenderStage<K, V> {
+
+    /// What the stages of one render share; used by one thread at a time
+    static final class Context {
+        private final RenderMetrics.Builder metrics;
+        private final ProgressListener progress;
+        private final CancellationToken cancel;
+        /// Time spent in the stages that the running stage asked for, which it mustn't count as its own
+        private long nestedNanos;
+
+        Context(RenderMetrics.Builder metrics, ProgressListener progress, CancellationToken cancel) {
+            this.metrics = metrics;
+            this.progress = progress;
+            this.cancel = cancel;
+        }
+
+        RenderMetrics.Builder metrics() {
+            return metrics;
+        }
+
+        ProgressListener progress() {
+            return progress;
+        }
+
+        CancellationToken cancel() {
+            return cancel;
+        }
+    }
+
+    /// The work of a stage
+    @FunctionalInterface
+    interface Step<K, V> {
+        V apply(K key, Context context) throws IOException;
+    }
+
+    /// Fills in the counts of a stage's RenderPhaseEvent and finishes it
+    @FunctionalInterface
+    interface Recorder<K, V> {
+        void finish(RenderPhaseEvent event, K key, V value);
+    }
+
+    private final String phase;
+    private final Step<K, V> step;
+    private final Recorder<K, V> recorder;
+    private final LruCache<K, V> cache;
+    private final AtomicLong runs = new AtomicLong();
+
+    /// @param phase The name of the phase in RenderMetrics and JFR
+    /// @param size How many outputs to keep; small for stages whose outputs are big
+    RenderStage(String phase, int size, Step<K, V> step, Recorder<K, V> recorder) {
+        this.phase = phase;
+        this.step = step;
+        this.recorder = recorder;
+        this.cache = new LruCache<>(size);
+    }
+
+    /// A stage that records no counts
+    RenderStage(String phase, int size, Step<K, V> step) {
+        this(phase, size, step, (event, key, value) ->
+            event.finish(RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, RenderPhaseEvent.NONE, RenderPhaseEvent.NONE));
+    }
+
+    /// The output for this key, from the cache or by running the step
+    V get(K key, Context context) throws IOException {
+        V value = cache.get(key);
+        if (value == null) {
+            long outer = context.nestedNanos;
+            context.nestedNanos = 0;
+            long start = System.nanoTime();
+            RenderPhaseEvent event = RenderPhaseEvent.start(context.metrics(), phase);
+            try {
+                runs.incrementAndGet();
+                V fresh = step.apply(key, context);
+                event.exclude(context.nestedNanos);
+                recorder.finish(event, key, fresh);
+                cache.put(key, fresh);
+                value = fresh;
+            } finally {
+                context.nestedNanos = outer + System.nanoTime() - start;
+            }
+        }
+        return value;
+    }
+
+    /// How many times the step has run, i.e., missed the cache
+    long runs() {
+        return runs.get();
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderStage[" + phase + "]";
+    }
+}
@@ -0,0 +1,36 @@
+package text3d;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/// Describes one renderer, and makes it on demand.
+/// Implementations are found by java.util.ServiceLoader (see RendererRegistry),
+/// so they must be public, with a public no-argument constructor, and must not
+/// touch the renderer class itself until create() is called: some renderers
+/// load native libraries or JavaFX as soon as they are initialized.
+public interface RendererProvider {
+
+    /// Short stable id, as stored in prefs and .sgn files, e.g., "C"
+    String id();
+
+    /// Name to show in the UI
+    String displayName();
+
+    /// The output formats this renderer can produce
+    default Set<OutputFormat> formats() {
+        return EnumSet.allOf(OutputFormat.class);
+    }
+
+    /// True if the renderer needs a native library, which may be missing on some hosts
+    default boolean needsNativeLibrary() {
+        return false;
+    }
+
+    /// True if the renderer needs JavaFX, which is not available on all platforms
+    default boolean needsJavaFX() {
+        return false;
+    }
+
+    /// Make a new renderer; only called when the renderer is first used.
+    TextToFile create();
+}
@@ -0,0 +1,65 @@
+package text3d;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// All the renderers we know about, found via ServiceLoader.
+/// Each renderer is only instantiated the first time it is asked for,
+/// so startup never pays for renderers (or their native libraries) that aren't used.
+/// Renderer instances are shared, so they must be safe for use by several threads.
+/// @author Ian Darwin
+final class RendererRegistry {
+
+    private RendererRegistry() {
+        // No instances
+    }
+
+    /// Initialization-on-demand holder: providers are looked up on first use
+    private static class Providers {
+        static final Map<String, RendererProvider> BY_ID;
+        static {
+            Map<String, RendererProvider> map = new LinkedHashMap<>();
+            for (RendererProvider p : ServiceLoader.load(RendererProvider.class)) {
+                map.putIfAbsent(p.id(), p);
+            }
+            BY_ID = Collections.unmodifiableMap(map);
+        }
+    }
+
+    private static final Map<String, TextToFile> instances = new ConcurrentHashMap<>();
+
+    /// @return All providers, in the order listed in META-INF/services
+    static Collection<RendererProvider> providers() {
+        return Providers.BY_ID.values();
+    }
+
+    /// @throws IllegalArgumentException if there is no renderer with this id
+    static RendererProvider provider(String id) {
+        RendererProvider p = Providers.BY_ID.get(id);
+        if (p == null) {
+            throw new IllegalArgumentException("Unknown renderer " + id + "; known: " + Providers.BY_ID.keySet());
+        }
+        return p;
+    }
+
+    /// Check that the renderer can write the format, before any work is done for it
+    /// @throws IllegalArgumentException if there is no renderer with this id, or it can't write the format
+    static void checkFormat(String id, OutputFormat format) {
+        RendererProvider p = provider(id);
+        if (!p.formats().contains(format)) {
+            throw new IllegalArgumentException(p.displayName() + " can't write " + format.label() +
+                "; it writes " + p.formats().stream().map(OutputFormat::label).toList());
+        }
+    }
+
+    /// Get the shared renderer with this id, creating it if this is the first use.
+    /// @throws IllegalArgumentException if there is no renderer with this id
+    static TextToFile get(String id) {
+        TextToFile r = instances.get(id);
+        return r != null ? r : instances.computeIfAbsent(id, k -> provider(k).create());
+    }
+}
@@ -1,25 +1,50 @@
 package text3d;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.awt.*;
+import java.io.IOException;
+import java.util.Locale;
 
 /// A single Sign object, mainly for save/open
 /// @author Ian Darwin
 ///
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record Sign(String text, String fontName, int fontSize, int fontStyle,
-                   TextAlign alignment, double baseHeight, double baseMargin, double letterHeight, double bevelHeight){
+                   TextAlign alignment, double baseHeight, double baseMargin, double letterHeight, double bevelHeight,
+                   String renderer){
 
-    // Secondary constructor
+    // ObjectReader and ObjectWriter are immutable and thread-safe, so share them
+    // rather than paying for a new ObjectMapper (and its introspection) on every call.
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    static final ObjectReader READER = MAPPER.readerFor(Sign.class);
+    static final ObjectWriter WRITER = MAPPER.writerFor(Sign.class);
+
+    // Secondary constructor, for signs that don't care which renderer is used
+    Sign(String text, String fontName, int fontSize, int fontStyle,
+		TextAlign alignment, double baseHeight, double baseMargin, double letterHeight, double bevelHeight) {
+        this(text, fontName, fontSize, fontStyle,
+                alignment, baseHeight, baseMargin, letterHeight, bevelHeight, null);
+    }
+
+    // Tertiary constructor
     Sign(String text, Font font, TextAlign alignment, 
-		double baseHeight, double baseMargin, double letterHeight, double bevelHeight) {
+		double baseHeight, double baseMargin, double letterHeight, double bevelHeight, String renderer) {
         this(text, font.getFontName(), font.getSize(), font.getStyle(),
-                alignment, baseHeight, baseMargin, letterHeight, bevelHeight);
+                alignment, baseHeight, baseMargin, letterHeight, bevelHeight, renderer);
+    }
+
+    Font font() {
+        return new Font(fontName, fontStyle, fontSize);
     }
 
     String toJSON() {
-        return String.format("""
+        return String.format(Locale.ROOT, """
 				{
 					"text": "%s",
 					"fontName": "%s",
@@ -29,35 +54,46 @@ public record Sign(String text, String fontName, int fontSize, int fontStyle,
 					"baseHeight": %f, 
 					"baseMargin": %f, 
 					"letterHeight": %f, 
-					"bevelHeight": %f
+					"bevelHeight": %f%s
 				}""", // Note no trailing "," on final element.
-			text.replaceAll("\n", "\\\\n"), fontName(), fontSize(), fontStyle(),
-			alignment, baseHeight, baseMargin, letterHeight, bevelHeight);
+			quote(text), quote(fontName), fontSize(), fontStyle(),
+			alignment, baseHeight, baseMargin, letterHeight, bevelHeight,
+			renderer == null ? "" : ",\n\t\"renderer\": \"" + quote(renderer) + "\"");
     }
 
-    static Sign fromJSON(String jsonInput) {
-        ObjectMapper mapper = new ObjectMapper();
+    /// Escape quotes, backslashes and control characters for use inside a JSON string
+    private static String quote(String s) {
+        return new String(JsonStringEncoder.getInstance().quoteAsString(s));
+    }
 
-        Sign ret = null;
+    static Sign fromJSON(String jsonInput) {
         try {
-            ret = mapper.readValue(jsonInput, Sign.class);
-            // Now guard against corrupt or incomplete .sgn files:
-            if (ret.baseHeight == 0 ||
-                ret.baseMargin == 0 ||
-                ret.letterHeight == 0 ||
-                ret.bevelHeight == 0) {
-                System.out.println("Warning: Invalid value(s) in JSON passed to Sign.fromJSON(), using defaults.");
-				ret = new Sign(ret.text, ret.fontName, ret.fontSize, ret.fontStyle,
-                    TextAlign.CENTER, 
-					SignGenerator.DEFAULT_BASE_HEIGHT,
-					SignGenerator.DEFAULT_BASE_MARGIN,
-					SignGenerator.DEFAULT_LETTER_HEIGHT,
-					SignGenerator.DEFAULT_BEVEL_HEIGHT);
-            }
-            return ret;
+            return validated(READER.readValue(jsonInput));
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
-}
 
+    /// Parse a Sign straight from (part of) a byte array of UTF-8 JSON, without making a String first
+    static Sign fromJSON(byte[] json, int offset, int length) throws IOException {
+        return validated(READER.readValue(json, offset, length));
+    }
+
+    /// Guard against corrupt or incomplete .sgn files
+    private static Sign validated(Sign ret) {
+        if (ret.baseHeight == 0 ||
+            ret.baseMargin == 0 ||
+            ret.letterHeight == 0 ||
+            ret.bevelHeight == 0) {
+            System.err.println("Warning: Invalid value(s) in JSON passed to Sign.fromJSON(), using defaults.");
+            ret = new Sign(ret.text, ret.fontName, ret.fontSize, ret.fontStyle,
+                TextAlign.CENTER,
+                SignGenerator.DEFAULT_BASE_HEIGHT,
+                SignGenerator.DEFAULT_BASE_MARGIN,
+                SignGenerator.DEFAULT_LETTER_HEIGHT,
+                SignGenerator.DEFAULT_BEVEL_HEIGHT,
+                ret.renderer);
+        }
+        return ret;
+    }
+}
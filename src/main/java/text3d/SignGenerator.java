@@ -2,15 +2,21 @@ package text3d;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.io.*;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.prefs.Preferences;
 
-import com.darwinsys.swingui.FontChooser;
-
 /**
  * 3D Sign Generator - Creates STL files with colored regions for 3D printing.
  * Sort of a View and ViewModel combined
@@ -22,13 +28,22 @@ public class SignGenerator extends JFrame {
 
     // GUI Controls
     final JTextArea textArea;
-    private final JButton generateSTLButton, generate3MFButton;
+    private final Map<OutputFormat, JButton> generateButtons = new EnumMap<>(OutputFormat.class);
+    private final JButton cancelButton;
+    /// Whether a render is running; there's one Cancel button and progress bar, so only one at a time
+    private boolean rendering;
+    private final JProgressBar progressBar;
     private final JLabel statusLabel;
     private final JLabel fontNameLabel;
+    private final JButton fontButton;
     private final JSpinner fontSizeSpinner, baseHeightSpinner, baseMarginSpinner, letterHeightSpinner, bevelHeightSpinner;
     private final JRadioButton alignmentLeft, alignmentCenter, alignmentRight;
+    private final Map<String, JRadioButton> rendererButtons = new LinkedHashMap<>();
     private Font previewFont, renderFont;
 
+    /// Started at once, so the font chooser doesn't have to wait for the fonts to be found
+    private final FontCatalog fontCatalog = new FontCatalog(FontCatalog.DEFAULT_FILE, FontCatalog.fontDirectories()).start();
+
     // DEFAULT Dimensions in mm
     static final double DEFAULT_BASE_HEIGHT = 2.0;
     static final double DEFAULT_BASE_MARGIN = 5.0;
@@ -59,6 +74,9 @@ public class SignGenerator extends JFrame {
     static final String PREF_BEVEL_HEIGHT = "bevelHeight";
     static final String PREF_ALIGNMENT = "alignment";
 
+    // Renderers are identified (in prefs and .sgn files) by their RendererProvider's id
+    static final String DEFAULT_RENDERER = "C";
+
     // Chosen to be short but exercise both upper and lower case
     public static final String STARTER_TEXT = "Hello\nWORLD";
 
@@ -68,13 +86,12 @@ public class SignGenerator extends JFrame {
         "Text Files", "txt", "text");
     FileNameExtensionFilter signFilter = new FileNameExtensionFilter(
         "SignGenerator Save Files", "sgn");
-    FileNameExtensionFilter stlFilter = new FileNameExtensionFilter(
-        "STL Files", "stl");
-    FileNameExtensionFilter threeMFFilter = new FileNameExtensionFilter(
-        "3MF Files", "3mf");
+    FileNameExtensionFilter libraryFilter = new FileNameExtensionFilter(
+        "SignGenerator Libraries", SignLibrary.EXTENSION.substring(1));
 
-    TextToFile renderer =
-            new ClaudeTextToFile();
+    /// Id of the chosen renderer; see RendererRegistry. The renderer
+    /// itself is not created until the first time it is used.
+    String rendererId;
 
     public SignGenerator() {
         setTitle("3D Sign Generator");
@@ -92,13 +109,7 @@ public class SignGenerator extends JFrame {
         fontName = prefs.get(PREF_FONT_NAME, DEFAULT_FONT_NAME);
         fontSize = prefs.getInt(PREF_FONT_SIZE, DEFAULT_RENDER_FONT_SIZE);
 
-        String renderer = prefs.get(PREF_RENDERER, "C");
-        setRenderer(switch(renderer) {
-            case "C" -> new ClaudeTextToFile();
-            case "G" -> new GeminiTextToFile();
-            case "F" -> new FreeTypeRenderer();
-            default -> throw new IllegalStateException("Unexpected Renderer value: " + renderer);
-        });
+        rendererId = prefs.get(PREF_RENDERER, DEFAULT_RENDERER);
         fontNameLabel = new JLabel(fontName);
 
         setJMenuBar(createMenuBar());
@@ -121,15 +132,21 @@ public class SignGenerator extends JFrame {
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
 
-        generateSTLButton = new JButton("Generate STL File");
-        generateSTLButton.addActionListener(
-                e -> generate(OutputFormat.STL, generateSTLButton));
-        buttonPanel.add(generateSTLButton);
+        for (OutputFormat fmt : OutputFormat.values()) {
+            JButton generateButton = new JButton("Generate " + fmt.label() + " File");
+            generateButton.addActionListener(e -> generate(fmt));
+            buttonPanel.add(generateButton);
+            generateButtons.put(fmt, generateButton);
+        }
+
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        buttonPanel.add(progressBar);
 
-        generate3MFButton = new JButton("Generate 3MF File");
-        generate3MFButton.addActionListener(
-                e -> generate(OutputFormat.THREEMF, generate3MFButton));
-        buttonPanel.add(generate3MFButton);
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        buttonPanel.add(cancelButton);
 
         statusLabel = new JLabel("Ready to generate");
         statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 10, 10));
@@ -137,19 +154,19 @@ public class SignGenerator extends JFrame {
         // The main configuration panel
         JPanel settingsPanel = new JPanel();
 
-        // Choice of Renderer
+        // Choice of Renderer, one button for each that the registry knows about
         ButtonGroup rendererGroup = new ButtonGroup();
-        JRadioButton rendererClaude = new JRadioButton("Claude Renderer");
-        rendererClaude.addActionListener(e->setRenderer(new ClaudeTextToFile()));
-        rendererGroup.add(rendererClaude);
-
-        JRadioButton rendererGemini = new JRadioButton("Gemini Renderer");
-        rendererGemini.addActionListener(e->setRenderer(new GeminiTextToFile()));
-        rendererGroup.add(rendererGemini);
-
-        JRadioButton rendererFreeType = new JRadioButton("FreeType Renderer");
-        rendererFreeType.addActionListener(e->setRenderer(new FreeTypeRenderer()));
-        rendererGroup.add(rendererFreeType);
+        for (RendererProvider provider : RendererRegistry.providers()) {
+            JRadioButton button = new JRadioButton(provider.displayName());
+            button.addActionListener(e -> setRenderer(provider.id()));
+            rendererGroup.add(button);
+            rendererButtons.put(provider.id(), button);
+        }
+        try {
+            setRenderer(rendererId);
+        } catch (IllegalArgumentException e) {
+            setRenderer(DEFAULT_RENDERER);  // Renderer no longer available
+        }
 
         // Choice of alignment
         ButtonGroup alignmentGroup = new ButtonGroup();
@@ -203,18 +220,18 @@ public class SignGenerator extends JFrame {
 
         // Renderer choice
         gbc.gridx = 1;
-        settingsPanel.add(rendererClaude, gbc);
-        gbc.gridy++;
-        settingsPanel.add(rendererGemini, gbc);
-        gbc.gridy++;
-        settingsPanel.add(rendererFreeType, gbc);
+        gbc.gridy--;
+        for (JRadioButton button : rendererButtons.values()) {
+            gbc.gridy++;
+            settingsPanel.add(button, gbc);
+        }
 
         // Font
         gbc.gridx = 0;
         gbc.gridy++;
-        var setFontButton = new JButton("Font...");
-        settingsPanel.add(setFontButton, gbc);
-        setFontButton.addActionListener(e -> changeFont());
+        fontButton = new JButton("Font...");
+        settingsPanel.add(fontButton, gbc);
+        fontButton.addActionListener(e -> changeFont());
         gbc.gridx = 1;
         var fontInfoPanel = new JPanel();
         fontInfoPanel.add(new JLabel("Name:"));
@@ -302,6 +319,9 @@ public class SignGenerator extends JFrame {
         var open = new JMenuItem("Open...");
         open.addActionListener(e -> openFile());
         fileMenu.add(open);
+        var openLibrary = new JMenuItem("Open Library...");
+        openLibrary.addActionListener(e -> openLibrary());
+        fileMenu.add(openLibrary);
         var save = new JMenuItem("Save");
         save.addActionListener(e -> saveExisting());
         fileMenu.add(save);
@@ -332,7 +352,29 @@ public class SignGenerator extends JFrame {
     }
 
     void changeFont() {
-        FontChooser chooser = new FontChooser(this);
+        if (!fontCatalog.isReady()) {
+            // The chooser would hold up the GUI until the fonts are all found; open it then instead
+            String status = statusLabel.getText();
+            statusLabel.setText("Finding fonts...");
+            fontButton.setEnabled(false);
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            fontCatalog.families().whenComplete((families, t) -> SwingUtilities.invokeLater(() -> {
+                setCursor(Cursor.getDefaultCursor());
+                fontButton.setEnabled(true);
+                statusLabel.setText(status);
+                changeFont();
+            }));
+            return;
+        }
+        List<FontCatalog.Family> families;
+        try {
+            families = fontCatalog.families().join();
+        } catch (CompletionException e) {
+            JOptionPane.showMessageDialog(this, "Could not list the fonts: " + e.getCause().getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        FontDialog chooser = new FontDialog(this, families, renderFont);
         chooser.setVisible(true); // Blocking
         var chosenFont = chooser.getSelectedFont();
         if (chosenFont != null) {
@@ -369,23 +411,49 @@ public class SignGenerator extends JFrame {
             try {
                 signFilePath = chooser.getSelectedFile().getAbsolutePath();
                 String json = Files.readString(Path.of(signFilePath));
-                Sign sign = Sign.fromJSON(json);
-                renderFont = new Font(sign.fontName(), sign.fontStyle(), sign.fontSize());
-                previewFont = renderFont.deriveFont((float)PREVIEW_FONT_SIZE);
-                textArea.setFont(previewFont);
-                textArea.setText(sign.text());
-                textAlignment = sign.alignment();
-                setBaseHeight(sign.baseHeight());
-                setBaseMargin(sign.baseMargin());
-                setLetterHeight(sign.letterHeight());
-                setBevelHeight(sign.bevelHeight());
-                updateSettingsPanel();
+                showSign(Sign.fromJSON(json));
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
+    private void openLibrary() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Open sign library");
+        chooser.setFileFilter(libraryFilter);
+        if (JFileChooser.APPROVE_OPTION == chooser.showOpenDialog(this)) {
+            File file = chooser.getSelectedFile();
+            try (SignLibrary library = SignLibrary.open(file.toPath())) {
+                new LibraryBrowser(this, file.getName(), library, sign -> {
+                    // Came from a library, so Save must ask where to put it
+                    signFilePath = null;
+                    showSign(sign);
+                }).setVisible(true);   // Modal, so the library stays open until it's closed
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Could not open library: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /// Load all the settings from a Sign into the GUI
+    private void showSign(Sign sign) {
+        renderFont = new Font(sign.fontName(), sign.fontStyle(), sign.fontSize());
+        previewFont = renderFont.deriveFont((float)PREVIEW_FONT_SIZE);
+        textArea.setFont(previewFont);
+        textArea.setText(sign.text());
+        textAlignment = sign.alignment();
+        setBaseHeight(sign.baseHeight());
+        setBaseMargin(sign.baseMargin());
+        setLetterHeight(sign.letterHeight());
+        setBevelHeight(sign.bevelHeight());
+        if (sign.renderer() != null) {
+            setRenderer(sign.renderer());
+        }
+        updateSettingsPanel();
+    }
+
     private void saveExisting() {
         if (signFilePath == null) {
             saveFileAs();
@@ -394,8 +462,8 @@ public class SignGenerator extends JFrame {
             try {
                 Files.writeString(Path.of(signFilePath),
                         new Sign(textArea.getText(), renderFont,
-                            textAlignment, baseHeight, baseMargin, letterHeight, bevelHeight
-                                ).toJSON());
+                            textAlignment, baseHeight, baseMargin, letterHeight, bevelHeight,
+                            rendererId).toJSON());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -411,23 +479,31 @@ public class SignGenerator extends JFrame {
                 signFilePath = fileChooser.getSelectedFile().getAbsolutePath();
                 Files.writeString(Path.of(signFilePath),
                         new Sign(textArea.getText(), renderFont,
-                                textAlignment, baseHeight, baseMargin, letterHeight, bevelHeight).toJSON());
+                                textAlignment, baseHeight, baseMargin, letterHeight, bevelHeight,
+                                rendererId).toJSON());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
-    private void generate(OutputFormat fmt, JButton generateButton) {
+    private void generate(OutputFormat fmt) {
         String text = textArea.getText().trim();
         if (text.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please enter some text", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
+        final RenderSpec spec;
+        try {
+            spec = new RenderSpec(baseHeight, baseMargin, letterHeight, bevelHeight);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setFileFilter(fmt == OutputFormat.STL ? stlFilter : threeMFFilter);
-        fileChooser.setDialogTitle("Save " + fmt.name() + " File");
+        fileChooser.setFileFilter(new FileNameExtensionFilter(fmt.label() + " Files", fmt.ext().substring(1)));
+        fileChooser.setDialogTitle("Save " + fmt.label() + " File");
         fileChooser.setSelectedFile(new File("sign" + fmt.ext()));
 
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
@@ -437,35 +513,76 @@ public class SignGenerator extends JFrame {
             }
             final File ffile = file;
 
-            generateButton.setEnabled(false);
-            statusLabel.setText("Generating "+ fmt.name() + "...");
+            rendering = true;
+            enableGenerateButtons();
+            statusLabel.setText("Generating "+ fmt.label() + "...");
 
-            SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            CancellationToken token = new CancellationToken();
+            ActionListener canceller = e -> {
+                token.cancel();
+                statusLabel.setText("Cancelling...");
+            };
+            cancelButton.addActionListener(canceller);
+            cancelButton.setEnabled(true);
+            progressBar.setValue(0);
+            progressBar.setString("");
+            progressBar.setVisible(true);
+
+            // Fields the EDT may change while the worker runs, so taken now
+            final String id = rendererId;
+            final Font font = renderFont;
+            final TextAlign align = textAlignment;
+            SwingWorker<RenderMetrics, Progress> worker = new SwingWorker<>() {
                 @Override
-                protected Void doInBackground() throws Exception {
-                    renderer.generateFile(text, renderFont, ffile, fmt, textAlignment);
-                    return null;
+                protected RenderMetrics doInBackground() throws Exception {
+                    // First use of a renderer may be slow (e.g., loading native code), so do it here
+                    RenderPhaseEvent event = RenderPhaseEvent.start(id, "Generate " + fmt);
+                    TextToFile renderer = RendererRegistry.get(id);
+                    RenderMetrics metrics = renderer.generateFile(text, font, spec, ffile, fmt, align,
+                        (phase, done, total) -> publish(new Progress(phase, done, total)),
+                        token);
+                    event.finish(() -> RenderPhaseEvent.glyphsIn(text), RenderPhaseEvent.NONE,
+                        () -> metrics.triangles(), ffile::length);
+                    return metrics;
+                }
+
+                @Override
+                protected void process(List<Progress> chunks) {
+                    // Only the latest report matters
+                    Progress p = chunks.getLast();
+                    progressBar.setMaximum(Math.max(p.total(), 1));
+                    progressBar.setValue(p.done());
+                    progressBar.setString(p.phase());
                 }
 
                 @Override
                 protected void done() {
                     try {
-                        get();
-                        statusLabel.setText("Output file generated successfully: " + ffile.getName());
+                        RenderMetrics metrics = get();
+                        statusLabel.setText(ffile.getName() + ": " + metrics.summary());
                         JOptionPane.showMessageDialog(SignGenerator.this,
                             "Model file created successfully!\n\nFor multi-color printing:\n" +
-                            "1. Base: Z = 0 to " + baseHeight + " mm\n" +
-                            "2. Letter body: Z = " + baseHeight + " to " + (baseHeight + DEFAULT_LETTER_HEIGHT - DEFAULT_BEVEL_HEIGHT) + " mm\n" +
-                            "3. Letter front (beveled): Z = " + (baseHeight + DEFAULT_LETTER_HEIGHT - DEFAULT_BEVEL_HEIGHT) + " to " + (baseHeight + DEFAULT_LETTER_HEIGHT) + " mm",
+                            "1. Base: Z = 0 to " + spec.baseHeight() + " mm\n" +
+                            "2. Letter body: Z = " + spec.baseHeight() + " to " + (spec.baseHeight() + spec.letterHeight() - spec.bevelHeight()) + " mm\n" +
+                            "3. Letter front (beveled): Z = " + (spec.baseHeight() + spec.letterHeight() - spec.bevelHeight()) + " to " + (spec.baseHeight() + spec.letterHeight()) + " mm",
                             "Success", JOptionPane.INFORMATION_MESSAGE);
                     } catch (Exception ex) {
+                        if (ex instanceof ExecutionException && ex.getCause() instanceof CancellationException) {
+                            // Renderer has already removed the partial file
+                            statusLabel.setText("Generation cancelled");
+                            return;
+                        }
                         statusLabel.setText("Error: " + ex.getMessage());
                         JOptionPane.showMessageDialog(SignGenerator.this,
                             "Error generating file: " + ex.getMessage(),
                             "Error", JOptionPane.ERROR_MESSAGE);
                         ex.printStackTrace();
                     } finally {
-                        generateButton.setEnabled(true);
+                        rendering = false;
+                        enableGenerateButtons();
+                        cancelButton.removeActionListener(canceller);
+                        cancelButton.setEnabled(false);
+                        progressBar.setVisible(false);
                     }
                 }
             };
@@ -473,13 +590,25 @@ public class SignGenerator extends JFrame {
         }
     }
 
+    /// One progress report, carried from the worker thread to the EDT
+    private record Progress(String phase, int done, int total) {}
+
     ///  NOT-SO-SIMPLE ACCESSORS
 
     JTextArea textArea() { return textArea; }
 
-    void setRenderer(TextToFile renderer) {
-        this.renderer = renderer;
-        prefs.put(PREF_RENDERER, String.valueOf(renderer.getClass().getSimpleName().charAt(0)));
+    void setRenderer(String id) {
+        RendererRegistry.provider(id);     // Reject unknown ids before changing anything
+        this.rendererId = id;
+        prefs.put(PREF_RENDERER, id);
+        rendererButtons.get(id).setSelected(true);
+        enableGenerateButtons();
+    }
+
+    /// Enable the buttons for the formats the current renderer makes, unless a render is running
+    private void enableGenerateButtons() {
+        RendererProvider provider = RendererRegistry.provider(rendererId);
+        generateButtons.forEach((fmt, button) -> button.setEnabled(!rendering && provider.formats().contains(fmt)));
     }
 
     // Overrides setFont() in AWT but we never call it on the main class so OK
@@ -1,10 +1,28 @@
 package text3d;
 
 import javax.swing.*;
+import java.util.Arrays;
+import java.util.List;
 
 /// Simple main program for Sign/Stamp Generator
 public class SignGeneratorMain {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].startsWith("--")) {
+            System.setProperty("java.awt.headless", "true");
+            List<String> rest = Arrays.asList(args).subList(1, args.length);
+            System.exit(switch (args[0]) {
+                case "--batch" -> BatchRenderer.main(rest);
+                case "--render" -> BatchRenderer.render(rest);
+                case "--merge" -> MailMerge.main(rest);
+                case "--serve" -> RenderServer.main(rest);
+                case "--library" -> SignLibrary.main(rest);
+                case "--heightmap" -> Heightmap.main(rest);
+                default -> {
+                    System.err.println("Unknown mode " + args[0]);
+                    yield 2;
+                }
+            });
+        }
         SwingUtilities.invokeLater(() -> {
             SignGenerator generator = new SignGenerator();
 			if (args.length > 0) {
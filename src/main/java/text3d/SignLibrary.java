@@ -0,0 +1,240 @@
+package text3d;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// Many named Signs in one file, any of which can be loaded without parsing the rest.
+///
+/// The file layout (all numbers big-endian) is:
+/// - Header: the 8-byte MAGIC, then the int entry count
+/// - Index: per entry, the long offset and int length of its JSON, then the int offset and int length of its name
+/// - Names: the UTF-8 names, one after another
+/// - Data: each entry's Sign as compact UTF-8 JSON
+///
+/// The file is memory-mapped when opened; listing reads only the index and names,
+/// and each Sign is parsed only when asked for.
+/// An open library may be read from any number of threads.
+/// @author Ian Darwin
+public class SignLibrary implements AutoCloseable {
+
+    public static final String EXTENSION = ".sgnlib";
+
+    public static final String USAGE =
+        "Usage: SignGeneratorMain --library out" + EXTENSION + " file|dir|glob...\n" +
+        "   or: SignGeneratorMain --library -l in" + EXTENSION;
+
+    static final byte[] MAGIC = "SGNLIB\r\n".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER_SIZE = MAGIC.length + Integer.BYTES;
+    static final int INDEX_ENTRY_SIZE = Long.BYTES + 3 * Integer.BYTES;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    /// One named Sign, for writing a library
+    public record Entry(String name, Sign sign) {}
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final int count;
+    private final long namesStart;
+    private volatile Map<String, Integer> byName;
+
+    private SignLibrary(Arena arena, MemorySegment segment) throws IOException {
+        this.arena = arena;
+        this.segment = segment;
+        if (segment.byteSize() < HEADER_SIZE ||
+            MemorySegment.mismatch(segment, 0, MAGIC.length,
+                MemorySegment.ofArray(MAGIC), 0, MAGIC.length) != -1) {
+            throw new IOException("Not a sign library");
+        }
+        count = segment.get(INT, MAGIC.length);
+        namesStart = HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE;
+        if (count < 0 || namesStart > segment.byteSize()) {
+            throw new IOException("Corrupt sign library index");
+        }
+        // Every name is checked now, so listing (e.g., a JList painting cells) can't fail part way
+        for (int i = 0; i < count; i++) {
+            long entry = indexEntry(i);
+            checkBounds(i, namesStart + segment.get(INT, entry + Long.BYTES + Integer.BYTES),
+                segment.get(INT, entry + Long.BYTES + 2 * Integer.BYTES));
+        }
+    }
+
+    /// Open a library file by memory-mapping it
+    public static SignLibrary open(Path file) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed, until the arena is
+            return new SignLibrary(arena, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size(), arena));
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /// @return The number of Signs in the library
+    public int size() {
+        return count;
+    }
+
+    /// @return The name of the i'th Sign, read from the index without touching the Sign itself
+    /// (every name's place in the file is checked when the library is opened)
+    public String name(int i) {
+        long entry = indexEntry(i);
+        int offset = segment.get(INT, entry + Long.BYTES + Integer.BYTES);
+        int length = segment.get(INT, entry + Long.BYTES + 2 * Integer.BYTES);
+        return new String(bytes(namesStart + offset, length), StandardCharsets.UTF_8);
+    }
+
+    /// @return All the names, in library order
+    public List<String> names() {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(name(i));
+        }
+        return names;
+    }
+
+    /// Load and parse just the i'th Sign
+    /// @throws IOException if its place in the file is outside the file, or it won't parse
+    public Sign get(int i) throws IOException {
+        long entry = indexEntry(i);
+        long offset = segment.get(LONG, entry);
+        int length = segment.get(INT, entry + Long.BYTES);
+        checkBounds(i, offset, length);
+        return Sign.fromJSON(bytes(offset, length), 0, length);
+    }
+
+    /// @return The index of the Sign with this name, or -1 if none
+    public int indexOf(String name) {
+        Map<String, Integer> map = byName;
+        if (map == null) {
+            // Only built if someone looks up by name; a race just builds it twice
+            map = new HashMap<>();
+            for (int i = count - 1; i >= 0; i--) {
+                map.put(name(i), i);    // So the first of any duplicates wins
+            }
+            byName = map;
+        }
+        return map.getOrDefault(name, -1);
+    }
+
+    private long indexEntry(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Entry " + i + " of " + count);
+        }
+        return HEADER_SIZE + (long) i * INDEX_ENTRY_SIZE;
+    }
+
+    /// Check that an entry's name or data, as the index gives it, is after the index and within the file
+    private void checkBounds(int i, long offset, int length) throws IOException {
+        if (offset < namesStart || length < 0 || offset > segment.byteSize() - length) {
+            throw new IOException("Corrupt sign library index: entry " + i + " has " + length +
+                " bytes at " + offset + " in a file of " + segment.byteSize());
+        }
+    }
+
+    private byte[] bytes(long offset, int length) {
+        return segment.asSlice(offset, length).toArray(ValueLayout.JAVA_BYTE);
+    }
+
+    /// Unmap the file. Signs already loaded remain usable.
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    /// Write a library file, replacing any existing one only once the new one is complete.
+    /// Each Sign is serialized and written in turn, so the Signs themselves need not all be
+    /// in memory as JSON at once; the index is filled in at the end.
+    public static void write(Path file, List<Entry> entries) throws IOException {
+        int count = entries.size();
+        byte[][] names = new byte[count][];
+        int namesLength = 0;
+        for (int i = 0; i < count; i++) {
+            names[i] = entries.get(i).name().getBytes(StandardCharsets.UTF_8);
+            namesLength += names[i].length;
+        }
+        long dataStart = HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE + namesLength;
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "sgnlib", ".tmp");
+        try {
+            ByteBuffer index = ByteBuffer.allocate((int) (dataStart - HEADER_SIZE - namesLength));
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.position(dataStart);
+                int nameOffset = 0;
+                for (int i = 0; i < count; i++) {
+                    byte[] json = Sign.WRITER.writeValueAsBytes(entries.get(i).sign());
+                    index.putLong(ch.position()).putInt(json.length)
+                        .putInt(nameOffset).putInt(names[i].length);
+                    nameOffset += names[i].length;
+                    writeFully(ch, ByteBuffer.wrap(json));
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + index.capacity() + namesLength);
+                header.put(MAGIC).putInt(count).put(index.flip());
+                for (byte[] name : names) {
+                    header.put(name);
+                }
+                ch.position(0);
+                writeFully(ch, header.flip());
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    /// The name a .sgn file gets in a library: its file name without the extension
+    static String nameFor(Path sgnFile) {
+        String name = sgnFile.getFileName().toString();
+        return name.endsWith(".sgn") ? name.substring(0, name.length() - ".sgn".length()) : name;
+    }
+
+    /// Entry point for the --library mode of SignGeneratorMain:
+    /// pack .sgn files into a library, or list one.
+    /// @return The process exit status
+    static int main(List<String> args) throws IOException {
+        if (args.size() == 2 && args.get(0).equals("-l")) {
+            try (SignLibrary library = open(Path.of(args.get(1)))) {
+                for (int i = 0; i < library.size(); i++) {
+                    System.out.println(library.name(i));
+                }
+            }
+            return 0;
+        }
+        if (args.size() < 2 || args.get(0).startsWith("-")) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Path p : BatchRenderer.expand(args.subList(1, args.size()))) {
+            entries.add(new Entry(nameFor(p), Sign.fromJSON(Files.readString(p))));
+        }
+        write(Path.of(args.get(0)), entries);
+        System.out.printf("Wrote %d sign(s) to %s%n", entries.size(), args.get(0));
+        return 0;
+    }
+}
@@ -0,0 +1,342 @@
+package text3d;
+
+import java.awt.Font;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import text3d.ClaudeTextToFile.LayoutKey;
+import text3d.ClaudeTextToFile.Outline;
+import text3d.ClaudeTextToFile.Placement;
+import text3d.ClaudeTextToFile.Triangle;
+
+import static text3d.ClaudeTextToFile.*;
+import static text3d.SignGenerator.SCALE_FACTOR;
+
+/// Many signs packed onto build plates, one 3MF file per plate, e.g., for a run of badges.
+///
+/// Each sign is laid out just as ClaudeTextToFile would render it on its own, and its
+/// base (the baseBounds rectangle) is what PlatePacker arranges. Signs share most of
+/// their letters, so each distinct letter shape is meshed once, at the origin, as a 3MF
+/// object, and every sign is an object made of `<components>`: its base, and each of
+/// its letters moved into place by a transform. Bases of the same size are shared too.
+/// A plate of fifty badges is then a few dozen small meshes and some transforms,
+/// rather than fifty copies of every letter.
+///
+/// Letters are matched by their contours, moved to the origin and rounded to a
+/// thousandth of a font unit, along with the heights they're extruded to.
+/// [#add] may be called from several threads at once; each new letter is meshed once,
+/// by whichever thread needs it first, while the others get on with theirs.
+/// @author Ian Darwin
+final class SignPlate {
+
+    /// Space between signs on the bed, in mm
+    static final double DEFAULT_GAP = 5;
+
+    private static final double QUANTUM = 1e-3;
+
+    /// A letter's contours at the origin, and the heights it's extruded to
+    private record GlyphKey(double baseHeight, double letterHeight, double bevelHeight, long[] shape) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GlyphKey k && baseHeight == k.baseHeight && letterHeight == k.letterHeight &&
+                bevelHeight == k.bevelHeight && Arrays.equals(shape, k.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(shape) * 31 + Double.hashCode(baseHeight + 7 * letterHeight + 13 * bevelHeight);
+        }
+    }
+
+    /// A base plate's size and thickness, in micrometres
+    private record BaseKey(long width, long depth, long height) {}
+
+    /// One sign: the front left corner and size of its base in model units,
+    /// and each of its letters with where it goes
+    private record Placed(int order, String name, double x, double y, double width, double depth,
+                          IndexedMesh base, List<IndexedMesh> glyphs, double[] offsets) {}
+
+    /// A sign on a plate, and how far to move it there
+    private record Item(Placed sign, double dx, double dy) {}
+
+    private final ClaudeTextToFile renderer;
+    private final PlatePacker packer;
+    private final double bedWidth, bedDepth;
+    // Meshes, or the making of them, by any thread; signs and plates are under the lock
+    private final ConcurrentMap<GlyphKey, Future<IndexedMesh>> glyphs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<BaseKey, Future<IndexedMesh>> bases = new ConcurrentHashMap<>();
+    private final List<Placed> signs = new ArrayList<>();
+    private List<List<Item>> plates;
+
+    SignPlate(ClaudeTextToFile renderer, double bedWidth, double bedDepth, double gap) {
+        this.renderer = renderer;
+        this.packer = new PlatePacker(bedWidth, bedDepth, gap);
+        this.bedWidth = bedWidth;
+        this.bedDepth = bedDepth;
+    }
+
+    /// Lay out a sign and mesh any letters not seen before
+    /// @param order Where the sign comes among the others, so the plates don't depend on the order of adding
+    /// @param name What the slicer calls the sign
+    /// @throws IllegalArgumentException if the sign's base is bigger than the bed
+    /// @throws IOException if the text is empty, or a letter's mesh fails the spec's MeshCheck
+    void add(String text, Font font, TextAlign align, RenderSpec spec, int order, String name) throws IOException {
+        CancellationToken cancel = new CancellationToken();
+        RenderStage.Context context = new RenderStage.Context(new RenderMetrics.Builder(ID, OutputFormat.THREEMF),
+            ProgressListener.NONE, cancel);
+        Placement placement = renderer.place(new LayoutKey(text, font, align), context);
+        Rectangle2D bounds = baseBounds(placement.bounds(), spec);
+        double width = bounds.getWidth() * SCALE_FACTOR, depth = bounds.getHeight() * SCALE_FACTOR;
+        if (width > bedWidth || depth > bedDepth) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                "Sign is %.1f x %.1f mm, too big for the %.0f x %.0f mm bed", width, depth, bedWidth, bedDepth));
+        }
+
+        // The slow part (bevelling and extruding) is only for letters not seen before
+        List<GlyphKey> keys = new ArrayList<>();
+        List<Outline> moved = new ArrayList<>();
+        List<Double> offsets = new ArrayList<>();
+        for (int n = 0; n < placement.lines().size(); n++) {
+            for (Outline outline : renderer.lineStage.get(placement.lines().get(n), context).outlines()) {
+                double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+                for (Point2D p : outline.outer()) {
+                    minX = Math.min(minX, p.getX());
+                    minY = Math.min(minY, p.getY());
+                }
+                Outline origin = translate(outline, -minX, -minY);
+                // The line's outlines are at x = 0; font units go down the page, model units up it
+                offsets.add((minX + placement.x()[n]) * SCALE_FACTOR);
+                offsets.add(-minY * SCALE_FACTOR);
+                moved.add(origin);
+                keys.add(new GlyphKey(spec.baseHeight(), spec.letterHeight(), spec.bevelHeight(), shape(origin)));
+            }
+        }
+
+        List<IndexedMesh> meshes = new ArrayList<>();
+        for (int n = 0; n < keys.size(); n++) {
+            Outline outline = moved.get(n);
+            meshes.add(mesh(glyphs, keys.get(n), () -> {
+                List<Triangle> triangles = new ArrayList<>();
+                renderer.addLetter(triangles, outline, renderer.computeBevel(outline, spec.bevelHeight() * 0.7), spec);
+                return checked(triangles, spec, cancel);
+            }));
+        }
+        BaseKey baseKey = new BaseKey(Math.round(width * 1000), Math.round(depth * 1000),
+            Math.round(spec.baseHeight() * 1000));
+        IndexedMesh base = mesh(bases, baseKey, () -> {
+            List<Triangle> triangles = new ArrayList<>();
+            renderer.addBase(triangles, new Rectangle2D.Double(0, -depth / SCALE_FACTOR,
+                width / SCALE_FACTOR, depth / SCALE_FACTOR), spec);
+            return checked(triangles, spec, cancel);
+        });
+        synchronized (this) {
+            signs.add(new Placed(order, name, bounds.getX() * SCALE_FACTOR,
+                -bounds.getMaxY() * SCALE_FACTOR, width, depth, base, meshes,
+                offsets.stream().mapToDouble(Double::doubleValue).toArray()));
+            plates = null;
+        }
+    }
+
+    /// The mesh for the key, made here, without the lock, if no other thread has made it or is making it;
+    /// if another is, wait for that one. A mesh that fails is forgotten, so the next sign tries again.
+    private static <K> IndexedMesh mesh(ConcurrentMap<K, Future<IndexedMesh>> meshes, K key,
+                                        Callable<IndexedMesh> make) throws IOException {
+        FutureTask<IndexedMesh> task = new FutureTask<>(make);
+        Future<IndexedMesh> future = meshes.computeIfAbsent(key, k -> task);
+        if (future == task) {
+            task.run();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a letter");
+        } catch (ExecutionException e) {
+            meshes.remove(key, future);
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static IndexedMesh checked(List<Triangle> triangles, RenderSpec spec, CancellationToken cancel)
+            throws IOException {
+        if (spec.meshCheck() != MeshCheck.OFF) {
+            spec.meshCheck().enforce(validate(triangles, cancel));
+        }
+        // Kept until the plates are written, perhaps by another thread, and never closed, so on the heap
+        return indexed(triangles, false, cancel);
+    }
+
+    private static Outline translate(Outline outline, double dx, double dy) {
+        List<List<Point2D>> holes = new ArrayList<>();
+        for (List<Point2D> hole : outline.holes()) {
+            holes.add(translate(hole, dx, dy));
+        }
+        List<Point2D[]> tris = new ArrayList<>();
+        for (Point2D[] tri : outline.bottomTris()) {
+            tris.add(translate(Arrays.asList(tri), dx, dy).toArray(new Point2D[0]));
+        }
+        return new Outline(translate(outline.outer(), dx, dy), holes, tris);
+    }
+
+    private static List<Point2D> translate(List<Point2D> points, double dx, double dy) {
+        List<Point2D> moved = new ArrayList<>(points.size());
+        for (Point2D p : points) {
+            moved.add(new Point2D.Double(p.getX() + dx, p.getY() + dy));
+        }
+        return moved;
+    }
+
+    /// Every contour's length and its points, rounded to QUANTUM
+    private static long[] shape(Outline outline) {
+        int n = 2 + 2 * outline.outer().size();
+        for (List<Point2D> hole : outline.holes()) {
+            n += 1 + 2 * hole.size();
+        }
+        long[] shape = new long[n];
+        int i = 0;
+        shape[i++] = outline.holes().size();
+        for (List<Point2D> contour : contours(outline)) {
+            shape[i++] = contour.size();
+            for (Point2D p : contour) {
+                shape[i++] = Math.round(p.getX() / QUANTUM);
+                shape[i++] = Math.round(p.getY() / QUANTUM);
+            }
+        }
+        return shape;
+    }
+
+    private static List<List<Point2D>> contours(Outline outline) {
+        List<List<Point2D>> all = new ArrayList<>();
+        all.add(outline.outer());
+        all.addAll(outline.holes());
+        return all;
+    }
+
+    /// Arrange the signs added so far on as few plates as will hold them
+    /// @return The number of plates
+    synchronized int pack() {
+        signs.sort(Comparator.comparingInt(Placed::order));
+        double[] widths = new double[signs.size()], depths = new double[signs.size()];
+        for (int i = 0; i < signs.size(); i++) {
+            widths[i] = signs.get(i).width();
+            depths[i] = signs.get(i).depth();
+        }
+        List<PlatePacker.Placement> placements = packer.pack(widths, depths);
+        plates = new ArrayList<>();
+        for (int i = 0; i < signs.size(); i++) {
+            PlatePacker.Placement at = placements.get(i);
+            while (plates.size() <= at.plate()) {
+                plates.add(new ArrayList<>());
+            }
+            Placed s = signs.get(i);
+            plates.get(at.plate()).add(new Item(s, at.x() - s.x(), at.y() - s.y()));
+        }
+        return plates.size();
+    }
+
+    /// The number of distinct letter meshes, each written once per plate it's used on
+    int glyphCount() {
+        return glyphs.size();
+    }
+
+    /// Write one plate (after [#pack]) as a 3MF model; the channel is left open
+    synchronized void write(int plate, WritableByteChannel out, Compression compression) throws IOException {
+        if (plates == null) {
+            throw new IllegalStateException("Signs added since they were packed");
+        }
+        List<Item> items = plates.get(plate);
+        // Object ids, in order of first use, so the same signs always give the same file
+        Map<IndexedMesh, Integer> ids = new LinkedHashMap<>();
+        long triangles = 0;
+        for (Item item : items) {
+            Placed s = item.sign();
+            for (IndexedMesh mesh : concat(s.base(), s.glyphs())) {
+                if (!ids.containsKey(mesh)) {
+                    ids.put(mesh, ids.size() + 1);
+                    triangles += mesh.triangleCount();
+                }
+            }
+        }
+        long sizeHint = MODEL_BYTES_PER_TRIANGLE * triangles + 120L * items.stream().mapToInt(i -> i.sign().glyphs().size()).sum();
+
+        try (ThreeMFPackager zip = new ThreeMFPackager(out, compression);
+             Writer xml = new BufferedWriter(new OutputStreamWriter(
+                 zip.entry(ThreeMFPackager.MODEL, sizeHint), StandardCharsets.UTF_8), 1 << 16)) {
+            xml.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            xml.write("<model unit=\"millimeter\" xml:lang=\"en-US\" xmlns=\"http://schemas.microsoft.com/3dmanufacturing/core/2015/02\">\n");
+            xml.write("  <resources>\n");
+            for (Map.Entry<IndexedMesh, Integer> e : ids.entrySet()) {
+                xml.write("    <object id=\"" + e.getValue() + "\" type=\"model\">\n");
+                e.getKey().writeModelMesh(xml);
+                xml.write("    </object>\n");
+            }
+            int nextId = ids.size() + 1;
+            for (Item item : items) {
+                Placed s = item.sign();
+                xml.write("    <object id=\"" + nextId++ + "\" name=\"" + escape(s.name()) + "\" type=\"model\">\n");
+                xml.write("      <components>\n");
+                xml.write("        <component objectid=\"" + ids.get(s.base()) +
+                    "\" transform=\"" + translation(s.x(), s.y()) + "\"/>\n");
+                for (int n = 0; n < s.glyphs().size(); n++) {
+                    xml.write("        <component objectid=\"" + ids.get(s.glyphs().get(n)) +
+                        "\" transform=\"" + translation(s.offsets()[2 * n], s.offsets()[2 * n + 1]) + "\"/>\n");
+                }
+                xml.write("      </components>\n");
+                xml.write("    </object>\n");
+            }
+            xml.write("  </resources>\n");
+            xml.write("  <build>\n");
+            nextId = ids.size() + 1;
+            for (Item item : items) {
+                xml.write("    <item objectid=\"" + nextId++ + "\" transform=\"" + translation(item.dx(), item.dy()) + "\"/>\n");
+            }
+            xml.write("  </build>\n");
+            xml.write("</model>\n");
+        }
+    }
+
+    private static List<IndexedMesh> concat(IndexedMesh first, List<IndexedMesh> rest) {
+        List<IndexedMesh> all = new ArrayList<>(rest.size() + 1);
+        all.add(first);
+        all.addAll(rest);
+        return all;
+    }
+
+    /// A 3MF transform (a 3x4 matrix, by rows of the transpose) that moves by dx, dy
+    private static String translation(double dx, double dy) {
+        return String.format(Locale.ROOT, "1 0 0 0 1 0 0 0 1 %.6f %.6f 0", dx, dy);
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+    }
+}
@@ -3,7 +3,73 @@ package text3d;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 public interface TextToFile {
-    void generateFile(String text, Font font, File file, OutputFormat format, TextAlign align) throws IOException;
+
+    default RenderMetrics generateFile(String text, Font font, File file, OutputFormat format, TextAlign align) throws IOException {
+        return generateFile(text, font, RenderSpec.DEFAULT, file, format, align, ProgressListener.NONE, new CancellationToken());
+    }
+
+    default RenderMetrics generateFile(String text, Font font, File file, OutputFormat format, TextAlign align,
+                                       ProgressListener progress, CancellationToken cancel) throws IOException {
+        return generateFile(text, font, RenderSpec.DEFAULT, file, format, align, progress, cancel);
+    }
+
+    /// Generate the file for a saved Sign, using its font, alignment and dimensions
+    default RenderMetrics generateFile(Sign sign, File file, OutputFormat format) throws IOException {
+        return generateFile(sign, file, format, MeshCheck.REPORT);
+    }
+
+    /// Generate the file for a saved Sign, checking the mesh as requested
+    default RenderMetrics generateFile(Sign sign, File file, OutputFormat format, MeshCheck check) throws IOException {
+        return generateFile(sign, file, format, check, Compression.DEFAULT);
+    }
+
+    /// Generate the file for a saved Sign, checking the mesh and compressing (3MF only) as requested
+    default RenderMetrics generateFile(Sign sign, File file, OutputFormat format, MeshCheck check,
+                                       Compression compression) throws IOException {
+        return generateFile(sign.text(), sign.font(),
+            RenderSpec.of(sign).withMeshCheck(check).withCompression(compression), file, format,
+            sign.alignment(), ProgressListener.NONE, new CancellationToken());
+    }
+
+    /// Generate the model for a saved Sign into a stream, e.g., an HTTP response or a slicer's stdin
+    default RenderMetrics generate(Sign sign, OutputStream out, OutputFormat format, MeshCheck check,
+                                   Compression compression) throws IOException {
+        return generate(sign.text(), sign.font(),
+            RenderSpec.of(sign).withMeshCheck(check).withCompression(compression), Channels.newChannel(out), format,
+            sign.alignment(), ProgressListener.NONE, new CancellationToken());
+    }
+
+    /// Generate the file, reporting progress and checking for cancellation as we go.
+    /// If cancelled, any partially-written file is removed and a
+    /// java.util.concurrent.CancellationException is thrown; the file is also removed
+    /// if generation fails.
+    /// @return Timings and counts for this render
+    default RenderMetrics generateFile(String text, Font font, RenderSpec spec, File file, OutputFormat format,
+                                       TextAlign align, ProgressListener progress, CancellationToken cancel)
+            throws IOException {
+        try {
+            try (FileChannel out = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                return generate(text, font, spec, out, format, align, progress, cancel);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file.toPath());
+            throw e;
+        }
+    }
+
+    /// Generate the model into a channel, reporting progress and checking for cancellation as we go.
+    /// The channel is left open. If cancelled, a java.util.concurrent.CancellationException
+    /// is thrown, and whatever was written so far should be discarded.
+    /// @return Timings and counts for this render
+    RenderMetrics generate(String text, Font font, RenderSpec spec, WritableByteChannel out, OutputFormat format,
+                           TextAlign align, ProgressListener progress, CancellationToken cancel) throws IOException;
 }
@@ -0,0 +1,428 @@
+package text3d;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/// Writes the ZIP container of a 3MF file, starting with the two fixed parts every 3MF needs;
+/// the caller then writes the model with entry(MODEL, ...).
+///
+/// Large entries are compressed pigz-style: the data is cut into BLOCK_SIZE blocks which are
+/// deflated in parallel, each primed with the 32K before it as a dictionary and ended with
+/// a sync flush, so the pieces join up into one ordinary deflate stream. Compressed entries
+/// have a trailing data descriptor, as from ZipOutputStream, so nothing needs knowing in advance;
+/// STORED entries have their header filled in afterwards. A stored entry can't have a data descriptor
+/// (ZipInputStream and other streaming readers refuse one), so when the output isn't seekable,
+/// entries are deflated at level 0 instead, which stores the data just as well, in deflate's own blocks.
+/// ZIP64 records are used, as ZipOutputStream uses them, wherever a size or offset passes 4GB;
+/// a STORED header that is to be filled in has room for them if the size hint calls for it.
+/// @author Ian Darwin
+final class ThreeMFPackager implements Closeable {
+
+    static final String MODEL = "3D/3dmodel.model";
+
+    static final String CONTENT_TYPES = """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">
+          <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>
+          <Default Extension="model" ContentType="application/vnd.ms-package.3dmanufacturing-3dmodel+xml"/>
+        </Types>
+        """;
+
+    static final String RELATIONSHIPS = """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">
+          <Relationship Target="/3D/3dmodel.model" Id="rel0" Type="http://schemas.microsoft.com/3dmanufacturing/2013/01/3dmodel"/>
+        </Relationships>
+        """;
+
+    /// Uncompressed size of each independently-deflated block
+    static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    /// Blocks in flight at once, which bounds the memory used
+    private static final int MAX_PENDING = 2 * ForkJoinPool.getCommonPoolParallelism() + 2;
+
+    /// Every entry gets this timestamp rather than "now", so that the same
+    /// model always produces byte-identical files (see ModelCache).
+    private static final short DOS_TIME = 0, DOS_DATE = (1 << 5) | 1;   // 1980-01-01, the earliest a ZIP can record
+
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    /// Size hints above this get ZIP64, leaving room for the hint being low or deflate expanding
+    private static final long ZIP64_THRESHOLD = 0xF0000000L;
+
+    private record CentralEntry(byte[] name, int method, int flags, long crc, long compressed, long size,
+                                long offset, boolean zip64) {}
+
+    private final WritableByteChannel channel;
+    /// The same channel, if it can go back and fill in headers; else null
+    private final SeekableByteChannel seekable;
+    private final long base;
+    private final Compression compression;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private long position;
+    private EntryStream current;
+    private boolean forceZip64;
+
+    /// @param channel Where to write, starting at its current position; closed by close()
+    ThreeMFPackager(WritableByteChannel channel, Compression compression) throws IOException {
+        this.channel = channel;
+        this.seekable = seekable(channel);
+        this.base = seekable != null ? seekable.position() : 0;
+        this.compression = compression;
+        addEntry("[Content_Types].xml", CONTENT_TYPES.getBytes(StandardCharsets.UTF_8));
+        addEntry("_rels/.rels", RELATIONSHIPS.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SeekableByteChannel seekable(WritableByteChannel channel) {
+        if (channel instanceof CountingChannel counting) {
+            // Going back doesn't add to the count, so it's safe to go around it
+            return seekable(counting.channel());
+        }
+        return channel instanceof SeekableByteChannel sc ? sc : null;
+    }
+
+    static ThreeMFPackager create(File file, Compression compression) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            return new ThreeMFPackager(channel, compression);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /// Use ZIP64 records whatever the sizes; for testing, as real use needs 4GB of model
+    void setForceZip64(boolean forceZip64) {
+        this.forceZip64 = forceZip64;
+    }
+
+    void addEntry(String name, byte[] content) throws IOException {
+        try (OutputStream out = entry(name, content.length)) {
+            out.write(content);
+        }
+    }
+
+    /// Start a new entry; write its content to the stream, and close the stream to finish it.
+    /// @param sizeHint Roughly how many bytes will be written; only used to decide on ZIP64 in advance
+    OutputStream entry(String name, long sizeHint) throws IOException {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + new String(current.name, StandardCharsets.UTF_8) + " not closed");
+        }
+        current = new EntryStream(name.getBytes(StandardCharsets.UTF_8), forceZip64 || sizeHint >= ZIP64_THRESHOLD);
+        return current;
+    }
+
+    /// Write the central directory and close the output
+    @Override
+    public void close() throws IOException {
+        try {
+            if (current != null) {
+                current.close();
+            }
+            writeDirectory();
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /// Close the output without finishing the entry or writing the central directory,
+    /// so that what has been written can't be read as a whole 3MF
+    void abort() throws IOException {
+        channel.close();
+    }
+
+    private final class EntryStream extends OutputStream {
+        final byte[] name;
+        final boolean stored = compression == Compression.STORED && seekable != null;
+        final boolean descriptor = !stored;
+        /// Whether the local header has a ZIP64 extra field, to be filled in
+        final boolean zip64;
+        final long offset = position;
+        final CRC32 crc = new CRC32();
+        final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        long size, compressed;
+        byte[] block = new byte[BLOCK_SIZE];
+        byte[] dictionary;
+        int fill;
+        boolean closed;
+
+        EntryStream(byte[] name, boolean zip64) throws IOException {
+            this.name = name;
+            this.zip64 = zip64 && !descriptor;
+            writeLocalHeader(this);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (fill == block.length) {
+                endBlock(false);
+            }
+            block[fill++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (fill == block.length) {
+                    endBlock(false);
+                }
+                int n = Math.min(len, block.length - fill);
+                System.arraycopy(b, off, block, fill, n);
+                fill += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /// Hand the block on: straight out if stored, else to be deflated
+        private void endBlock(boolean last) throws IOException {
+            crc.update(block, 0, fill);
+            size += fill;
+            if (stored) {
+                ThreeMFPackager.this.write(block, 0, fill);
+                compressed += fill;
+                fill = 0;
+                return;
+            }
+            byte[] data = block, dict = dictionary;
+            int length = fill, level = compression.level();
+            if (last && pending.isEmpty()) {
+                // All in one block, so there's nothing to gain from another thread
+                writeCompressed(deflate(data, length, dict, level, true));
+            } else {
+                pending.add(ForkJoinPool.commonPool().submit(() -> deflate(data, length, dict, level, last)));
+                while (pending.size() >= MAX_PENDING || last && !pending.isEmpty()) {
+                    writeCompressed(await(pending.remove()));
+                }
+                // Only the last block can be short, so this one is a full block
+                dictionary = last ? null : Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+                block = new byte[BLOCK_SIZE];
+            }
+            fill = 0;
+        }
+
+        private void writeCompressed(byte[] data) throws IOException {
+            ThreeMFPackager.this.write(data, 0, data.length);
+            compressed += data.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            endBlock(true);
+            boolean big = size >= ZIP32_LIMIT || compressed >= ZIP32_LIMIT;
+            if (big && !descriptor && !zip64) {
+                throw new ZipException("Entry " + new String(name, StandardCharsets.UTF_8) +
+                    " is over 4GB, but its size hint was too small for ZIP64 to be used");
+            }
+            if (descriptor) {
+                ByteBuffer b = littleEndian(big ? 24 : 16);
+                b.putInt(0x08074b50).putInt((int) crc.getValue());
+                if (big) {
+                    b.putLong(compressed).putLong(size);
+                } else {
+                    b.putInt((int) compressed).putInt((int) size);
+                }
+                ThreeMFPackager.this.write(b.array(), 0, b.capacity());
+            } else {
+                patchLocalHeader(this);
+            }
+            entries.add(new CentralEntry(name, stored ? 0 : 8, descriptor ? 8 : 0, crc.getValue(),
+                compressed, size, offset, big || zip64 || forceZip64));
+            current = null;
+        }
+    }
+
+    /// Deflate one block as raw deflate data which, if not the last, ends on a byte boundary
+    /// without marking the end of the stream, so the next block's output can follow on directly
+    static byte[] deflate(byte[] data, int length, byte[] dictionary, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] out = new byte[length / 2 + 64];
+            int n = 0;
+            while (true) {
+                n += deflater.deflate(out, n, out.length - n, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                if (last ? deflater.finished() : n < out.length) {
+                    return Arrays.copyOf(out, n);
+                }
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+    }
+
+    private void writeLocalHeader(EntryStream e) throws IOException {
+        ByteBuffer b = littleEndian(30 + e.name.length + (e.zip64 ? 20 : 0));
+        b.putInt(0x04034b50)
+            .putShort((short) (e.zip64 ? 45 : 20))
+            .putShort((short) (e.descriptor ? 8 : 0))
+            .putShort((short) (e.stored ? 0 : 8))
+            .putShort(DOS_TIME).putShort(DOS_DATE)
+            .putInt(0)                          // CRC, and sizes, come later
+            .putInt(e.zip64 ? -1 : 0)
+            .putInt(e.zip64 ? -1 : 0)
+            .putShort((short) e.name.length)
+            .putShort((short) (e.zip64 ? 20 : 0))
+            .put(e.name);
+        if (e.zip64) {
+            b.putShort((short) 1).putShort((short) 16).putLong(0).putLong(0);
+        }
+        write(b.array(), 0, b.capacity());
+    }
+
+    /// Fill in the CRC and sizes of a stored entry that has no data descriptor
+    private void patchLocalHeader(EntryStream e) throws IOException {
+        drain();
+        SeekableByteChannel sc = seekable;
+        long end = sc.position();
+        ByteBuffer crc = littleEndian(4).putInt((int) e.crc.getValue());
+        sc.position(base + e.offset + 14);
+        sc.write(crc.flip());
+        ByteBuffer sizes;
+        if (e.zip64) {
+            sizes = littleEndian(16).putLong(e.size).putLong(e.compressed);
+            sc.position(base + e.offset + 30 + e.name.length + 4);
+        } else {
+            sizes = littleEndian(8).putInt((int) e.compressed).putInt((int) e.size);
+        }
+        sc.write(sizes.flip());
+        sc.position(end);
+    }
+
+    private void writeDirectory() throws IOException {
+        long start = position;
+        for (CentralEntry e : entries) {
+            boolean bigOffset = e.offset() >= ZIP32_LIMIT;
+            int extra = (e.zip64() ? 16 : 0) + (bigOffset ? 8 : 0);
+            ByteBuffer b = littleEndian(46 + e.name().length + (extra > 0 ? 4 + extra : 0));
+            b.putInt(0x02014b50)
+                .putShort((short) 45)
+                .putShort((short) (e.zip64() || bigOffset ? 45 : 20))
+                .putShort((short) e.flags())
+                .putShort((short) e.method())
+                .putShort(DOS_TIME).putShort(DOS_DATE)
+                .putInt((int) e.crc())
+                .putInt(e.zip64() ? -1 : (int) e.compressed())
+                .putInt(e.zip64() ? -1 : (int) e.size())
+                .putShort((short) e.name().length)
+                .putShort((short) (extra > 0 ? 4 + extra : 0))
+                .putShort((short) 0)            // comment
+                .putShort((short) 0)            // disk
+                .putShort((short) 0)            // internal attributes
+                .putInt(0)                      // external attributes
+                .putInt(bigOffset ? -1 : (int) e.offset())
+                .put(e.name());
+            if (extra > 0) {
+                b.putShort((short) 1).putShort((short) extra);
+                if (e.zip64()) {
+                    b.putLong(e.size()).putLong(e.compressed());
+                }
+                if (bigOffset) {
+                    b.putLong(e.offset());
+                }
+            }
+            write(b.array(), 0, b.capacity());
+        }
+        long size = position - start;
+        boolean zip64 = forceZip64 || entries.size() >= 0xFFFF || start >= ZIP32_LIMIT || size >= ZIP32_LIMIT;
+        if (zip64) {
+            long end64 = position;
+            ByteBuffer b = littleEndian(56 + 20);
+            b.putInt(0x06064b50).putLong(44)
+                .putShort((short) 45).putShort((short) 45)
+                .putInt(0).putInt(0)
+                .putLong(entries.size()).putLong(entries.size())
+                .putLong(size).putLong(start);
+            b.putInt(0x07064b50).putInt(0).putLong(end64).putInt(1);
+            write(b.array(), 0, b.capacity());
+        }
+        ByteBuffer b = littleEndian(22);
+        b.putInt(0x06054b50)
+            .putShort((short) 0).putShort((short) 0)
+            .putShort((short) (zip64 ? -1 : entries.size()))
+            .putShort((short) (zip64 ? -1 : entries.size()))
+            .putInt(zip64 ? -1 : (int) size)
+            .putInt(zip64 ? -1 : (int) start)
+            .putShort((short) 0);
+        write(b.array(), 0, b.capacity());
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        position += len;
+        if (len >= buffer.capacity()) {
+            drain();
+            ByteBuffer direct = ByteBuffer.wrap(b, off, len);
+            while (direct.hasRemaining()) {
+                channel.write(direct);
+            }
+            return;
+        }
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,56 @@
+package text3d;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/// {@link GeometryKernels} across the widest SIMD registers the CPU has
+/// (four doubles with AVX2, eight with AVX-512), the last few values with a mask.
+/// Only loaded when the `jdk.incubator.vector` module is, so nothing else may refer to it.
+/// @author Ian Darwin
+final class VectorKernels extends GeometryKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    void scale(double[] a, double factor, double[] out, int n) {
+        for (int i = 0; i < n; i += SPECIES.length()) {
+            VectorMask<Double> m = SPECIES.indexInRange(i, n);
+            DoubleVector.fromArray(SPECIES, a, i, m).mul(factor).intoArray(out, i, m);
+        }
+    }
+
+    @Override
+    void unscale(double[] a, double divisor, double[] out, int n) {
+        for (int i = 0; i < n; i += SPECIES.length()) {
+            VectorMask<Double> m = SPECIES.indexInRange(i, n);
+            DoubleVector.fromArray(SPECIES, a, i, m).div(divisor).intoArray(out, i, m);
+        }
+    }
+
+    @Override
+    void normals(double[] u, double[] v, double[] out, int n) {
+        for (int i = 0; i < n; i += SPECIES.length()) {
+            VectorMask<Double> m = SPECIES.indexInRange(i, n);
+            DoubleVector ux = DoubleVector.fromArray(SPECIES, u, i, m);
+            DoubleVector uy = DoubleVector.fromArray(SPECIES, u, n + i, m);
+            DoubleVector uz = DoubleVector.fromArray(SPECIES, u, 2 * n + i, m);
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, v, i, m);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, v, n + i, m);
+            DoubleVector vz = DoubleVector.fromArray(SPECIES, v, 2 * n + i, m);
+            DoubleVector nx = uy.mul(vz).sub(uz.mul(vy));
+            DoubleVector ny = uz.mul(vx).sub(ux.mul(vz));
+            DoubleVector nz = ux.mul(vy).sub(uy.mul(vx));
+            DoubleVector len = nx.mul(nx).add(ny.mul(ny)).add(nz.mul(nz)).lanewise(VectorOperators.SQRT);
+            nx.div(len).intoArray(out, i, m);
+            ny.div(len).intoArray(out, n + i, m);
+            nz.div(len).intoArray(out, 2 * n + i, m);
+        }
+    }
+}
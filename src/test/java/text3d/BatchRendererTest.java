@@ -0,0 +1,43 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BatchRendererTest {
+
+    /// Two inputs with the same name in different directories must not both go to one -o file
+    @Test
+    public void testSameNameInOutDir() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("batch");
+        Sign sign = ModelCacheTest.sign("Room 101");
+        for (String sub : List.of("a", "b")) {
+            Files.createDirectories(dir.resolve(sub));
+            Files.writeString(dir.resolve(sub).resolve("101.sgn"), sign.toJSON());
+        }
+        Path out = dir.resolve("out");
+        List<Path> inputs = BatchRenderer.expand(List.of(dir.toString()));
+        BatchRenderer batch = new BatchRenderer(OutputFormat.STL, out, 2, ClaudeTextToFile.ID);
+        assertThrows(IllegalArgumentException.class, () -> batch.renderAll(inputs));
+
+        assertEquals(2, BatchRenderer.main(List.of("-o", out.toString(), dir.toString())));
+        assertFalse(Files.exists(out));
+    }
+
+    /// An option given without its value is a usage error, not an exception
+    @Test
+    public void testMissingValue() throws IOException, InterruptedException {
+        assertEquals(2, BatchRenderer.main(List.of("signs", "-f")));
+        assertEquals(2, BatchRenderer.render(List.of("door.sgn", "-r")));
+        assertEquals(2, Heightmap.main(List.of("door.sgn", "-dpi")));
+        assertEquals(2, MailMerge.main(List.of("door.sgn", "rooms.csv", "-o")));
+        assertEquals(2, RenderServer.main(List.of("-p")));
+    }
+}
@@ -0,0 +1,71 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FontCatalogTest {
+
+    @Test
+    public void testFingerprint() throws IOException {
+        Path dir = Files.createTempDirectory("fonts");
+        List<Path> dirs = List.of(dir, dir.resolve("missing"));
+        String empty = FontCatalog.fingerprint(dirs);
+        assertEquals(empty, FontCatalog.fingerprint(dirs));
+        Files.createDirectory(dir.resolve("truetype"));
+        Files.write(dir.resolve("truetype").resolve("A.ttf"), new byte[100]);
+        String one = FontCatalog.fingerprint(dirs);
+        assertNotEquals(empty, one);
+        assertEquals(one, FontCatalog.fingerprint(dirs));
+        Files.write(dir.resolve("truetype").resolve("A.ttf"), new byte[200]);
+        assertNotEquals(one, FontCatalog.fingerprint(dirs));
+    }
+
+    /// What's on disk is used until the fonts change
+    @Test
+    public void testKeptUntilFontsChange() throws IOException {
+        Path dir = Files.createTempDirectory("fonts");
+        Path file = Files.createTempDirectory("catalog").resolve("fonts.json");
+        FontCatalog catalog = new FontCatalog(file, List.of(dir));
+        List<FontCatalog.Family> families = catalog.load();
+        assertTrue(Files.exists(file));
+        assertEquals(families, catalog.load());
+
+        // Pretend the saved families were different, to see whether they're used
+        FontCatalog.Family made = new FontCatalog.Family("Made Up", List.of("Made Up Bold"), true, false, true);
+        Files.writeString(file, Files.readString(file).replaceFirst("\"families\":\\[.*]",
+            "\"families\":[{\"name\":\"Made Up\",\"faces\":[\"Made Up Bold\"],\"bold\":true,\"italic\":false,\"latin\":true}]"));
+        assertEquals(List.of(made), catalog.load());
+
+        Files.write(dir.resolve("New.ttf"), new byte[10]);
+        assertFalse(catalog.load().contains(made));
+        assertEquals("Made Up: 1 face, bold", made.describe());
+    }
+
+    /// Failing to save the snapshot doesn't lose the families just found
+    @Test
+    public void testUnsaveable() throws IOException {
+        // Its directory can't be created, being a file already
+        Path file = Files.createTempFile("catalog", ".tmp").resolve("fonts.json");
+        FontCatalog catalog = new FontCatalog(file, List.of());
+        assertEquals(FontCatalog.enumerate(), catalog.load());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testBackground() throws Exception {
+        Path file = Files.createTempDirectory("catalog").resolve("fonts.json");
+        FontCatalog catalog = new FontCatalog(file, List.of()).start();
+        List<FontCatalog.Family> families = catalog.families().get();
+        assertTrue(catalog.isReady());
+        assertEquals(families.size(), catalog.byName().size());
+    }
+}
@@ -0,0 +1,56 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/// The SIMD kernels must give exactly what the scalar ones do, or the
+/// same sign would make different models on different machines
+public class GeometryKernelsTest {
+
+    /// Not a multiple of any lane count, so the masked tail is used
+    static final int N = 1003;
+
+    static double[] random(Random random, int n) {
+        double[] a = new double[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = (random.nextDouble() - 0.5) * 200;
+        }
+        return a;
+    }
+
+    @Test
+    public void testSameAsScalar() {
+        GeometryKernels scalar = new GeometryKernels(), vector = GeometryKernels.vector();
+        assumeTrue(vector != null, "Build with -Psimd and run with --add-modules jdk.incubator.vector");
+        Random random = new Random(45);
+        double[] x = random(random, N);
+
+        double[] a = new double[N], b = new double[N];
+        scalar.scale(x, -SignGenerator.SCALE_FACTOR, a, N);
+        vector.scale(x, -SignGenerator.SCALE_FACTOR, b, N);
+        assertArrayEquals(a, b);
+        scalar.unscale(x, 0.3, a, N);
+        vector.unscale(x, 0.3, b, N);
+        assertArrayEquals(a, b);
+
+        double[] u = random(random, 3 * N), v = random(random, 3 * N);
+        double[] na = new double[3 * N], nb = new double[3 * N];
+        scalar.normals(u, v, na, N);
+        vector.normals(u, v, nb, N);
+        assertArrayEquals(na, nb);
+    }
+
+    @Test
+    public void testNormals() {
+        // The x and y axes make the z axis; all of each array's x values come first
+        double[] u = {1, 2, 0, 0, 0, 0};
+        double[] v = {0, 0, 1, 3, 0, 0};
+        double[] n = new double[6];
+        GeometryKernels.INSTANCE.normals(u, v, n, 2);
+        assertArrayEquals(new double[] {0, 0, 0, 0, 1, 1}, n);
+    }
+}
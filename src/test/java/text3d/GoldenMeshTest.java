@@ -0,0 +1,161 @@
+package text3d;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/// Renders a fixed corpus of signs with each renderer and compares the geometry with
+/// the golden values in golden-<renderer id>.json (in src/test/resources/text3d),
+/// so that a faster triangulator or bevel that quietly loses the holes in "B", "8" or "@"
+/// fails here and not at the printer. Each case must also keep within its wall-time
+/// and allocation budget. The font is bundled, so results don't depend on what's installed.
+///
+/// After an intended change to the geometry, run with -Dgolden.update=true to write fresh
+/// values to target/golden-<id>.json; check them, then copy them over the old ones.
+/// Use -Dgolden.budgets=false to skip the budgets, e.g., on a slow or busy machine.
+public class GoldenMeshTest {
+
+    /// One sign in the corpus; renderers lists the ids of the renderers to try it with
+    record Case(String name, String text, TextAlign align, String renderers) {}
+
+    static final List<Case> CORPUS = List.of(
+        new Case("hyphen", "-", TextAlign.CENTER, "CG"),
+        new Case("holes", "B8@", TextAlign.CENTER, "CG"),
+        new Case("word", "Hello", TextAlign.CENTER, "C"),
+        new Case("pieces", "i;j!", TextAlign.CENTER, "C"),
+        new Case("accents", "Ça été", TextAlign.CENTER, "C"),
+        new Case("multiline", "Room 101\nConference", TextAlign.LEFT, "C"),
+        new Case("right", "EXIT\nNo. 12", TextAlign.RIGHT, "C"));
+
+    /// What a case produces, or (as stored) should produce; the budgets are upper limits.
+    /// meshFaults is the total of everything MeshValidator complains about.
+    record Golden(double volume, double area, double[] min, double[] max, long euler, long meshFaults,
+                  long millis, long allocatedMB) {}
+
+    static final double RELATIVE_TOLERANCE = 1e-4;
+    static final double BOX_TOLERANCE = 1e-3;   // mm
+
+    private static final boolean UPDATE = Boolean.getBoolean("golden.update");
+    private static final boolean BUDGETS = !"false".equals(System.getProperty("golden.budgets"));
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @TestFactory
+    public Stream<DynamicTest> claude() throws IOException {
+        return cases(ClaudeTextToFile.ID, ClaudeTextToFile::new);
+    }
+
+    @TestFactory
+    public Stream<DynamicTest> gemini() throws IOException {
+        return cases(GeminiTextToFile.ID, GeminiTextToFile::new);
+    }
+
+    private Stream<DynamicTest> cases(String id, Supplier<TextToFile> renderers) throws IOException {
+        Map<String, Golden> golden = load(id);
+        Map<String, Golden> updated = new LinkedHashMap<>();
+        Font font = font();
+        // Render once first, so class loading and JIT compilation don't count against a budget
+        try {
+            measure(renderers.get(), font, CORPUS.getFirst(), dir);
+        } catch (LinkageError e) {
+            assumeTrue(false, "Renderer " + id + " can't run here: " + e);
+        }
+        return CORPUS.stream()
+            .filter(c -> c.renderers().contains(id))
+            .map(c -> DynamicTest.dynamicTest(id + " " + c.name(), () -> {
+                // A new renderer each time, so its caches are cold
+                Golden actual = measure(renderers.get(), font, c, dir);
+                if (UPDATE) {
+                    updated.put(c.name(), withBudgets(actual));
+                    write(id, updated);
+                } else {
+                    Golden expected = golden.get(c.name());
+                    assertNotNull(expected, "No golden values for " + c.name() + "; run with -Dgolden.update=true");
+                    check(expected, actual);
+                }
+            }));
+    }
+
+    static Golden measure(TextToFile renderer, Font font, Case c, Path dir) throws IOException {
+        Path stl = dir.resolve(c.name() + ".stl");
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        RenderMetrics metrics = renderer.generateFile(c.text(), font, RenderSpec.DEFAULT, stl.toFile(),
+            OutputFormat.STL, c.align(), ProgressListener.NONE, new CancellationToken());
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long allocatedMB = (allocatedBytes() - allocated) >> 20;
+
+        MeshStats stats = MeshStats.ofStl(stl);
+        MeshReport mesh = metrics.mesh();
+        long faults = mesh.boundaryEdges() + mesh.nonManifoldEdges() + mesh.flippedEdges() + mesh.degenerateTriangles();
+        return new Golden(stats.volume(), stats.area(), stats.min(), stats.max(), stats.euler(), faults,
+            millis, allocatedMB);
+    }
+
+    static void check(Golden expected, Golden actual) {
+        assertEquals(expected.euler(), actual.euler(), "Euler characteristic; has a hole been lost or filled?");
+        assertEquals(expected.meshFaults(), actual.meshFaults(), "Mesh faults (bad edges and degenerate triangles)");
+        assertEquals(expected.volume(), actual.volume(), Math.abs(expected.volume()) * RELATIVE_TOLERANCE, "Volume");
+        assertEquals(expected.area(), actual.area(), expected.area() * RELATIVE_TOLERANCE, "Surface area");
+        assertArrayEquals(expected.min(), actual.min(), BOX_TOLERANCE, "Bounding box, lower corner");
+        assertArrayEquals(expected.max(), actual.max(), BOX_TOLERANCE, "Bounding box, upper corner");
+        if (BUDGETS) {
+            assertTrue(actual.millis() <= expected.millis(),
+                () -> "Took " + actual.millis() + " ms; budget is " + expected.millis());
+            assertTrue(actual.allocatedMB() <= expected.allocatedMB(),
+                () -> "Allocated " + actual.allocatedMB() + " MB; budget is " + expected.allocatedMB());
+        }
+    }
+
+    /// Budgets with plenty of headroom over this run, as machines (and CI runners) vary
+    static Golden withBudgets(Golden g) {
+        long millis = Math.max(1000, (g.millis() * 5 + 99) / 100 * 100);
+        long allocatedMB = Math.max(32, g.allocatedMB() * 3);
+        return new Golden(g.volume(), g.area(), g.min(), g.max(), g.euler(), g.meshFaults(), millis, allocatedMB);
+    }
+
+    static Font font() throws IOException {
+        try (InputStream in = GoldenMeshTest.class.getResourceAsStream("DejaVuSerif.ttf")) {
+            return Font.createFont(Font.TRUETYPE_FONT, in).deriveFont((float) SignGenerator.DEFAULT_RENDER_FONT_SIZE);
+        } catch (FontFormatException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static Map<String, Golden> load(String id) throws IOException {
+        try (InputStream in = GoldenMeshTest.class.getResourceAsStream("golden-" + id + ".json")) {
+            return in == null ? Map.of() : MAPPER.readValue(in, new TypeReference<LinkedHashMap<String, Golden>>() {});
+        }
+    }
+
+    static void write(String id, Map<String, Golden> golden) throws IOException {
+        Path out = Files.createDirectories(Path.of("target")).resolve("golden-" + id + ".json");
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), golden);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
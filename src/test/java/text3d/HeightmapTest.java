@@ -0,0 +1,83 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferUShort;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HeightmapTest {
+
+    /// Ten pixels to the mm
+    static final double DPI = 254;
+
+    static RenderStage.Context context() {
+        return new RenderStage.Context(new RenderMetrics.Builder(ClaudeTextToFile.ID, null),
+            ProgressListener.NONE, new CancellationToken());
+    }
+
+    static BufferedImage rasterise(ClaudeTextToFile renderer, String text) throws IOException {
+        return new Heightmap(renderer).rasterise(text, GoldenMeshTest.font(), RenderSpec.DEFAULT, TextAlign.CENTER,
+            DPI, context());
+    }
+
+    static short[] pixels(BufferedImage image) {
+        return ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+    }
+
+    @Test
+    public void testLayers() throws IOException {
+        ClaudeTextToFile renderer = new ClaudeTextToFile();
+        BufferedImage image = rasterise(renderer, "O");
+        Rectangle2D base = ClaudeTextToFile.baseBounds(renderer.place(
+            new ClaudeTextToFile.LayoutKey("O", GoldenMeshTest.font(), TextAlign.CENTER), context()).bounds(),
+            RenderSpec.DEFAULT);
+        assertEquals((int) Math.ceil(base.getWidth() * SignGenerator.SCALE_FACTOR * 10), image.getWidth());
+        assertEquals((int) Math.ceil(base.getHeight() * SignGenerator.SCALE_FACTOR * 10), image.getHeight());
+
+        RenderSpec spec = RenderSpec.DEFAULT;
+        double zMax = spec.baseHeight() + spec.letterHeight();
+        int baseValue = Heightmap.value(spec.baseHeight(), zMax);
+        // The margin, and the middle of the O, are just base
+        assertEquals(baseValue, image.getRaster().getSample(0, 0, 0));
+        assertEquals(baseValue, image.getRaster().getSample(image.getWidth() / 2, image.getHeight() / 2, 0));
+
+        // Base, letter body, and the bevel in 0.35 mm, 4 pixels: 6 heights in all, up to the top
+        int[] values = new int[pixels(image).length];
+        Arrays.setAll(values, i -> Short.toUnsignedInt(pixels(image)[i]));
+        assertEquals(6, (int) Arrays.stream(values).distinct().count());
+        assertEquals(0xFFFF, Arrays.stream(values).max().getAsInt());
+        assertEquals(Heightmap.value(spec.baseHeight() + spec.letterHeight() - spec.bevelHeight(), zMax),
+            Arrays.stream(values).filter(v -> v > baseValue).min().getAsInt());
+    }
+
+    @Test
+    public void testPNG() throws IOException {
+        BufferedImage image = rasterise(new ClaudeTextToFile(), "Hi\nthere");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Heightmap.writePNG(image, DPI, Compression.DEFAULT, out);
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(BufferedImage.TYPE_USHORT_GRAY, read.getType());
+        assertArrayEquals(pixels(image), pixels(read));
+    }
+
+    @Test
+    public void testAdler32Combine() {
+        byte[] data = "Conference Room 101".getBytes(StandardCharsets.US_ASCII);
+        Adler32 whole = new Adler32(), first = new Adler32(), second = new Adler32();
+        whole.update(data);
+        first.update(data, 0, 7);
+        second.update(data, 7, data.length - 7);
+        assertEquals(whole.getValue(), Heightmap.adler32Combine(first.getValue(), second.getValue(), data.length - 7));
+    }
+}
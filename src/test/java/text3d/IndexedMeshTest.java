@@ -0,0 +1,140 @@
+package text3d;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static text3d.MeshValidatorTest.CUBE;
+import static text3d.MeshValidatorTest.x;
+import static text3d.MeshValidatorTest.y;
+import static text3d.MeshValidatorTest.z;
+
+public class IndexedMeshTest {
+
+    @TempDir
+    Path dir;
+
+    /// A unit cube, with a little noise that welding should remove
+    static IndexedMesh cube() {
+        IndexedMesh mesh = new IndexedMesh(1e-6);
+        for (int t = 0; t < CUBE.length; t++) {
+            int a = CUBE[t][0], b = CUBE[t][1], c = CUBE[t][2];
+            double jitter = t % 2 == 0 ? 1e-8 : -1e-8;
+            mesh.add(x(a) + jitter, y(a), z(a), x(b), y(b) + jitter, z(b), x(c), y(c), z(c) + jitter);
+        }
+        return mesh;
+    }
+
+    static void write(IndexedMesh mesh, File file, OutputFormat format) throws IOException {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            mesh.write(out, format);
+        }
+    }
+
+    /// A flat grid of n by n squares, big enough to make the stores grow several times
+    static IndexedMesh grid(int n, boolean offHeap) {
+        IndexedMesh mesh = new IndexedMesh(1e-6, offHeap);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                mesh.add(i, j, 0, i + 1, j, 0, i + 1, j + 1, 0);
+                mesh.add(i, j, 0, i + 1, j + 1, 0, i, j + 1, 0);
+            }
+        }
+        return mesh;
+    }
+
+    /// Off the heap, the same bytes in every format
+    @Test
+    public void testOffHeap() throws IOException {
+        for (OutputFormat format : List.of(OutputFormat.OBJ, OutputFormat.PLY, OutputFormat.GLB)) {
+            File heapFile = dir.resolve("heap" + format.ext()).toFile();
+            File offHeapFile = dir.resolve("offheap" + format.ext()).toFile();
+            try (IndexedMesh heap = grid(150, false); IndexedMesh offHeap = grid(150, true)) {
+                assertTrue(offHeap.isOffHeap() && !heap.isOffHeap());
+                assertEquals(151 * 151, offHeap.vertexCount());
+                write(heap, heapFile, format);
+                write(offHeap, offHeapFile, format);
+            }
+            assertArrayEquals(Files.readAllBytes(heapFile.toPath()), Files.readAllBytes(offHeapFile.toPath()),
+                format.toString());
+        }
+    }
+
+    @Test
+    public void testWelding() {
+        IndexedMesh mesh = cube();
+        assertEquals(8, mesh.vertexCount());
+        assertEquals(12, mesh.triangleCount());
+    }
+
+    @Test
+    public void testAppendFixed() {
+        assertEquals("0.000000", IndexedMesh.appendFixed(new StringBuilder(), 0f).toString());
+        assertEquals("-1.250000", IndexedMesh.appendFixed(new StringBuilder(), -1.25f).toString());
+        assertEquals("12.000500", IndexedMesh.appendFixed(new StringBuilder(), 12.0005f).toString());
+        assertEquals("-0.000010", IndexedMesh.appendFixed(new StringBuilder(), -0.00001f).toString());
+    }
+
+    @Test
+    public void testObj() throws IOException {
+        File file = dir.resolve("cube.obj").toFile();
+        write(cube(), file, OutputFormat.OBJ);
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(8, lines.stream().filter(l -> l.startsWith("v ")).count());
+        assertEquals(12, lines.stream().filter(l -> l.startsWith("f ")).count());
+        assertTrue(lines.contains("v 1.000000 1.000000 1.000000"), "Far corner");
+    }
+
+    @Test
+    public void testPly() throws IOException {
+        File file = dir.resolve("cube.ply").toFile();
+        write(cube(), file, OutputFormat.PLY);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String text = new String(bytes, StandardCharsets.US_ASCII);
+        int body = text.indexOf("end_header\n") + "end_header\n".length();
+        assertTrue(text.startsWith("ply\nformat binary_little_endian 1.0\n"));
+        assertTrue(text.contains("element vertex 8\n") && text.contains("element face 12\n"));
+        assertEquals(body + 8 * 12 + 12 * 13, bytes.length);
+        ByteBuffer buf = ByteBuffer.wrap(bytes, body, bytes.length - body).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(body + 8 * 12);
+        assertEquals(3, buf.get());
+        assertEquals(0, buf.getInt());      // The first triangle starts with the first vertex
+    }
+
+    @Test
+    public void testGlb() throws IOException {
+        File file = dir.resolve("cube.glb").toFile();
+        write(cube(), file, OutputFormat.GLB);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x46546C67, buf.getInt());
+        assertEquals(2, buf.getInt());
+        assertEquals(bytes.length, buf.getInt());
+        int jsonLength = buf.getInt();
+        assertEquals(0x4E4F534A, buf.getInt());
+        assertEquals(0, jsonLength % 4);
+        JsonNode json = new ObjectMapper().readTree(new String(bytes, 20, jsonLength, StandardCharsets.UTF_8));
+        assertEquals(8, json.at("/accessors/0/count").asInt());
+        assertEquals(36, json.at("/accessors/1/count").asInt());
+        assertEquals(1.0, json.at("/accessors/0/max/2").asDouble(), 1e-6);
+        buf.position(20 + jsonLength);
+        assertEquals(8 * 12 + 12 * 12, buf.getInt());
+        assertEquals(0x004E4942, buf.getInt());
+        assertEquals(bytes.length, buf.position() + 8 * 12 + 12 * 12);
+    }
+}
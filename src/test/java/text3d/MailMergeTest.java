@@ -0,0 +1,69 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MailMergeTest {
+
+    static List<Map<String, String>> rows(String csv) throws IOException {
+        MailMerge.CsvRows rows = new MailMerge.CsvRows(new BufferedReader(new StringReader(csv)));
+        List<Map<String, String>> all = new ArrayList<>();
+        while (rows.hasNext()) {
+            all.add(rows.next());
+        }
+        return all;
+    }
+
+    @Test
+    public void testQuotedFields() throws IOException {
+        List<Map<String, String>> rows = rows("name,room\n\"Ann\",101\nBob,\"\"\n");
+        assertEquals(2, rows.size());
+        assertEquals(Map.of("name", "Ann", "room", "101"), rows.get(0));
+        assertEquals(Map.of("name", "Bob", "room", ""), rows.get(1));
+    }
+
+    @Test
+    public void testEmbeddedCommas() throws IOException {
+        List<Map<String, String>> rows = rows("name,title\n\"Smith, Ann\",\"Chair, Board\"\n");
+        assertEquals(Map.of("name", "Smith, Ann", "title", "Chair, Board"), rows.getFirst());
+    }
+
+    @Test
+    public void testEmbeddedNewlines() throws IOException {
+        // A blank line inside quotes is part of the field, not a record to skip
+        List<Map<String, String>> rows = rows("text,room\n\"Conference\n\nRoom\",101\n\nNext,102\n");
+        assertEquals(2, rows.size());
+        assertEquals("Conference\n\nRoom", rows.get(0).get("text"));
+        assertEquals("101", rows.get(0).get("room"));
+        assertEquals("Next", rows.get(1).get("text"));
+    }
+
+    @Test
+    public void testDoubledQuotes() throws IOException {
+        List<Map<String, String>> rows = rows("text\n\"The \"\"Blue\"\" Room\"\n\"\"\"\"\n");
+        assertEquals("The \"Blue\" Room", rows.get(0).get("text"));
+        assertEquals("\"", rows.get(1).get("text"));
+    }
+
+    @Test
+    public void testBadRecords() throws IOException {
+        MailMerge.CsvRows rows = new MailMerge.CsvRows(new BufferedReader(new StringReader(
+            "name,room\nAnn\nBob,102\n\"Unterminated,103\n")));
+        assertThrows(IllegalArgumentException.class, rows::next, "Too few fields");
+        assertEquals(Map.of("name", "Bob", "room", "102"), rows.next());
+        assertTrue(rows.hasNext());
+        assertThrows(IllegalArgumentException.class, rows::next, "Unterminated quote");
+        assertFalse(rows.hasNext());
+    }
+}
@@ -0,0 +1,138 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// Streamed generation (ClaudeTextToFile.generateStreaming through a MeshSink)
+/// must make the same model as the in-memory path, in every format
+public class MeshSinkTest {
+
+    static final String TEXT = "Bob's 8 @ Ça\nDonor Wall";
+
+    @TempDir
+    Path dir;
+
+    static RenderMetrics render(boolean streaming, Path file, OutputFormat format) throws IOException {
+        ClaudeTextToFile renderer = new ClaudeTextToFile();
+        Font font = GoldenMeshTest.font();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            return streaming ?
+                renderer.generateStreaming(TEXT, font, RenderSpec.DEFAULT, out, format, TextAlign.CENTER,
+                    ProgressListener.NONE, new CancellationToken()) :
+                renderer.generate(TEXT, font, RenderSpec.DEFAULT, out, format, TextAlign.CENTER,
+                    ProgressListener.NONE, new CancellationToken());
+        }
+    }
+
+    @Test
+    public void testSameGeometry() throws IOException {
+        Path whole = dir.resolve("whole.stl"), streamed = dir.resolve("streamed.stl");
+        RenderMetrics expected = render(false, whole, OutputFormat.STL);
+        RenderMetrics actual = render(true, streamed, OutputFormat.STL);
+        assertEquals(expected.triangles(), actual.triangles());
+        assertNotNull(actual.mesh());
+        assertEquals(expected.mesh(), actual.mesh());
+
+        MeshStats a = MeshStats.ofStl(whole), b = MeshStats.ofStl(streamed);
+        assertEquals(a.euler(), b.euler());
+        assertEquals(a.volume(), b.volume(), a.volume() * 1e-9);
+        assertEquals(a.area(), b.area(), a.area() * 1e-9);
+        assertArrayEquals(a.min(), b.min(), 1e-9);
+        assertArrayEquals(a.max(), b.max(), 1e-9);
+    }
+
+    /// Just past STREAMING_GLYPHS, where generate() starts streaming, the streamed model
+    /// has exactly the staged one's triangles
+    @Test
+    public void testSameTrianglesAtThreshold() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; RenderPhaseEvent.glyphsIn(text.toString()) <= ClaudeTextToFile.STREAMING_GLYPHS; line++) {
+            text.append(line % 3 == 0 ? "Bob's 8 @ Ça " : "Donor Wall ").append(line).append('\n');
+        }
+        ClaudeTextToFile renderer = new ClaudeTextToFile();
+        ByteArrayOutputStream staged = new ByteArrayOutputStream(), streamed = new ByteArrayOutputStream();
+        renderer.generateStaged(text.toString(), GoldenMeshTest.font(), RenderSpec.DEFAULT,
+            Channels.newChannel(staged), OutputFormat.STL, TextAlign.CENTER, ProgressListener.NONE,
+            new CancellationToken());
+        renderer.generate(text.toString(), GoldenMeshTest.font(), RenderSpec.DEFAULT,
+            Channels.newChannel(streamed), OutputFormat.STL, TextAlign.CENTER, ProgressListener.NONE,
+            new CancellationToken());
+        assertEquals(facets(staged), facets(streamed));
+    }
+
+    /// The facets of an ASCII STL, in order
+    static List<String> facets(ByteArrayOutputStream stl) {
+        String[] parts = stl.toString(StandardCharsets.US_ASCII).split("facet normal");
+        List<String> facets = new ArrayList<>(Arrays.asList(parts).subList(1, parts.length));
+        Collections.sort(facets);
+        return facets;
+    }
+
+    /// Same counts in each format, and the spilled formats put back together readably
+    @Test
+    public void testEveryFormat() throws IOException {
+        for (OutputFormat format : OutputFormat.values()) {
+            Path whole = dir.resolve("whole" + format.ext()), streamed = dir.resolve("streamed" + format.ext());
+            RenderMetrics expected = render(false, whole, format);
+            RenderMetrics actual = render(true, streamed, format);
+            assertEquals(expected.triangles(), actual.triangles(), format.toString());
+            assertEquals(expected.uniqueVertices(), actual.uniqueVertices(), format.toString());
+            if (format != OutputFormat.THREEMF) {
+                assertEquals(whole.toFile().length(), actual.bytes(), format.toString());
+            }
+        }
+        // 3MF: a sound ZIP whose model has every vertex and triangle
+        String model = new String(ThreeMFPackagerTest.readZipStream(dir.resolve("streamed.3mf").toFile())
+            .get(ThreeMFPackager.MODEL), java.nio.charset.StandardCharsets.UTF_8);
+        RenderMetrics metrics = render(true, dir.resolve("again.3mf"), OutputFormat.THREEMF);
+        assertEquals(metrics.triangles(), model.split("<triangle ", -1).length - 1);
+        assertEquals(metrics.uniqueVertices(), model.split("<vertex ", -1).length - 1);
+    }
+
+    /// A render stopped part way leaves output that can't be taken for a whole model
+    @Test
+    public void testCancelledIsIncomplete() throws IOException {
+        for (OutputFormat format : List.of(OutputFormat.STL, OutputFormat.THREEMF)) {
+            Path file = dir.resolve("cancelled" + format.ext());
+            CancellationToken cancel = new CancellationToken();
+            ProgressListener progress = (phase, done, total) -> {
+                if (phase.equals("Geometry") && done == 3) {
+                    cancel.cancel();
+                }
+            };
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                assertThrows(CancellationException.class, () -> new ClaudeTextToFile().generateStreaming(TEXT,
+                    GoldenMeshTest.font(), RenderSpec.DEFAULT, out, format, TextAlign.CENTER, progress, cancel));
+            }
+        }
+        String stl = Files.readString(dir.resolve("cancelled.stl"), StandardCharsets.US_ASCII);
+        assertTrue(stl.startsWith("solid ") && stl.contains("facet normal"));
+        assertFalse(stl.contains("endsolid"));
+        // No central directory
+        assertThrows(ZipException.class, () -> new ZipFile(dir.resolve("cancelled.3mf").toFile()).close());
+    }
+}
@@ -0,0 +1,78 @@
+package text3d;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/// Geometric invariants of a triangle mesh, as read back from an ASCII STL file.
+/// Vertices are welded to 1e-4 mm, the coarsest precision any renderer writes.
+/// @param triangles Number of facets
+/// @param vertices Number of distinct vertices
+/// @param edges Number of distinct edges
+/// @param volume Enclosed volume (mm³); only meaningful if the mesh is closed
+/// @param area Total surface area (mm²)
+/// @param min Lower corner of the bounding box
+/// @param max Upper corner of the bounding box
+record MeshStats(long triangles, long vertices, long edges, double volume, double area,
+                 double[] min, double[] max) {
+
+    private static final double WELD = 1e-4;
+
+    /// The Euler characteristic, V - E + F: 2 for each closed blob, less 2 for each hole through it,
+    /// so it changes when a letter's counter is lost or filled in
+    long euler() {
+        return vertices - edges + triangles;
+    }
+
+    static MeshStats ofStl(Path stl) throws IOException {
+        List<double[]> corners = new ArrayList<>();
+        for (String line : Files.readAllLines(stl)) {
+            String[] words = line.trim().split("\\s+");
+            if (words.length == 4 && words[0].equals("vertex")) {
+                corners.add(new double[] {
+                    Double.parseDouble(words[1]), Double.parseDouble(words[2]), Double.parseDouble(words[3])});
+            }
+        }
+
+        record Key(long x, long y, long z) {}
+        Map<Key, Integer> ids = new HashMap<>();
+        Set<Long> edges = new HashSet<>();
+        double volume = 0, area = 0;
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        int[] tri = new int[3];
+        for (int t = 0; t + 2 < corners.size(); t += 3) {
+            double[] a = corners.get(t), b = corners.get(t + 1), c = corners.get(t + 2);
+            for (int k = 0; k < 3; k++) {
+                double[] p = corners.get(t + k);
+                Key key = new Key(Math.round(p[0] / WELD), Math.round(p[1] / WELD), Math.round(p[2] / WELD));
+                tri[k] = ids.computeIfAbsent(key, x -> ids.size());
+                for (int axis = 0; axis < 3; axis++) {
+                    min[axis] = Math.min(min[axis], p[axis]);
+                    max[axis] = Math.max(max[axis], p[axis]);
+                }
+            }
+            for (int k = 0; k < 3; k++) {
+                int from = tri[k], to = tri[(k + 1) % 3];
+                if (from != to) {
+                    edges.add((long) Math.min(from, to) << 32 | Math.max(from, to));
+                }
+            }
+            // Signed volume of the tetrahedron with the origin, and the triangle's area
+            volume += (a[0] * (b[1] * c[2] - b[2] * c[1])
+                - a[1] * (b[0] * c[2] - b[2] * c[0])
+                + a[2] * (b[0] * c[1] - b[1] * c[0])) / 6;
+            double ux = b[0] - a[0], uy = b[1] - a[1], uz = b[2] - a[2];
+            double vx = c[0] - a[0], vy = c[1] - a[1], vz = c[2] - a[2];
+            double cx = uy * vz - uz * vy, cy = uz * vx - ux * vz, cz = ux * vy - uy * vx;
+            area += Math.sqrt(cx * cx + cy * cy + cz * cz) / 2;
+        }
+        return new MeshStats(corners.size() / 3, ids.size(), edges.size(), volume, area, min, max);
+    }
+}
@@ -0,0 +1,93 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MeshValidatorTest {
+
+    /// Corner i of the unit cube is at (i & 1, i & 2, i & 4), normalised to 0 or 1
+    static final int[][] CUBE = {
+        {0, 2, 3}, {0, 3, 1},   // bottom
+        {4, 5, 7}, {4, 7, 6},   // top
+        {0, 1, 5}, {0, 5, 4},   // front
+        {2, 6, 7}, {2, 7, 3},   // back
+        {0, 4, 6}, {0, 6, 2},   // left
+        {1, 3, 7}, {1, 7, 5},   // right
+    };
+
+    /// Add a unit cube, moved along by offset, and with each triangle's corners
+    /// jiggled by +/-jitter; skip and flip give a triangle to leave out or turn over
+    static void addCube(MeshValidator validator, double offset, double jitter, int skip, int flip) {
+        for (int t = 0; t < CUBE.length; t++) {
+            if (t == skip) {
+                continue;
+            }
+            int[] tri = CUBE[t];
+            int a = tri[0], b = t == flip ? tri[2] : tri[1], c = t == flip ? tri[1] : tri[2];
+            double dx = offset + (t % 2 == 0 ? jitter : -jitter);
+            validator.add(x(a) + dx, y(a), z(a), x(b) + dx, y(b), z(b), x(c) + dx, y(c), z(c));
+        }
+    }
+
+    static double x(int corner) { return corner & 1; }
+    static double y(int corner) { return (corner >> 1) & 1; }
+    static double z(int corner) { return (corner >> 2) & 1; }
+
+    @Test
+    public void testClosedCube() {
+        MeshValidator validator = new MeshValidator(1e-6);
+        addCube(validator, 0, 0, -1, -1);
+        MeshReport report = validator.report();
+        assertTrue(report.isValid(), report.summary());
+        assertEquals(12, report.triangles());
+        assertEquals(8, report.vertices());
+    }
+
+    @Test
+    public void testMissingTriangle() {
+        MeshValidator validator = new MeshValidator(1e-6);
+        addCube(validator, 0, 0, 5, -1);
+        MeshReport report = validator.report();
+        assertFalse(report.isValid());
+        assertEquals(3, report.boundaryEdges());
+        assertEquals(0, report.flippedEdges());
+    }
+
+    @Test
+    public void testFlippedTriangle() {
+        MeshValidator validator = new MeshValidator(1e-6);
+        addCube(validator, 0, 0, -1, 7);
+        MeshReport report = validator.report();
+        assertEquals(3, report.flippedEdges());
+        assertEquals(0, report.boundaryEdges());
+    }
+
+    @Test
+    public void testNonManifoldAndDegenerate() {
+        MeshValidator validator = new MeshValidator(1e-6);
+        addCube(validator, 0, 0, -1, -1);
+        // The same triangle again puts three triangles on each of its edges
+        validator.add(0, 0, 0, 0, 1, 0, 1, 1, 0);
+        // Corners that weld together, and a sliver with no area
+        validator.add(0, 0, 0, 1e-8, 0, 0, 1, 1, 1);
+        validator.add(0, 0, 0, 0.5, 0.5, 0.5, 1, 1, 1);
+        MeshReport report = validator.report();
+        assertEquals(3, report.nonManifoldEdges());
+        assertEquals(2, report.degenerateTriangles());
+    }
+
+    @Test
+    public void testManyCubesAndWelding() {
+        // Enough to make both tables grow several times; the tiny offsets must weld away
+        MeshValidator validator = new MeshValidator(1e-6);
+        for (int i = 0; i < 5000; i++) {
+            addCube(validator, 2 * i, 1e-8, -1, -1);
+        }
+        MeshReport report = validator.report();
+        assertTrue(report.isValid(), report.summary());
+        assertEquals(5000 * 8, report.vertices());
+    }
+}
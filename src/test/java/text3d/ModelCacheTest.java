@@ -0,0 +1,57 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ModelCacheTest {
+
+    static Sign sign(String text) {
+        return new Sign(text, "Serif", 20, 1, TextAlign.CENTER, 1, 2, 3, 0.5, ClaudeTextToFile.ID);
+    }
+
+    /// Rendering an edited sign over a file that is a hard link to an entry must leave the entry alone
+    @Test
+    public void testMissDoesNotOverwriteLinkedEntry() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        ModelCache cache = new ModelCache(dir.resolve("cache"), 1 << 30, true);
+        File target = dir.resolve("door.stl").toFile();
+        Sign before = sign("Room 1"), after = sign("Room 2");
+
+        cache.generate(before, ClaudeTextToFile.ID, OutputFormat.STL, MeshCheck.OFF, Compression.DEFAULT, target);
+        byte[] original = Files.readAllBytes(target.toPath());
+        // A hit, served as a hard link to the entry
+        assertNull(cache.generate(before, ClaudeTextToFile.ID, OutputFormat.STL, MeshCheck.OFF,
+            Compression.DEFAULT, target));
+
+        cache.generate(after, ClaudeTextToFile.ID, OutputFormat.STL, MeshCheck.OFF, Compression.DEFAULT, target);
+        assertFalse(Arrays.equals(original, Files.readAllBytes(target.toPath())));
+        Path entry = cache.pathFor(ModelCache.key(before, ClaudeTextToFile.ID, OutputFormat.STL, MeshCheck.OFF,
+            Compression.DEFAULT), OutputFormat.STL);
+        assertArrayEquals(original, Files.readAllBytes(entry));
+    }
+
+    /// A model rendered under REPORT, which may have faults, must not be served to a FAIL render unchecked
+    @Test
+    public void testCheckLevelIsPartOfKey() throws IOException {
+        Path dir = Files.createTempDirectory("cache");
+        ModelCache cache = new ModelCache(dir.resolve("cache"), 1 << 30, true);
+        File target = dir.resolve("door.stl").toFile();
+        Sign sign = sign("Room 1");
+
+        cache.generate(sign, ClaudeTextToFile.ID, OutputFormat.STL, MeshCheck.REPORT, Compression.DEFAULT, target);
+        assertNotNull(cache.generate(sign, ClaudeTextToFile.ID, OutputFormat.STL, MeshCheck.FAIL,
+            Compression.DEFAULT, target), "a FAIL render was served a REPORT entry");
+        assertNull(cache.generate(sign, ClaudeTextToFile.ID, OutputFormat.STL, MeshCheck.FAIL,
+            Compression.DEFAULT, target));
+    }
+}
@@ -0,0 +1,161 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlatePackerTest {
+
+    @TempDir
+    Path dir;
+
+    /// Every rectangle on its bed, and no two on the same plate closer than the gap
+    static void checkPlacements(List<PlatePacker.Placement> at, double[] w, double[] d,
+                                double bedW, double bedD, double gap) {
+        for (int i = 0; i < at.size(); i++) {
+            PlatePacker.Placement a = at.get(i);
+            assertTrue(a.x() >= 0 && a.y() >= 0 && a.x() + w[i] <= bedW + 1e-9 && a.y() + d[i] <= bedD + 1e-9,
+                "Off the bed: " + i + " at " + a);
+            for (int j = 0; j < i; j++) {
+                PlatePacker.Placement b = at.get(j);
+                boolean apart = a.plate() != b.plate() ||
+                    a.x() + w[i] + gap <= b.x() + 1e-9 || b.x() + w[j] + gap <= a.x() + 1e-9 ||
+                    a.y() + d[i] + gap <= b.y() + 1e-9 || b.y() + d[j] + gap <= a.y() + 1e-9;
+                assertTrue(apart, "Overlap: " + i + " at " + a + " and " + j + " at " + b);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomRectangles() {
+        Random random = new Random(42);
+        int n = 300;
+        double[] w = new double[n], d = new double[n];
+        for (int i = 0; i < n; i++) {
+            w[i] = 20 + random.nextDouble() * 80;
+            d[i] = 10 + random.nextDouble() * 30;
+        }
+        List<PlatePacker.Placement> at = new PlatePacker(250, 210, 3).pack(w, d);
+        checkPlacements(at, w, d, 250, 210, 3);
+        int plates = at.stream().mapToInt(PlatePacker.Placement::plate).max().orElseThrow() + 1;
+        double used = 0;
+        for (int i = 0; i < n; i++) {
+            if (at.get(i).plate() < plates - 1) {
+                used += w[i] * d[i];
+            }
+        }
+        // A decent packer fills most of the plates, leaving aside the last one
+        double fill = used / ((plates - 1) * 250 * 210);
+        assertTrue(fill > 0.7, "Plates only " + fill + " full");
+    }
+
+    /// Badges all the same size should tile the bed exactly, gaps and all
+    @Test
+    public void testEqualBadges() {
+        double[] w = new double[12], d = new double[12];
+        java.util.Arrays.fill(w, 60);
+        java.util.Arrays.fill(d, 40);
+        List<PlatePacker.Placement> at = new PlatePacker(190, 130, 5).pack(w, d);
+        checkPlacements(at, w, d, 190, 130, 5);
+        assertEquals(9, at.stream().filter(p -> p.plate() == 0).count());
+        assertEquals(3, at.stream().filter(p -> p.plate() == 1).count());
+    }
+
+    @Test
+    public void testTooBig() {
+        List<PlatePacker.Placement> at = new PlatePacker(100, 100, 2).pack(new double[] {50, 101}, new double[] {50, 10});
+        assertEquals(0, at.get(0).plate());
+        assertNull(at.get(1));
+        assertThrows(IllegalArgumentException.class, () -> PlatePacker.parseBed("250"));
+        assertEquals(210.0, PlatePacker.parseBed("250x210")[1]);
+    }
+
+    /// Letters repeated across signs are meshed once and placed as components
+    @Test
+    public void testInstancing() throws IOException {
+        SignPlate plate = new SignPlate(new ClaudeTextToFile(), 250, 210, SignPlate.DEFAULT_GAP);
+        plate.add("NAN", GoldenMeshTest.font(), TextAlign.CENTER, RenderSpec.DEFAULT, 2, "nan");
+        plate.add("ANNA", GoldenMeshTest.font(), TextAlign.CENTER, RenderSpec.DEFAULT, 1, "anna");
+        assertEquals(2, plate.glyphCount());
+        assertEquals(1, plate.pack());
+
+        Path file = dir.resolve("plate.3mf");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            plate.write(0, out, Compression.DEFAULT);
+        }
+        String model = new String(ThreeMFPackagerTest.readZipFile(file.toFile()).get(ThreeMFPackager.MODEL),
+            StandardCharsets.UTF_8);
+        assertEquals(4, count(model, "<mesh>"), "Two letters and two sizes of base");
+        assertEquals(2 + 7, count(model, "<component "));
+        assertEquals(2, count(model, "<item "));
+        // In row order, whatever the order they were added in
+        assertTrue(model.indexOf("name=\"anna\"") < model.indexOf("name=\"nan\""));
+
+        // Every component refers to an object defined before it
+        Matcher m = Pattern.compile("<component objectid=\"(\\d+)\"").matcher(model);
+        while (m.find()) {
+            assertTrue(model.indexOf("<object id=\"" + m.group(1) + "\"") < m.start());
+        }
+    }
+
+    /// Signs added from several threads at once still share one mesh per letter and per base size
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        SignPlate plate = new SignPlate(new ClaudeTextToFile(), 250, 210, SignPlate.DEFAULT_GAP);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> adds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int order = i;
+            adds.add(pool.submit(() -> {
+                start.await();
+                plate.add(order % 2 == 0 ? "ANNA" : "NAN", GoldenMeshTest.font(), TextAlign.CENTER,
+                    RenderSpec.DEFAULT, order, "badge" + order);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> add : adds) {
+            add.get();
+        }
+        pool.shutdown();
+        assertEquals(2, plate.glyphCount());
+        assertEquals(1, plate.pack());
+
+        Path file = dir.resolve("badges.3mf");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            plate.write(0, out, Compression.DEFAULT);
+        }
+        String model = new String(ThreeMFPackagerTest.readZipFile(file.toFile()).get(ThreeMFPackager.MODEL),
+            StandardCharsets.UTF_8);
+        assertEquals(4, count(model, "<mesh>"), "Two letters and two sizes of base");
+        assertEquals(8, count(model, "<item "));
+    }
+
+    private static int count(String s, String what) {
+        int n = 0;
+        for (int i = s.indexOf(what); i >= 0; i = s.indexOf(what, i + 1)) {
+            ++n;
+        }
+        return n;
+    }
+}
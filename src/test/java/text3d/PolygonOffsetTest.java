@@ -0,0 +1,150 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PolygonOffsetTest {
+
+    static final PolygonOffset OFFSET = new PolygonOffset(PolygonOffset.DEFAULT_MITER_LIMIT, 1e-6);
+
+    static double[][] contour(double... xy) {
+        double[][] c = new double[2][xy.length / 2];
+        for (int i = 0; i < xy.length / 2; i++) {
+            c[0][i] = xy[2 * i];
+            c[1][i] = xy[2 * i + 1];
+        }
+        return c;
+    }
+
+    static double[][] reversed(double[][] c) {
+        int n = c[0].length;
+        double[][] r = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            r[0][i] = c[0][n - 1 - i];
+            r[1][i] = c[1][n - 1 - i];
+        }
+        return r;
+    }
+
+    static double area(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) {
+            int k = (i + 1) % x.length;
+            sum += x[i] * y[k] - x[k] * y[i];
+        }
+        return Math.abs(sum / 2);
+    }
+
+    /// The distance from a point to the nearest edge of a contour
+    static double distance(double px, double py, double[][] c) {
+        double best = Double.MAX_VALUE;
+        int n = c[0].length;
+        for (int i = 0; i < n; i++) {
+            int k = (i + 1) % n;
+            double ax = c[0][i], ay = c[1][i], dx = c[0][k] - ax, dy = c[1][k] - ay;
+            double t = Math.clamp(((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy), 0, 1);
+            best = Math.min(best, Math.hypot(px - ax - t * dx, py - ay - t * dy));
+        }
+        return best;
+    }
+
+    @Test
+    public void testSquare() {
+        double[][] square = contour(0, 0, 10, 0, 10, 10, 0, 10);
+        for (double[][] c : List.of(square, reversed(square))) {
+            PolygonOffset.Ring ring = OFFSET.inset(List.<double[][]>of(c), 1).getFirst();
+            assertEquals(4, ring.size());
+            assertEquals(64, area(ring.x(), ring.y()), 1e-9);
+            ring = OFFSET.inset(List.<double[][]>of(c), -1).getFirst();
+            assertEquals(4, ring.size());
+            assertEquals(144, area(ring.x(), ring.y()), 1e-9);
+        }
+        // A sharp corner offset outward is squared off at twice the distance
+        double[][] sharp = contour(0, 0, 10, 0, 0, 1);
+        PolygonOffset.Ring ring = OFFSET.inset(List.<double[][]>of(sharp), -1).getFirst();
+        assertEquals(4, ring.size());
+        assertEquals(1, ring.from()[2]);
+        double midX = (ring.x()[1] + ring.x()[2]) / 2, midY = (ring.y()[1] + ring.y()[2]) / 2;
+        assertEquals(2, Math.hypot(midX - 10, midY), 1e-9);
+    }
+
+    /// The old centroid inset pulled the inside of a "C" across its own opening;
+    /// an offset keeps every vertex the bevel's width from the outline
+    @Test
+    public void testConcave() {
+        double[][] c = contour(0, 0, 12, 0, 12, 3, 3, 3, 3, 9, 12, 9, 12, 12, 0, 12);
+        List<PolygonOffset.Ring> rings = OFFSET.inset(List.<double[][]>of(c), 1);
+        PolygonOffset.Ring ring = rings.getFirst();
+        assertEquals(c[0].length, ring.size());
+        for (int j = 0; j < ring.size(); j++) {
+            double d = distance(ring.x()[j], ring.y()[j], c);
+            assertTrue(d >= 1 - 1e-9 && d <= PolygonOffset.DEFAULT_MITER_LIMIT + 1e-9, "Vertex " + j + " is " + d + " away");
+        }
+        assertFalse(PolygonOffset.crosses(rings, 1e-6));
+    }
+
+    /// A stroke thinner than twice the distance gets as much bevel as it can take
+    @Test
+    public void testThinStroke() {
+        double[][] outer = contour(0, 0, 20, 0, 20, 10, 0, 10);
+        double[][] hole = reversed(contour(1, 1, 19, 1, 19, 9, 1, 9));
+        List<PolygonOffset.Ring> rings = OFFSET.inset(List.of(outer, hole), 0.7);
+        assertEquals(2, rings.size());
+        assertFalse(PolygonOffset.crosses(rings, 1e-6));
+        double inset = distance(rings.getFirst().x()[0], rings.getFirst().y()[0], outer);
+        assertTrue(inset > 0.45 && inset < 0.5, "Inset by " + inset);
+    }
+
+    /// A short edge between two opening corners collapses rather than turning back on itself
+    @Test
+    public void testCollapse() {
+        double[][] c = contour(0, 0, 10, 0, 10, 5, 5.2, 9, 4.8, 9, 0, 5);
+        PolygonOffset.Ring ring = OFFSET.inset(List.<double[][]>of(c), 1).getFirst();
+        assertEquals(5, ring.size());
+        assertFalse(PolygonOffset.crosses(List.of(ring), 1e-6));
+    }
+
+    /// The band's open edges are exactly the original contour, and the offset one reversed
+    @Test
+    public void testBand() {
+        double[][] c = contour(0, 0, 10, 0, 10, 5, 5.2, 9, 4.8, 9, 0, 5, 3, 2.5);
+        for (double distance : new double[] {0.5, 1, -1}) {
+            PolygonOffset.Ring ring = OFFSET.inset(List.<double[][]>of(c), distance).getFirst();
+            int n = c[0].length, m = ring.size();
+            // Inner edges are used once each way; what's left over are the open ones
+            Map<Long, Integer> edges = new HashMap<>();
+            int[] band = ring.band(n);
+            for (int t = 0; t < band.length; t += 3) {
+                for (int e = 0; e < 3; e++) {
+                    long a = band[t + e], b = band[t + (e + 1) % 3];
+                    edges.merge(a << 32 | b, 1, Integer::sum);
+                    edges.merge(b << 32 | a, -1, Integer::sum);
+                }
+            }
+            edges.values().removeIf(v -> v <= 0);
+            assertEquals(n + m, edges.size(), "Open edges at " + distance);
+            for (long i = 0; i < n; i++) {
+                assertEquals(1, (int) edges.getOrDefault(i << 32 | (i + 1) % n, 0));
+            }
+            for (long j = 0; j < m; j++) {
+                assertEquals(1, (int) edges.getOrDefault((n + (j + 1) % m) << 32 | (n + j), 0));
+            }
+        }
+    }
+
+    @Test
+    public void testTouch() {
+        assertTrue(PolygonOffset.touch(0, 0, 10, 10, 0, 10, 10, 0));
+        assertTrue(PolygonOffset.touch(0, 0, 10, 0, 5, 0, 5, 5));
+        assertFalse(PolygonOffset.touch(0, 0, 10, 0, 11, 0, 20, 0));
+        long big = 1L << 29;
+        assertFalse(PolygonOffset.touch(-big, -big, big, big - 1, -big, -big + 1, big, big));
+    }
+}
@@ -0,0 +1,142 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RenderServerTest {
+
+    static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    static String sign(String text) {
+        return new Sign(text, "Serif", 20, 1, TextAlign.CENTER, 1, 2, 3, 0.5).toJSON();
+    }
+
+    static CompletableFuture<HttpResponse<String>> post(RenderServer server, String body) {
+        return post(server, "format=stl", body);
+    }
+
+    static CompletableFuture<HttpResponse<String>> post(RenderServer server, String query, String body) {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + server.port() + "/render?" + query))
+            .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 1000 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean(), "Timed out");
+    }
+
+    /// A server whose renders wait for the latch, counting them
+    static RenderServer server(int threads, int queue, AtomicInteger renders, CountDownLatch release)
+            throws IOException {
+        RenderServer server = new RenderServer(InetAddress.getLoopbackAddress(), 0, threads, queue, 1 << 20, key -> {
+            renders.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return key.sign().text().getBytes(StandardCharsets.UTF_8);
+        });
+        server.start();
+        return server;
+    }
+
+    @Test
+    public void testIdenticalRequestsShareOneRender() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        RenderServer server = server(1, 1, renders, release);
+        try {
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                responses.add(post(server, sign("Room 1")));
+            }
+            await(() -> server.coalesced() == 4);
+            release.countDown();
+            for (var response : responses) {
+                assertEquals(200, response.get().statusCode());
+                assertEquals("Room 1", response.get().body());
+            }
+            assertEquals(1, renders.get());
+
+            // Now from the cache
+            assertEquals("Room 1", post(server, sign("Room 1")).get().body());
+            assertEquals(1, renders.get());
+        } finally {
+            release.countDown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testBusyServerAnswers429() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        RenderServer server = server(1, 1, renders, release);
+        try {
+            var running = post(server, sign("Room 1"));
+            await(() -> renders.get() == 1);
+            var queued = post(server, sign("Room 2"));
+            await(() -> server.queued() == 1);
+
+            HttpResponse<String> refused = post(server, sign("Room 3")).get();
+            assertEquals(429, refused.statusCode());
+            assertEquals("1", refused.headers().firstValue("Retry-After").orElseThrow());
+
+            release.countDown();
+            assertEquals(200, running.get().statusCode());
+            assertEquals(200, queued.get().statusCode());
+            // Room for it now
+            assertEquals(200, post(server, sign("Room 3")).get().statusCode());
+        } finally {
+            release.countDown();
+            server.stop();
+        }
+    }
+
+    /// The FreeType renderer only writes STL, so asking it for 3MF is refused before rendering
+    @Test
+    public void testUnsupportedFormat() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        RenderServer server = server(1, 1, renders, new CountDownLatch(0));
+        try {
+            assertEquals(400, post(server, "format=3mf&renderer=" + FreeTypeRenderer.ID, sign("Room 1")).get()
+                .statusCode());
+            assertEquals(0, renders.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testBodyTooLarge() throws Exception {
+        RenderServer server = server(1, 1, new AtomicInteger(), new CountDownLatch(0));
+        try {
+            String big = sign("x".repeat(RenderServer.MAX_BODY_BYTES));
+            assertEquals(413, post(server, big).get().statusCode());
+            assertEquals(200, post(server, sign("Room 1")).get().statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+}
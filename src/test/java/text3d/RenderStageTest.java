@@ -0,0 +1,108 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Font;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/// Each stage must rerun when, and only when, something it depends on changes
+public class RenderStageTest {
+
+    static RenderMetrics render(TextToFile renderer, Font font, String text, RenderSpec spec, OutputFormat format)
+            throws IOException {
+        return renderer.generate(text, font, spec, Channels.newChannel(new ByteArrayOutputStream()), format,
+            TextAlign.CENTER, ProgressListener.NONE, new CancellationToken());
+    }
+
+    @Test
+    public void testOnlyDownstreamStagesRerun() throws IOException {
+        Font font = GoldenMeshTest.font();
+        ClaudeTextToFile renderer = new ClaudeTextToFile();
+        RenderMetrics first = render(renderer, font, "B8", RenderSpec.DEFAULT, OutputFormat.STL);
+        assertTrue(first.phaseMillis().keySet().containsAll(List.of("Layout", "Bevel", "Extrude", "Validate")));
+
+        // Another format: just write the same model again
+        RenderMetrics other = render(renderer, font, "B8", RenderSpec.DEFAULT, OutputFormat.OBJ);
+        assertEquals(List.of("Write OBJ"), List.copyOf(other.phaseMillis().keySet()));
+        assertEquals(first.triangles(), other.triangles());
+
+        // A thicker base: the same layout and bevels, extruded afresh
+        RenderSpec thicker = new RenderSpec(RenderSpec.DEFAULT.baseHeight() + 1, RenderSpec.DEFAULT.baseMargin(),
+            RenderSpec.DEFAULT.letterHeight(), RenderSpec.DEFAULT.bevelHeight());
+        RenderMetrics rebuilt = render(renderer, font, "B8", thicker, OutputFormat.STL);
+        assertFalse(rebuilt.phaseMillis().containsKey("Layout"));
+        assertFalse(rebuilt.phaseMillis().containsKey("Bevel"));
+        assertTrue(rebuilt.phaseMillis().containsKey("Extrude"));
+
+        // A different bevel: the same layout
+        RenderSpec bevelled = new RenderSpec(thicker.baseHeight(), thicker.baseMargin(), thicker.letterHeight(),
+            thicker.bevelHeight() / 2, MeshCheck.OFF, Compression.DEFAULT);
+        RenderMetrics rebevelled = render(renderer, font, "B8", bevelled, OutputFormat.STL);
+        assertFalse(rebevelled.phaseMillis().containsKey("Layout"));
+        assertTrue(rebevelled.phaseMillis().containsKey("Bevel"));
+        assertFalse(rebevelled.phaseMillis().containsKey("Validate"));
+    }
+
+    static String stl(TextToFile renderer, Font font, String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.generate(text, font, RenderSpec.DEFAULT, Channels.newChannel(out), OutputFormat.STL,
+            TextAlign.CENTER, ProgressListener.NONE, new CancellationToken());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /// Editing one line of a sign remakes only that line; the others are moved to the new alignment
+    @Test
+    public void testEditOneLine() throws IOException {
+        Font font = GoldenMeshTest.font();
+        ClaudeTextToFile renderer = new ClaudeTextToFile();
+        stl(renderer, font, "Room 101\nConference\nHall");
+        assertEquals(3, renderer.lineStage.runs());
+        assertEquals(3, renderer.lineMeshStage.runs());
+
+        // A new widest line, of the same height, so the lines below it don't move down
+        String edited = stl(renderer, font, "Room 101\nConferences\nHall");
+        assertEquals(4, renderer.lineStage.runs());
+        assertEquals(4, renderer.lineMeshStage.runs());
+        assertEquals(stl(new ClaudeTextToFile(), font, "Room 101\nConferences\nHall"), edited);
+
+        // Back again: nothing new to make
+        stl(renderer, font, "Room 101\nConference\nHall");
+        assertEquals(4, renderer.lineMeshStage.runs());
+    }
+
+    @Test
+    public void testEarlierStagesOnlyWhenNeeded() throws IOException {
+        AtomicInteger firsts = new AtomicInteger(), seconds = new AtomicInteger();
+        RenderStage<String, String> first = new RenderStage<>("First", 2, (key, context) -> {
+            firsts.incrementAndGet();
+            return key.toUpperCase();
+        });
+        record Key(String first, int n) {}
+        RenderStage<Key, String> second = new RenderStage<>("Second", 2, (key, context) -> {
+            seconds.incrementAndGet();
+            return first.get(key.first(), context).repeat(key.n());
+        });
+        RenderMetrics.Builder metrics = new RenderMetrics.Builder("T", OutputFormat.STL);
+        RenderStage.Context context = new RenderStage.Context(metrics, ProgressListener.NONE, new CancellationToken());
+
+        assertEquals("ABAB", second.get(new Key("ab", 2), context));
+        assertEquals("ABAB", second.get(new Key("ab", 2), context));
+        assertEquals("ABABAB", second.get(new Key("ab", 3), context));
+        assertEquals(1, firsts.get());
+        assertEquals(2, seconds.get());
+        // Clearing one stage leaves the others' results
+        second.clear();
+        assertEquals("ABAB", second.get(new Key("ab", 2), context));
+        assertEquals(1, firsts.get());
+        assertEquals(3, seconds.get());
+    }
+}
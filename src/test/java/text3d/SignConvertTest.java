@@ -37,4 +37,11 @@ public class SignConvertTest {
         var actual = Sign.fromJSON(JSON);
         assertEquals(SIGN, actual);
 	}
+
+	@Test
+	public void testQuotesAndBackslashesRoundTrip() {
+        var sign = new Sign("Say \"Hi\"\nC:\\Temp\tnow", "Times Roman", 40, 1,
+            TextAlign.LEFT, 1, 2, 3, 4, "C");
+        assertEquals(sign, Sign.fromJSON(sign.toJSON()));
+	}
 }
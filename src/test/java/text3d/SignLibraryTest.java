@@ -0,0 +1,86 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SignLibraryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<SignLibrary.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new SignLibrary.Entry("Room " + i + " é",
+                new Sign("Room\n" + i, "Serif", 20 + i, 1, TextAlign.CENTER, 1, 2, 3, 0.5,
+                    i % 2 == 0 ? "C" : null)));
+        }
+        Path file = dir.resolve("test" + SignLibrary.EXTENSION);
+        SignLibrary.write(file, entries);
+
+        try (SignLibrary library = SignLibrary.open(file)) {
+            assertEquals(entries.size(), library.size());
+            // Out of order, to show each entry stands alone
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                assertEquals(entries.get(i).name(), library.name(i));
+                assertEquals(entries.get(i).sign(), library.get(i));
+            }
+            assertEquals(42, library.indexOf("Room 42 é"));
+            assertEquals(-1, library.indexOf("Nonesuch"));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path file = dir.resolve("empty" + SignLibrary.EXTENSION);
+        SignLibrary.write(file, List.of());
+        try (SignLibrary library = SignLibrary.open(file)) {
+            assertEquals(0, library.size());
+        }
+    }
+
+    /// Index entries pointing outside the file are reported as a corrupt library, not as an IndexOutOfBoundsException
+    @Test
+    public void testTruncated() throws IOException {
+        List<SignLibrary.Entry> entries = List.of(
+            new SignLibrary.Entry("Room 1", new Sign("Room 1", "Serif", 20, 1, TextAlign.CENTER, 1, 2, 3, 0.5)),
+            new SignLibrary.Entry("Room 2", new Sign("Room 2", "Serif", 20, 1, TextAlign.CENTER, 1, 2, 3, 0.5)));
+        Path file = dir.resolve("test" + SignLibrary.EXTENSION);
+        SignLibrary.write(file, entries);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // The last Sign's data cut short: the rest of the library is still usable
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+        try (SignLibrary library = SignLibrary.open(file)) {
+            assertEquals("Room 2", library.name(1));
+            assertEquals(entries.getFirst().sign(), library.get(0));
+            IOException e = assertThrows(IOException.class, () -> library.get(1));
+            assertTrue(e.getMessage().startsWith("Corrupt sign library index"), e.getMessage());
+        }
+
+        // A name past the end of the file: caught on opening
+        ByteBuffer.wrap(bytes).putInt(SignLibrary.HEADER_SIZE + Long.BYTES + Integer.BYTES, bytes.length);
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> SignLibrary.open(file).close());
+    }
+
+    @Test
+    public void testNotALibrary() throws IOException {
+        Path file = dir.resolve("door.sgn");
+        Files.writeString(file, SignConvertTest.JSON);
+        assertThrows(IOException.class, () -> SignLibrary.open(file).close());
+    }
+}
@@ -0,0 +1,143 @@
+package text3d;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThreeMFPackagerTest {
+
+    @TempDir
+    Path dir;
+
+    /// Something like a model, big enough to be split into several blocks
+    static byte[] model() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 5 * ThreeMFPackager.BLOCK_SIZE / 2; i++) {
+            sb.append(String.format("<vertex x=\"%d.%04d\" y=\"%d\" z=\"3.5\"/>\n", i % 97, i % 10000, i / 7));
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void write(ThreeMFPackager zip, byte[] model) throws IOException {
+        try (zip; OutputStream out = zip.entry(ThreeMFPackager.MODEL, model.length)) {
+            // In uneven pieces, so blocks are filled from more than one write
+            for (int i = 0; i < model.length; i += 10_000) {
+                out.write(model, i, Math.min(10_000, model.length - i));
+            }
+        }
+    }
+
+    /// Read every entry with ZipFile, which uses the central directory
+    static Map<String, byte[]> readZipFile(File file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(file)) {
+            for (ZipEntry e : zip.stream().toList()) {
+                try (InputStream in = zip.getInputStream(e)) {
+                    entries.put(e.getName(), in.readAllBytes());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /// Read every entry with ZipInputStream, which uses the local headers, as a streaming reader would
+    static Map<String, byte[]> readZipStream(File file) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file.toPath()))) {
+            for (ZipEntry e; (e = in.getNextEntry()) != null; ) {
+                entries.put(e.getName(), in.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    static void checkEntries(byte[] model, Map<String, byte[]> entries) {
+        assertEquals(List.of("[Content_Types].xml", "_rels/.rels", ThreeMFPackager.MODEL),
+            new ArrayList<>(entries.keySet()));
+        assertArrayEquals(ThreeMFPackager.CONTENT_TYPES.getBytes(StandardCharsets.UTF_8),
+            entries.get("[Content_Types].xml"));
+        assertArrayEquals(model, entries.get(ThreeMFPackager.MODEL));
+    }
+
+    @Test
+    public void testEveryCompression() throws IOException {
+        byte[] model = model();
+        long stored = 0;
+        for (Compression c : Compression.values()) {
+            File file = dir.resolve(c + ".3mf").toFile();
+            write(ThreeMFPackager.create(file, c), model);
+            checkEntries(model, readZipFile(file));
+            checkEntries(model, readZipStream(file));
+            if (c == Compression.STORED) {
+                stored = file.length();
+                assertTrue(stored > model.length, "Stored is bigger than the model");
+            } else {
+                assertTrue(file.length() < stored / 3, c + " only compressed to " + file.length());
+            }
+        }
+    }
+
+    @Test
+    public void testSmallModel() throws IOException {
+        byte[] model = "<model/>".getBytes(StandardCharsets.UTF_8);
+        File file = dir.resolve("small.3mf").toFile();
+        write(ThreeMFPackager.create(file, Compression.DEFAULT), model);
+        checkEntries(model, readZipStream(file));
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        byte[] model = model();
+        for (Compression c : List.of(Compression.STORED, Compression.DEFAULT)) {
+            File file = dir.resolve("zip64-" + c + ".3mf").toFile();
+            ThreeMFPackager zip = ThreeMFPackager.create(file, c);
+            zip.setForceZip64(true);
+            write(zip, model);
+            checkEntries(model, readZipStream(file));
+            checkEntries(model, readZipFile(file));
+        }
+    }
+
+    /// When the header can't be gone back to, "stored" entries are deflated at level 0,
+    /// as only deflated entries may have a data descriptor for a streaming reader
+    @Test
+    public void testStoredUnseekable() throws IOException {
+        byte[] model = model();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new ThreeMFPackager(Channels.newChannel(bytes), Compression.STORED), model);
+        Path file = Files.write(dir.resolve("stream.3mf"), bytes.toByteArray());
+        checkEntries(model, readZipFile(file.toFile()));
+        checkEntries(model, readZipStream(file.toFile()));
+        assertTrue(file.toFile().length() > model.length, "Not compressed");
+    }
+
+    /// The same model must always give the same bytes, or the ModelCache and diffs suffer
+    @Test
+    public void testDeterministic() throws IOException {
+        byte[] model = model();
+        File one = dir.resolve("one.3mf").toFile(), two = dir.resolve("two.3mf").toFile();
+        write(ThreeMFPackager.create(one, Compression.DEFAULT), model);
+        write(ThreeMFPackager.create(two, Compression.DEFAULT), model);
+        assertArrayEquals(Files.readAllBytes(one.toPath()), Files.readAllBytes(two.toPath()));
+    }
+}